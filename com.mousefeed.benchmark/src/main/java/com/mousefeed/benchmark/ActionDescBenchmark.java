@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.benchmark;
+
+import com.mousefeed.eclipse.ActionDescImpl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the action description handling, which is done by the generators
+ * on each click: creating {@link ActionDescImpl}, stripping the label
+ * mnemonics in {@link ActionDescImpl#setLabel(String)} and resolving the
+ * action id.
+ *
+ * @author Sigasi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ActionDescBenchmark {
+    /**
+     * A command label with a mnemonic.
+     */
+    private static final String MNEMONIC_LABEL = "Save &As...";
+
+    /**
+     * A command label without a mnemonic.
+     */
+    private static final String PLAIN_LABEL = "Toggle Breadcrumb";
+
+    /**
+     * A command id.
+     */
+    private static final String DEF = "org.eclipse.ui.file.saveAs";
+
+    /**
+     * An action class name.
+     */
+    private static final String CLASS_NAME =
+            "org.eclipse.ui.internal.SaveAsAction";
+
+    /**
+     * An accelerator.
+     */
+    private static final String ACCELERATOR = "Ctrl+Shift+S";
+
+    /**
+     * The label is set on this description.
+     */
+    private ActionDescImpl labelDesc;
+
+    /**
+     * The description identified by the command id.
+     */
+    private ActionDescImpl defDesc;
+
+    /**
+     * The description identified by the action class.
+     */
+    private ActionDescImpl classDesc;
+
+    /**
+     * The description identified by the label.
+     */
+    private ActionDescImpl labelOnlyDesc;
+
+    /**
+     * Creates the descriptions to read the ids of.
+     */
+    @Setup
+    public void setUp() {
+        labelDesc = new ActionDescImpl();
+
+        defDesc = new ActionDescImpl();
+        defDesc.setLabel(MNEMONIC_LABEL);
+        defDesc.setDef(DEF);
+
+        classDesc = new ActionDescImpl();
+        classDesc.setLabel(MNEMONIC_LABEL);
+        classDesc.setClassName(CLASS_NAME);
+
+        labelOnlyDesc = new ActionDescImpl();
+        labelOnlyDesc.setLabel(MNEMONIC_LABEL);
+    }
+
+    /**
+     * A description as created by the command generator.
+     * @return the action id.
+     */
+    @Benchmark
+    public String createCommandDesc() {
+        final ActionDescImpl desc = new ActionDescImpl();
+        desc.setLabel(MNEMONIC_LABEL);
+        desc.setDef(DEF);
+        desc.setAccelerator(ACCELERATOR);
+        return desc.getId();
+    }
+
+    /**
+     * A description as created by the action generator.
+     * @return the action id.
+     */
+    @Benchmark
+    public String createActionDesc() {
+        final ActionDescImpl desc = new ActionDescImpl();
+        desc.setLabel(MNEMONIC_LABEL);
+        desc.setClassName(CLASS_NAME);
+        desc.setDef(DEF);
+        desc.setAccelerator(ACCELERATOR);
+        return desc.getId();
+    }
+
+    /**
+     * Setting a label with a mnemonic.
+     * @return the stripped label.
+     */
+    @Benchmark
+    public String setLabelWithMnemonic() {
+        labelDesc.setLabel(MNEMONIC_LABEL);
+        return labelDesc.getLabel();
+    }
+
+    /**
+     * Setting a label without a mnemonic.
+     * @return the label.
+     */
+    @Benchmark
+    public String setLabelWithoutMnemonic() {
+        labelDesc.setLabel(PLAIN_LABEL);
+        return labelDesc.getLabel();
+    }
+
+    /**
+     * Resolving the id of a command.
+     * @return the id.
+     */
+    @Benchmark
+    public String getIdByDef() {
+        return defDesc.getId();
+    }
+
+    /**
+     * Resolving the id of an action without a command.
+     * @return the id.
+     */
+    @Benchmark
+    public String getIdByClassName() {
+        return classDesc.getId();
+    }
+
+    /**
+     * Resolving the id of a description, which has only a label.
+     * @return the id.
+     */
+    @Benchmark
+    public String getIdByLabel() {
+        return labelOnlyDesc.getId();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.benchmark;
+
+import com.mousefeed.client.Messages;
+import com.mousefeed.client.OnWrongInvocationMode;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Messages#get(String, Object...)} for the kinds of
+ * messages the popups show on each click.
+ *
+ * @author Sigasi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MessagesBenchmark {
+    /**
+     * The popup message with an argument. The popup messages are looked up
+     * with the full keys, because loading the popup class would require SWT.
+     */
+    private static final String ARGUMENT_KEY =
+            "NagPopUp.message.configureShortcut";
+
+    /**
+     * The argument for {@link #ARGUMENT_KEY}.
+     */
+    private static final String ARGUMENT = "Save As";
+
+    /**
+     * A popup message without arguments.
+     */
+    private static final String TITLE_KEY = "NagPopUp.title.reminder";
+
+    /**
+     * A common message, as used by the dialogs.
+     */
+    private static final String FALLBACK_KEY = "common.ok";
+
+    /**
+     * The popup messages.
+     */
+    private Messages messages;
+
+    /**
+     * Creates the messages and resolves the used keys, as it happens after
+     * the first popup.
+     */
+    @Setup
+    public void setUp() {
+        messages = new Messages();
+        messages.get(ARGUMENT_KEY, ARGUMENT);
+        messages.get(TITLE_KEY);
+        messages.get(FALLBACK_KEY);
+    }
+
+    /**
+     * A popup message formatted with an argument.
+     * @return the message.
+     */
+    @Benchmark
+    public String getWithArgument() {
+        return messages.get(ARGUMENT_KEY, ARGUMENT);
+    }
+
+    /**
+     * A popup message without arguments.
+     * @return the message.
+     */
+    @Benchmark
+    public String getWithoutArguments() {
+        return messages.get(TITLE_KEY);
+    }
+
+    /**
+     * A common message.
+     * @return the message.
+     */
+    @Benchmark
+    public String getFallbackKey() {
+        return messages.get(FALLBACK_KEY);
+    }
+
+    /**
+     * The first lookup of a message, which is resolved in the bundle.
+     * @return the message.
+     */
+    @Benchmark
+    public String getUncached() {
+        return new Messages().get(ARGUMENT_KEY, ARGUMENT);
+    }
+
+    /**
+     * The label of the on wrong invocation mode, as shown by the action
+     * configuration dialog.
+     * @return the label.
+     */
+    @Benchmark
+    public String getOnWrongInvocationModeLabel() {
+        return OnWrongInvocationMode.REMIND.getLabel();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.commands.Category;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandManager;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.core.commands.contexts.ContextManager;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.Scheme;
+import org.eclipse.jface.bindings.TriggerSequence;
+import org.eclipse.jface.bindings.keys.KeyBinding;
+import org.eclipse.jface.bindings.keys.KeySequence;
+import org.eclipse.jface.bindings.keys.KeyStroke;
+import org.eclipse.jface.commands.ActionHandler;
+import org.eclipse.swt.SWT;
+import org.eclipse.ui.actions.RetargetAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the accelerator lookups done by the action description
+ * generators against synthetic binding tables.
+ * The bound commands are handled by legacy actions, so the lookups of
+ * {@link ActionBindingIndex} find them. The index is built before the
+ * measurement, so the lookups after its {@code update()} are measured.
+ * The lookup of the command generators, which ask {@link BindingManager}
+ * through the workbench binding service, is measured for comparison.
+ * Is in the package of {@link ActionBindingIndex} to access it.
+ *
+ * @author Sigasi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class BindingLookupBenchmark {
+    /**
+     * An action handling a bound command.
+     */
+    private static class BoundAction extends Action {
+        /**
+         * Creates new action.
+         * @param definitionId the id of the handled command.
+         */
+        BoundAction(final String definitionId) {
+            setActionDefinitionId(definitionId);
+        }
+    }
+
+    /**
+     * Another class of the actions, so the lookup by class does not find
+     * all the bindings.
+     */
+    private static class OtherBoundAction extends BoundAction {
+        /**
+         * Creates new action.
+         * @param definitionId the id of the handled command.
+         */
+        OtherBoundAction(final String definitionId) {
+            super(definitionId);
+        }
+    }
+
+    /**
+     * The id of the only scheme.
+     */
+    private static final String SCHEME_ID = "com.mousefeed.benchmark.scheme";
+
+    /**
+     * The id of the only context.
+     */
+    private static final String CONTEXT_ID = "com.mousefeed.benchmark.context";
+
+    /**
+     * The prefix of the command ids.
+     */
+    private static final String COMMAND_ID_PREFIX =
+            "com.mousefeed.benchmark.command";
+
+    /**
+     * The id of the command without a binding.
+     */
+    private static final String UNBOUND_COMMAND_ID =
+            "com.mousefeed.benchmark.unbound";
+
+    /**
+     * Every this command is handled by a {@link RetargetAction}.
+     */
+    private static final int RETARGET_ACTION_PERIOD = 10;
+
+    /**
+     * The modifier combinations used for the key strokes.
+     */
+    private static final int[] MODIFIERS = {
+        SWT.MOD1,
+        SWT.MOD1 | SWT.MOD2,
+        SWT.MOD1 | SWT.MOD3,
+        SWT.MOD1 | SWT.MOD2 | SWT.MOD3,
+    };
+
+    /**
+     * The number of the letters used for the key strokes.
+     */
+    private static final int LETTER_COUNT = 26;
+
+    /**
+     * The number of the bound commands.
+     */
+    @Param({"100", "1000", "10000"})
+    private int bindingCount;
+
+    /**
+     * The binding manager holding the binding table.
+     */
+    private BindingManager bindingManager;
+
+    /**
+     * The measured index over {@link #bindingManager}.
+     */
+    private ActionBindingIndex index;
+
+    /**
+     * The ids of the bound commands.
+     */
+    private String[] commandIds;
+
+    /**
+     * The actions handling the bound commands.
+     */
+    private IAction[] actions;
+
+    /**
+     * Index of the next command to look up, so the lookups go over the
+     * whole table.
+     */
+    private int nextCommand;
+
+    /**
+     * Creates the binding table and builds the index.
+     * @throws NotDefinedException never.
+     */
+    @Setup
+    public void setUp() throws NotDefinedException {
+        final ContextManager contextManager = new ContextManager();
+        final CommandManager commandManager = new CommandManager();
+        bindingManager = new BindingManager(contextManager, commandManager);
+
+        contextManager.getContext(CONTEXT_ID).define("Context", null, null);
+        contextManager.setActiveContextIds(Collections.singleton(CONTEXT_ID));
+        final Scheme scheme = bindingManager.getScheme(SCHEME_ID);
+        scheme.define("Scheme", null, null);
+        bindingManager.setActiveScheme(scheme);
+
+        final Category category = commandManager.getCategory(
+                COMMAND_ID_PREFIX);
+        category.define("Category", null);
+        commandManager.getCommand(UNBOUND_COMMAND_ID).define(
+                "Unbound", null, category);
+
+        final KeyStroke[] strokes = createKeyStrokes();
+        commandIds = new String[bindingCount];
+        actions = new IAction[bindingCount];
+        final Binding[] bindings = new Binding[bindingCount];
+        for (int i = 0; i < bindingCount; i++) {
+            commandIds[i] = COMMAND_ID_PREFIX + i;
+            final Command command = commandManager.getCommand(commandIds[i]);
+            command.define("Command " + i, null, category);
+            actions[i] = createAction(i, commandIds[i]);
+            command.setHandler(new ActionHandler(actions[i]));
+            final KeySequence sequence = KeySequence.getInstance(
+                    new KeyStroke[] {
+                        strokes[i / strokes.length % strokes.length],
+                        strokes[i % strokes.length]});
+            bindings[i] = new KeyBinding(sequence,
+                    new ParameterizedCommand(command, null), SCHEME_ID,
+                    CONTEXT_ID, null, null, null, Binding.SYSTEM);
+        }
+        bindingManager.setBindings(bindings);
+
+        index = new ActionBindingIndex(bindingManager);
+        // builds the index
+        index.getRetargetEntries();
+    }
+
+    /**
+     * Creates the action handling a bound command.
+     * @param i the command number.
+     * @param commandId the command id.
+     * @return the action. Never <code>null</code>.
+     */
+    private IAction createAction(final int i, final String commandId) {
+        final IAction action;
+        if (i % RETARGET_ACTION_PERIOD == 0) {
+            action = new RetargetAction(commandId, "Action " + i);
+            action.setActionDefinitionId(commandId);
+        } else if (i % 2 == 0) {
+            action = new BoundAction(commandId);
+        } else {
+            action = new OtherBoundAction(commandId);
+        }
+        return action;
+    }
+
+    /**
+     * Generates distinct key strokes.
+     * @return the key strokes. Never <code>null</code>.
+     */
+    private KeyStroke[] createKeyStrokes() {
+        final KeyStroke[] strokes =
+                new KeyStroke[MODIFIERS.length * LETTER_COUNT];
+        int i = 0;
+        for (int modifiers : MODIFIERS) {
+            for (char c = 'A'; c < 'A' + LETTER_COUNT; c++) {
+                strokes[i] = KeyStroke.getInstance(modifiers, c);
+                i++;
+            }
+        }
+        return strokes;
+    }
+
+    /**
+     * The lookup of the bindings of an action by its class and definition
+     * id, as done for a clicked action with a definition id.
+     * @return the binding entries.
+     */
+    @Benchmark
+    public List<ActionBindingIndex.Entry> entriesByClassAndId() {
+        final IAction action = nextAction();
+        return index.getEntries(action.getClass(),
+                action.getActionDefinitionId());
+    }
+
+    /**
+     * The lookup of the bindings of an action by its class, as done for
+     * a clicked action without a definition id.
+     * @return the binding entries.
+     */
+    @Benchmark
+    public List<ActionBindingIndex.Entry> entriesByClass() {
+        return index.getEntries(nextAction().getClass());
+    }
+
+    /**
+     * The lookup of the retarget action bindings, checked for a clicked
+     * action, which does not match any binding by its class.
+     * @return the binding entries.
+     */
+    @Benchmark
+    public List<ActionBindingIndex.Entry> retargetEntries() {
+        return index.getRetargetEntries();
+    }
+
+    /**
+     * The accelerator of a bound command, as looked up by the command
+     * generators.
+     * @return the accelerator.
+     */
+    @Benchmark
+    public String boundCommand() {
+        final String commandId = commandIds[nextCommand];
+        nextCommand = (nextCommand + 1) % commandIds.length;
+        final TriggerSequence binding =
+                bindingManager.getBestActiveBindingFor(commandId);
+        return binding == null ? null : binding.format();
+    }
+
+    /**
+     * The lookup of a command without a binding.
+     * @return <code>null</code>.
+     */
+    @Benchmark
+    public TriggerSequence unboundCommand() {
+        return bindingManager.getBestActiveBindingFor(UNBOUND_COMMAND_ID);
+    }
+
+    /**
+     * The next action to look up.
+     * @return the action. Never <code>null</code>.
+     */
+    private IAction nextAction() {
+        final IAction action = actions[nextCommand];
+        nextCommand = (nextCommand + 1) % actions.length;
+        return action;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading and saving of the action-specific settings and the
+ * on wrong invocation mode lookup done on each click.
+ * {@link PreferenceAccessor} needs the running workbench, so the benchmark
+ * uses the store it delegates to, and looks the modes up with
+ * {@link PreferenceAccessor#getOnWrongInvocationMode(ActionOverrides, String)},
+ * which the accessor uses on the published snapshot.
+ * Is in the package of the measured classes to access the package-private
+ * lookup.
+ *
+ * @author Sigasi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ActionOverridesBenchmark {
+    /**
+     * The prefix of the action ids.
+     */
+    private static final String ACTION_ID_PREFIX =
+            "com.mousefeed.benchmark.action";
+
+    /**
+     * The number of the stored settings.
+     */
+    @Param({"10", "1000", "100000"})
+    private int overrideCount;
+
+    /**
+     * The stored settings.
+     */
+    private List<ActionOnWrongInvocationMode> modes;
+
+    /**
+     * The settings snapshot, as published by {@link PreferenceAccessor}.
+     */
+    private ActionOverrides overrides;
+
+    /**
+     * The directory of the store files.
+     */
+    private File dir;
+
+    /**
+     * The store file, which is only read.
+     */
+    private File loadFile;
+
+    /**
+     * The store written by the save benchmarks.
+     */
+    private LogActionOverrideStore saveStore;
+
+    /**
+     * Index of the next setting to look up or to save, so the operations
+     * go over all the settings.
+     */
+    private int next;
+
+    /**
+     * Creates the settings and the store files.
+     * @throws IOException on a failure to create the store directory.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        final OnWrongInvocationMode[] values = OnWrongInvocationMode.values();
+        modes = new ArrayList<ActionOnWrongInvocationMode>();
+        for (int i = 0; i < overrideCount; i++) {
+            final ActionOnWrongInvocationMode mode =
+                    new ActionOnWrongInvocationMode();
+            mode.setId(ACTION_ID_PREFIX + i);
+            mode.setLabel("Action " + i);
+            mode.setOnWrongInvocationMode(values[i % values.length]);
+            modes.add(mode);
+        }
+        overrides = ActionOverrides.EMPTY.replacedBy(modes);
+
+        dir = File.createTempFile("mousefeed", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Can't create directory " + dir);
+        }
+        loadFile = new File(dir, "load.log");
+        final LogActionOverrideStore loadStore =
+                new LogActionOverrideStore(loadFile, null);
+        loadStore.replaceAll(modes);
+        loadStore.flush();
+
+        saveStore = new LogActionOverrideStore(new File(dir, "save.log"),
+                null);
+        saveStore.replaceAll(modes);
+        saveStore.flush();
+    }
+
+    /**
+     * Removes the store files.
+     */
+    @TearDown
+    public void tearDown() {
+        saveStore.flush();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Reading all the settings, as done on the plugin start.
+     * @return the settings.
+     */
+    @Benchmark
+    public Collection<ActionOnWrongInvocationMode> load() {
+        return new LogActionOverrideStore(loadFile, null).load();
+    }
+
+    /**
+     * Saving one setting, as done when the user configures an action.
+     * Includes the periodic log compaction.
+     * @return the store.
+     */
+    @Benchmark
+    public ActionOverrideStore saveOne() {
+        saveStore.put(nextMode());
+        saveStore.flush();
+        return saveStore;
+    }
+
+    /**
+     * Saving all the settings, as done by the preference page.
+     * @return the store.
+     */
+    @Benchmark
+    public ActionOverrideStore saveAll() {
+        saveStore.replaceAll(modes);
+        saveStore.flush();
+        return saveStore;
+    }
+
+    /**
+     * Looking up the mode of an action with a setting.
+     * @return the mode.
+     */
+    @Benchmark
+    public OnWrongInvocationMode lookUpConfigured() {
+        return PreferenceAccessor.getOnWrongInvocationMode(overrides,
+                nextMode().getId());
+    }
+
+    /**
+     * Looking up the mode of an action without a setting.
+     * @return <code>null</code>.
+     */
+    @Benchmark
+    public OnWrongInvocationMode lookUpNotConfigured() {
+        return PreferenceAccessor.getOnWrongInvocationMode(overrides,
+                ACTION_ID_PREFIX);
+    }
+
+    /**
+     * The next setting to look up or to save.
+     * @return the setting. Never <code>null</code>.
+     */
+    private ActionOnWrongInvocationMode nextMode() {
+        final ActionOnWrongInvocationMode mode = modes.get(next);
+        next = (next + 1) % modes.size();
+        return mode;
+    }
+}
@@ -18,8 +18,14 @@
  */
 package com.mousefeed.client;
 
+import com.mousefeed.client.collector.ActionAggregatesTest;
 import com.mousefeed.client.collector.ActionDescTest;
+import com.mousefeed.client.collector.ActionHistoryTest;
+import com.mousefeed.client.collector.ActionStatisticsStoreTest;
+import com.mousefeed.client.collector.ActionUsageCounterTest;
 import com.mousefeed.client.collector.CollectorTest;
+import com.mousefeed.client.collector.TopActionTrackerTest;
+import com.mousefeed.client.collector.WindowedActionCounterTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -31,7 +37,10 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({ AssertEnabledTest.class, MessagesTest.class,
         OnWrongInvocationModeTest.class, ActionDescTest.class,
-        CollectorTest.class })
+        CollectorTest.class, ActionUsageCounterTest.class,
+        ActionHistoryTest.class, ActionStatisticsStoreTest.class,
+        TopActionTrackerTest.class, WindowedActionCounterTest.class,
+        ActionAggregatesTest.class })
 public class AllClientTests {
 
 }
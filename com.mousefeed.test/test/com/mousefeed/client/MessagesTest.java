@@ -20,6 +20,7 @@ package com.mousefeed.client;
 
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.util.MissingResourceException;
 
@@ -62,6 +63,28 @@ public class MessagesTest {
         new Messages(null).get(SHORT_KEY);
     }
 
+    @Test public void get_cached() {
+        final Messages messages = new Messages(MessagesTest.class);
+        assertEquals(messages.get(SHORT_KEY, "a", "b"),
+                messages.get(SHORT_KEY, "a", "b"));
+        assertEquals("Message with arguments a, b",
+                messages.get(SHORT_KEY, "a", "b"));
+        assertEquals("Message with arguments {0}, {1}",
+                messages.get(SHORT_KEY));
+        try {
+            messages.get("nonexisting");
+            fail();
+        } catch (final MissingResourceException e) {
+            // expected, the missing message is not cached
+        }
+        try {
+            messages.get("nonexisting");
+            fail();
+        } catch (final MissingResourceException e) {
+            // expected
+        }
+    }
+
     @Test(expected = NullPointerException.class)
     public void get_nullKey() {
         new Messages().get(null);
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.mousefeed.client.collector.ActionAggregates.Trend;
+import com.mousefeed.client.collector.ActionStatisticsStore.Counter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class ActionAggregatesTest {
+    // sample data
+    private static final String LABEL1 = "Label 1";
+    private static final String LABEL2 = "Label 2";
+    private static final String ACCELERATOR = "Ctrl+Alt+F1";
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final int START_DAY = 1000;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onAction_null() {
+        new ActionAggregates(UTC).onAction(null, false, 0);
+    }
+
+    @Test public void onAction() {
+        final ActionAggregates a = new ActionAggregates(UTC);
+        final List<String> events = new ArrayList<String>();
+        a.addListener(new ActionAggregatesListener() {
+            public void rowAdded(final int row) {
+                events.add("added " + row);
+            }
+
+            public void rowChanged(final int row) {
+                events.add("changed " + row);
+            }
+        });
+        assertEquals(0, a.getRowCount());
+        a.onAction(createAction(LABEL1, ACCELERATOR), false, day(0));
+        a.onAction(createAction(LABEL2, null), false, day(0));
+        a.onAction(createAction(LABEL1, ACCELERATOR), true, day(0));
+        a.onAction(createAction(LABEL1, ACCELERATOR), false, day(0));
+
+        assertEquals(2, a.getRowCount());
+        assertEquals(LABEL1, a.getActionId(0));
+        assertEquals(LABEL1, a.getLabel(0));
+        assertEquals(ACCELERATOR, a.getAccelerator(0));
+        assertEquals(2, a.getMouseCount(0));
+        assertEquals(1, a.getKeyboardCount(0));
+        assertNull(a.getAccelerator(1));
+        assertEquals(1, a.getMouseCount(1));
+        assertEquals("[added 0, added 1, changed 0, changed 0]",
+                events.toString());
+    }
+
+    @Test public void getTrend() {
+        final ActionAggregates a = new ActionAggregates(UTC);
+        final AbstractActionDesc action = createAction(LABEL1, null);
+        a.onAction(action, false, day(0));
+        assertEquals(Trend.UP, a.getTrend(0, day(0)));
+        // the invocation moves to the previous week
+        assertEquals(Trend.DOWN, a.getTrend(0, day(7)));
+        a.onAction(action, false, day(8));
+        assertEquals(Trend.STEADY, a.getTrend(0, day(8)));
+        a.onAction(action, true, day(8));
+        assertEquals(Trend.STEADY, a.getTrend(0, day(8)));
+        // both invocations left the trend periods
+        assertEquals(Trend.STEADY, a.getTrend(0, day(30)));
+        assertEquals(2, a.getMouseCount(0));
+    }
+
+    @Test public void load() throws IOException {
+        final File file = File.createTempFile("test", null);
+        final ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        try {
+            store.increment(LABEL1, day(0), Counter.MOUSE);
+            store.increment(LABEL1, day(8), Counter.MOUSE);
+            store.increment(LABEL1, day(9), Counter.MOUSE);
+            store.increment(LABEL1, day(9), Counter.KEYBOARD);
+
+            final ActionAggregates a = new ActionAggregates(UTC);
+            a.load(store, day(10));
+            assertEquals(1, a.getRowCount());
+            assertEquals(LABEL1, a.getLabel(0));
+            assertEquals(3, a.getMouseCount(0));
+            assertEquals(1, a.getKeyboardCount(0));
+            assertEquals(Trend.UP, a.getTrend(0, day(10)));
+        } finally {
+            store.close();
+            file.delete();
+            new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX).delete();
+            new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX).delete();
+        }
+    }
+
+    private AbstractActionDesc createAction(final String label,
+            final String accelerator) {
+        final AbstractActionDesc action = new AbstractActionDesc() {};
+        action.setLabel(label);
+        action.setAccelerator(accelerator);
+        return action;
+    }
+
+    private long day(final int i) {
+        return (START_DAY + i) * DateUtils.MILLIS_PER_DAY;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.mousefeed.client.collector.ActionHistory.Event;
+import com.mousefeed.client.collector.ActionHistory.Snapshot;
+import java.util.Iterator;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class ActionHistoryTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void record_nullOutcome() {
+        new ActionHistory(1).record("a", 0, false, false, null);
+    }
+
+    @Test public void snapshot() {
+        final ActionHistory h = new ActionHistory(4);
+        assertEquals(0, h.snapshot().size());
+        h.record("a", 1, false, true, ActionOutcome.REMINDED);
+        h.record(null, 2, true, false, ActionOutcome.NONE);
+        h.record("b", 3, false, false, ActionOutcome.SHORTCUT_SUGGESTED);
+
+        final Snapshot s = h.snapshot();
+        h.record("c", 4, false, true, ActionOutcome.CANCELLED);
+        assertEquals(3, s.size());
+        assertEquals("a", s.getActionId(0));
+        assertEquals(1, s.getTime(0));
+        assertFalse(s.isKeyboard(0));
+        assertTrue(s.hasAccelerator(0));
+        assertEquals(ActionOutcome.REMINDED, s.getOutcome(0));
+        assertNull(s.getActionId(1));
+        assertTrue(s.isKeyboard(1));
+        assertFalse(s.hasAccelerator(1));
+        assertEquals(ActionOutcome.SHORTCUT_SUGGESTED, s.getOutcome(2));
+        assertEquals(4, h.snapshot().size());
+    }
+
+    @Test public void record_overwritesOldest() {
+        final ActionHistory h = new ActionHistory(3);
+        for (int i = 0; i < 10; i++) {
+            h.record("action" + i, i, false, false, ActionOutcome.NONE);
+        }
+        assertEquals(10, h.getCount());
+        final Iterator<Event> it = h.snapshot().iterator();
+        for (int i = 7; i < 10; i++) {
+            final Event e = it.next();
+            assertEquals("action" + i, e.getActionId());
+            assertEquals(i, e.getTime());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test public void record_manyIds() {
+        final ActionHistory h = new ActionHistory(5);
+        final Snapshot early;
+        h.record("first", 0, false, false, ActionOutcome.NONE);
+        early = h.snapshot();
+        for (int i = 0; i < 1000; i++) {
+            h.record("action" + i, i, false, false, ActionOutcome.NONE);
+            h.record("same", i, false, false, ActionOutcome.CANCELLED);
+        }
+        final Snapshot s = h.snapshot();
+        assertEquals(5, s.size());
+        assertEquals("same", s.getActionId(0));
+        assertEquals("action998", s.getActionId(1));
+        assertEquals("action999", s.getActionId(3));
+        assertEquals(ActionOutcome.CANCELLED, s.getOutcome(4));
+        // the earlier snapshot is not affected by the ids table rebuild
+        assertEquals("first", early.getActionId(0));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static com.mousefeed.client.collector.ActionStatisticsStore.Counter.ENFORCED;
+import static com.mousefeed.client.collector.ActionStatisticsStore.Counter.KEYBOARD;
+import static com.mousefeed.client.collector.ActionStatisticsStore.Counter.MOUSE;
+import static com.mousefeed.client.collector.ActionStatisticsStore.Counter.REMINDED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.TimeZone;
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class ActionStatisticsStoreTest {
+    // sample data
+    private static final String ID1 = "org.eclipse.ui.file.save \u00e9";
+    private static final String ID2 = "action 2";
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long DAY1 = 100 * DateUtils.MILLIS_PER_DAY;
+    private static final long DAY2 = 101 * DateUtils.MILLIS_PER_DAY;
+    private File file;
+
+    @Before public void initFile() throws IOException {
+        file = File.createTempFile("test", null);
+        removeFiles();
+    }
+
+    @After public void removeFiles() {
+        file.delete();
+        new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX).delete();
+        new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX).delete();
+    }
+
+    @Test public void increment() throws IOException {
+        final ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        assertEquals(0, store.getRecordCount());
+        store.increment(ID1, DAY1, MOUSE);
+        store.increment(ID1, DAY1 + 1000, MOUSE);
+        store.increment(ID2, DAY1 + 2000, KEYBOARD);
+        store.increment(ID1, DAY1 + 3000, REMINDED);
+        store.increment(ID1, DAY2, ENFORCED);
+
+        assertEquals(3, store.getRecordCount());
+        assertEquals(100, store.getDay(0));
+        assertEquals(ID1, store.getActionId(0));
+        assertEquals(2, store.getCount(0, MOUSE));
+        assertEquals(0, store.getCount(0, KEYBOARD));
+        assertEquals(1, store.getCount(0, REMINDED));
+        assertEquals(ID2, store.getActionId(1));
+        assertEquals(1, store.getCount(1, KEYBOARD));
+        assertEquals(101, store.getDay(2));
+        assertEquals(ID1, store.getActionId(2));
+        assertEquals(1, store.getCount(2, ENFORCED));
+        store.close();
+    }
+
+    @Test public void reopen() throws IOException {
+        ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        store.increment(ID1, DAY1, MOUSE);
+        store.increment(ID2, DAY2, MOUSE);
+        store.close();
+
+        store = new ActionStatisticsStore(file, UTC);
+        assertEquals(2, store.getRecordCount());
+        assertEquals(ID1, store.getActionId(0));
+        assertEquals(ID2, store.getActionId(1));
+
+        // continues the records of the current day
+        store.increment(ID2, DAY2 + 1000, MOUSE);
+        store.increment(ID1, DAY2 + 2000, MOUSE);
+        assertEquals(3, store.getRecordCount());
+        assertEquals(2, store.getCount(1, MOUSE));
+        assertEquals(ID1, store.getActionId(2));
+        store.close();
+    }
+
+    @Test public void grow() throws IOException {
+        ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        for (int i = 0; i < 1000; i++) {
+            store.increment("action " + i, DAY1, MOUSE);
+        }
+        store.close();
+
+        store = new ActionStatisticsStore(file, UTC);
+        assertEquals(1000, store.getRecordCount());
+        assertEquals("action 999", store.getActionId(999));
+        assertEquals(1, store.getCount(999, MOUSE));
+        store.close();
+    }
+
+    @Test public void grow_mergesOldDays() throws IOException {
+        ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        for (int day = 0; day < 1000; day++) {
+            store.increment(ID1, day * DateUtils.MILLIS_PER_DAY, MOUSE);
+            store.increment(ID2, day * DateUtils.MILLIS_PER_DAY, KEYBOARD);
+        }
+        store.close();
+        final File records =
+                new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX);
+        // the records of 2 actions for the kept days fit into 32K
+        assertTrue(records.length() <= 32 * 1024);
+
+        store = new ActionStatisticsStore(file, UTC);
+        assertTrue(store.getRecordCount()
+                <= 2 * (ActionStatisticsStore.KEPT_DAYS + 1));
+        int mouse = 0;
+        int keyboard = 0;
+        for (int i = 0; i < store.getRecordCount(); i++) {
+            mouse += store.getCount(i, MOUSE);
+            keyboard += store.getCount(i, KEYBOARD);
+            if (i > 0) {
+                assertTrue(store.getDay(i - 1) <= store.getDay(i));
+            }
+        }
+        assertEquals(1000, mouse);
+        assertEquals(1000, keyboard);
+        assertEquals(999, store.getDay(store.getRecordCount() - 1));
+        store.close();
+    }
+
+    @Test public void close_releasesFiles() throws IOException {
+        final ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        store.increment(ID1, DAY1, MOUSE);
+        store.close();
+        // fails on Windows while the files are mapped
+        assertTrue(new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX)
+                .delete());
+        assertTrue(new File(
+                file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX).delete());
+    }
+
+    @Test public void damagedFile() throws IOException {
+        final FileOutputStream out = new FileOutputStream(
+                file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX);
+        out.write(new byte[] {1, 2, 3});
+        out.close();
+
+        final ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        assertEquals(0, store.getRecordCount());
+        store.increment(ID1, DAY1, MOUSE);
+        assertEquals(ID1, store.getActionId(0));
+        store.close();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getDay_badIndex() throws IOException {
+        final ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        try {
+            store.getDay(0);
+        } finally {
+            store.close();
+        }
+    }
+}
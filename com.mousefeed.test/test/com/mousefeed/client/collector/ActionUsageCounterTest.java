@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class ActionUsageCounterTest {
+    private static final long HALF_LIFE = 1000;
+
+    @Test public void increment() {
+        final ActionUsageCounter c = new ActionUsageCounter(100, 0);
+        assertEquals(0, c.get("a", 0));
+        assertEquals(1, c.increment("a", 0));
+        assertEquals(2, c.increment(new String("a"), 0));
+        assertEquals(1, c.increment("b", 0));
+        assertEquals(2, c.get("a", Long.MAX_VALUE));
+        assertEquals(2, c.size());
+    }
+
+    @Test public void increment_manyActions() {
+        final ActionUsageCounter c = new ActionUsageCounter(1000, 0);
+        for (int i = 0; i < 1000; i++) {
+            c.increment("action" + i, 0);
+            c.increment("action" + (i / 2), 0);
+        }
+        assertEquals(1000, c.size());
+        assertEquals(3, c.get("action10", 0));
+        assertEquals(1, c.get("action999", 0));
+    }
+
+    @Test public void increment_evictsLeastRecentlyUsed() {
+        final ActionUsageCounter c = new ActionUsageCounter(3, 0);
+        c.increment("a", 0);
+        c.increment("b", 0);
+        c.increment("c", 0);
+        c.increment("a", 0);
+        c.increment("d", 0);
+        assertEquals(3, c.size());
+        assertEquals(0, c.get("b", 0));
+        assertEquals(2, c.get("a", 0));
+        assertEquals(1, c.get("c", 0));
+        assertEquals(1, c.get("d", 0));
+
+        // the evicted ones do not break the lookups of the rest
+        for (int i = 0; i < 100; i++) {
+            c.increment("x" + i, 0);
+            assertEquals(1, c.get("x" + i, 0));
+        }
+        assertEquals(3, c.size());
+    }
+
+    @Test public void decay() {
+        final ActionUsageCounter c = new ActionUsageCounter(10, HALF_LIFE);
+        for (int i = 0; i < 8; i++) {
+            c.increment("a", 0);
+        }
+        assertEquals(8, c.get("a", HALF_LIFE - 1));
+        assertEquals(4, c.get("a", HALF_LIFE));
+        assertEquals(2, c.get("a", 2 * HALF_LIFE + 1));
+        assertEquals(3, c.increment("a", 2 * HALF_LIFE + 1));
+        assertEquals(0, c.get("a", 1000 * HALF_LIFE));
+    }
+
+    @Test public void writeTo_readFrom() throws IOException {
+        final ActionUsageCounter c = new ActionUsageCounter(3, HALF_LIFE);
+        c.increment("a", 0);
+        c.increment("a", 0);
+        c.increment("b", 0);
+        c.increment("c", 0);
+
+        final ActionUsageCounter c2 = new ActionUsageCounter(3, HALF_LIFE);
+        c2.readFrom(read(c));
+        assertEquals(3, c2.size());
+        assertEquals(2, c2.get("a", 0));
+        assertEquals(1, c2.get("a", HALF_LIFE));
+
+        // the usage order is kept
+        c2.increment("d", 0);
+        assertEquals(0, c2.get("a", 0));
+
+        // fewer actions tracked
+        final ActionUsageCounter c3 = new ActionUsageCounter(1, HALF_LIFE);
+        c3.readFrom(read(c));
+        assertEquals(1, c3.size());
+        assertEquals(1, c3.get("c", 0));
+    }
+
+    @Test public void readFrom_keepsMostRecentlyUsed() throws IOException {
+        final ActionUsageCounter c = new ActionUsageCounter(100, 0);
+        for (int i = 0; i < 100; i++) {
+            c.increment("action" + i, 0);
+        }
+        c.increment("action0", 0);
+
+        final ActionUsageCounter c2 = new ActionUsageCounter(10, 0);
+        c2.readFrom(read(c));
+        assertEquals(10, c2.size());
+        assertEquals(2, c2.get("action0", 0));
+        for (int i = 91; i < 100; i++) {
+            assertEquals(1, c2.get("action" + i, 0));
+        }
+        assertEquals(0, c2.get("action90", 0));
+    }
+
+    @Test public void setHalfLife() {
+        final ActionUsageCounter c = new ActionUsageCounter(10, 0);
+        for (int i = 0; i < 8; i++) {
+            c.increment("a", 0);
+        }
+        assertEquals(8, c.get("a", 10 * HALF_LIFE));
+
+        // decays from the time the decay is turned on
+        c.setHalfLife(HALF_LIFE, 10 * HALF_LIFE);
+        assertEquals(8, c.get("a", 10 * HALF_LIFE));
+        assertEquals(4, c.get("a", 11 * HALF_LIFE));
+
+        c.setHalfLife(0, 11 * HALF_LIFE);
+        assertEquals(4, c.get("a", 1000 * HALF_LIFE));
+
+        final ActionUsageCounter copy = new ActionUsageCounter(c);
+        c.increment("a", 0);
+        assertEquals(4, copy.get("a", 0));
+        assertEquals(5, c.get("a", 0));
+    }
+
+    @Test public void readFrom_unknownFormat() throws IOException {
+        final ActionUsageCounter c = new ActionUsageCounter(3, 0);
+        c.increment("a", 0);
+        try {
+            c.readFrom(new DataInputStream(
+                    new ByteArrayInputStream(new byte[] {0, 0, 0, 0})));
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+        assertEquals(0, c.size());
+    }
+
+    private DataInputStream read(final ActionUsageCounter c)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        c.writeTo(new DataOutputStream(bytes));
+        return new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
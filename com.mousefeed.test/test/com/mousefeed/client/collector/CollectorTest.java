@@ -20,7 +20,11 @@ package com.mousefeed.client.collector;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 
+import com.mousefeed.client.collector.ActionStatisticsStore.Counter;
+import java.io.File;
+import java.io.IOException;
 import org.junit.Test;
 
 /**
@@ -47,5 +51,139 @@ public class CollectorTest {
         assertEquals(action, c.getLastAction());
     }
 
+    @Test public void getTopActions() {
+        final Collector c = new Collector();
+        final AbstractActionDesc action = new TestActionDesc();
+        action.setLabel(LABEL);
+        c.onAction(action);
+        c.onAction(action, ActionOutcome.REMINDED);
+        assertEquals(LABEL, c.getTopActions().getTop(1).get(0).getActionId());
+        assertEquals(2, c.getTopActions().get(LABEL).getCount());
+    }
+
+    @Test public void onAction_statistics() throws IOException {
+        final File file = File.createTempFile("test", null);
+        final File idsFile =
+                new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX);
+        final File recordsFile =
+                new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX);
+        final ActionStatisticsStore store = new ActionStatisticsStore(file);
+        try {
+            final Collector c = new Collector();
+            c.setStatistics(store, null);
+            final AbstractActionDesc action = new TestActionDesc();
+            action.setLabel(LABEL);
+            c.onAction(action);
+            c.onAction(action, ActionOutcome.REMINDED);
+            c.onAction(action, ActionOutcome.CANCELLED);
+
+            assertEquals(1, store.getRecordCount());
+            assertEquals(LABEL, store.getActionId(0));
+            assertEquals(3, store.getCount(0, Counter.MOUSE));
+            assertEquals(1, store.getCount(0, Counter.REMINDED));
+            assertEquals(1, store.getCount(0, Counter.ENFORCED));
+            assertEquals(0, store.getCount(0, Counter.KEYBOARD));
+        } finally {
+            store.close();
+            file.delete();
+            idsFile.delete();
+            recordsFile.delete();
+        }
+    }
+
+    @Test public void onKeyboardAction() throws IOException {
+        final File file = File.createTempFile("test", null);
+        final File idsFile =
+                new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX);
+        final File recordsFile =
+                new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX);
+        final ActionStatisticsStore store = new ActionStatisticsStore(file);
+        try {
+            final Collector c = new Collector();
+            c.setStatistics(store, null);
+            final AbstractActionDesc action = new TestActionDesc();
+            action.setLabel(LABEL);
+            action.setAccelerator(ACCELERATOR);
+            c.onAction(action);
+            c.onKeyboardAction(action);
+            c.onKeyboardAction(action);
+
+            assertEquals(1, store.getCount(0, Counter.MOUSE));
+            assertEquals(2, store.getCount(0, Counter.KEYBOARD));
+            assertEquals(1, c.getAggregates().getMouseCount(0));
+            assertEquals(2, c.getAggregates().getKeyboardCount(0));
+            // the top actions are about the mouse invocations
+            assertEquals(1, c.getTopActions().get(LABEL).getCount());
+        } finally {
+            store.close();
+            file.delete();
+            idsFile.delete();
+            recordsFile.delete();
+        }
+    }
+
+    @Test public void onAction_statisticsFailure() throws IOException {
+        final File file = File.createTempFile("test", null);
+        final ActionStatisticsStore store = new ActionStatisticsStore(file) {
+            @Override
+            public void increment(final String actionId, final long time,
+                    final Counter counter) throws IOException {
+                throw new IOException();
+            }
+        };
+        final ActionStatisticsStore[] failed = new ActionStatisticsStore[1];
+        try {
+            final Collector c = new Collector();
+            c.setStatistics(store, new ActionStatisticsListener() {
+                public void statisticsFailed(
+                        final ActionStatisticsStore statistics,
+                        final IOException e) {
+                    assertNull(failed[0]);
+                    failed[0] = statistics;
+                }
+            });
+            final AbstractActionDesc action = new TestActionDesc();
+            action.setLabel(LABEL);
+            c.onAction(action);
+            assertSame(store, failed[0]);
+            assertNull(c.getStatistics());
+
+            // the failed store is not used any more
+            c.onAction(action);
+            assertEquals(2, c.getTopActions().get(LABEL).getCount());
+        } finally {
+            store.close();
+            file.delete();
+            new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX)
+                    .delete();
+            new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX)
+                    .delete();
+        }
+    }
+
+    @Test public void removeStatistics() throws IOException {
+        final File file = File.createTempFile("test", null);
+        final ActionStatisticsStore store = new ActionStatisticsStore(file);
+        try {
+            final Collector c = new Collector();
+            assertNull(c.removeStatistics());
+            c.setStatistics(store, null);
+            assertSame(store, c.removeStatistics());
+            assertNull(c.getStatistics());
+
+            final AbstractActionDesc action = new TestActionDesc();
+            action.setLabel(LABEL);
+            c.onAction(action);
+            assertEquals(0, store.getRecordCount());
+        } finally {
+            store.close();
+            file.delete();
+            new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX)
+                    .delete();
+            new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX)
+                    .delete();
+        }
+    }
+
     private static class TestActionDesc extends AbstractActionDesc {}
 }
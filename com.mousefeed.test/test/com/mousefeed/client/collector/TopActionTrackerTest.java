@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mousefeed.client.collector.TopActionTracker.Entry;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class TopActionTrackerTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_zeroCapacity() {
+        new TopActionTracker(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offer_null() {
+        new TopActionTracker(1).offer(null);
+    }
+
+    @Test public void getTop_exactBelowCapacity() {
+        final TopActionTracker t = new TopActionTracker(3);
+        assertTrue(t.getTop(5).isEmpty());
+        offer(t, "a", 2);
+        offer(t, "b", 5);
+        offer(t, "c", 1);
+
+        final List<Entry> top = t.getTop(2);
+        assertEquals(2, top.size());
+        assertEquals("b", top.get(0).getActionId());
+        assertEquals(5, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals("a", top.get(1).getActionId());
+        assertEquals(3, t.getTop(5).size());
+        assertEquals(0, t.getMaxError());
+        assertEquals(8, t.getTotal());
+    }
+
+    @Test public void offer_replacesSmallest() {
+        final TopActionTracker t = new TopActionTracker(2);
+        offer(t, "a", 3);
+        offer(t, "b", 1);
+        t.offer("c");
+
+        final Entry c = t.get("c");
+        assertEquals(2, c.getCount());
+        assertEquals(1, c.getError());
+        assertEquals(1, c.getGuaranteedCount());
+        // not tracked any more
+        final Entry b = t.get("b");
+        assertEquals(2, b.getCount());
+        assertEquals(0, b.getGuaranteedCount());
+        assertEquals(3, t.get("a").getCount());
+    }
+
+    @Test public void offer_errorBounds() {
+        final TopActionTracker t = new TopActionTracker(20);
+        final Map<String, Integer> actual = new HashMap<String, Integer>();
+        final Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            // a few frequent actions among many rare ones
+            final String id = random.nextInt(3) == 0
+                    ? "frequent" + random.nextInt(5)
+                    : "rare" + random.nextInt(1000);
+            t.offer(id);
+            final Integer count = actual.get(id);
+            actual.put(id, count == null ? 1 : count + 1);
+        }
+
+        assertTrue(t.getMaxError() <= t.getTotal() / t.getCapacity());
+        for (Entry e : t.getTop(20)) {
+            final int count = actual.get(e.getActionId());
+            assertTrue(e.getGuaranteedCount() <= count);
+            assertTrue(count <= e.getCount());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(t.getTop(5).get(i).getActionId().startsWith("frequent"));
+        }
+    }
+
+    private void offer(final TopActionTracker t, final String id,
+            final int count) {
+        for (int i = 0; i < count; i++) {
+            t.offer(id);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.junit.Assert.assertEquals;
+
+import com.mousefeed.client.collector.ActionStatisticsStore.Counter;
+import java.io.File;
+import java.io.IOException;
+import java.util.TimeZone;
+import org.apache.commons.lang.time.DateUtils;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class WindowedActionCounterTest {
+    // sample data
+    private static final String ID1 = "action 1";
+    private static final String ID2 = "action 2";
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final int START_DAY = 1000;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_zeroWindow() {
+        new WindowedActionCounter(1, 0, UTC);
+    }
+
+    @Test public void increment() {
+        final WindowedActionCounter c = new WindowedActionCounter(10, 3, UTC);
+        assertEquals(0, c.getCount(ID1, day(0)));
+        assertEquals(1, c.increment(ID1, day(0)));
+        assertEquals(2, c.increment(ID1, day(0) + 1000));
+        assertEquals(3, c.increment(ID1, day(2)));
+        assertEquals(1, c.increment(ID2, day(2)));
+
+        // the first day left the window
+        assertEquals(2, c.increment(ID1, day(3)));
+        assertEquals(2, c.getCount(ID1, day(3)));
+        assertEquals(0, c.getCount(ID1, day(10)));
+        assertEquals(1, c.increment(ID1, day(10)));
+    }
+
+    @Test public void increment_clockSetBack() {
+        final WindowedActionCounter c = new WindowedActionCounter(10, 3, UTC);
+        c.increment(ID1, day(5));
+        assertEquals(2, c.increment(ID1, day(4)));
+        // too old to fall into the window
+        assertEquals(2, c.increment(ID1, day(1)));
+    }
+
+    @Test public void increment_forgetsOldest() {
+        final WindowedActionCounter c = new WindowedActionCounter(2, 5, UTC);
+        c.increment(ID1, day(0));
+        c.increment(ID2, day(1));
+        c.increment("action 3", day(2));
+        assertEquals(0, c.getCount(ID1, day(2)));
+        assertEquals(1, c.getCount(ID2, day(2)));
+        assertEquals(1, c.getCount("action 3", day(2)));
+    }
+
+    @Test public void increment_days() {
+        final WindowedActionCounter c = new WindowedActionCounter(10, 5, UTC);
+        c.increment(ID1, day(0));
+        c.increment(ID1, day(3));
+        assertEquals(2, c.increment(ID1, day(4), 2));
+        assertEquals(2, c.increment(ID1, day(4), 1));
+        assertEquals(3, c.getCount(ID1, day(4), 4));
+        assertEquals(4, c.getCount(ID1, day(4)));
+        assertEquals(2, c.getCount(ID1, day(5), 2));
+        assertEquals(0, c.getCount(ID2, day(5), 2));
+    }
+
+    @Test public void increment_growsRing() {
+        final WindowedActionCounter c = new WindowedActionCounter(10, 30, UTC);
+        final int[] counts = new int[100];
+        int latest = 0;
+        // includes the clock set back and the days far apart
+        for (int day : new int[] {0, 1, 9, 10, 5, 30, 38, 20, 39, 80, 99}) {
+            c.increment(ID1, day(day));
+            counts[day]++;
+            latest = Math.max(latest, day);
+            for (int n = 1; n <= 30; n++) {
+                int expected = 0;
+                for (int d = Math.max(0, latest - n + 1); d <= latest; d++) {
+                    expected += counts[d];
+                }
+                assertEquals(expected, c.getCount(ID1, day(latest), n));
+            }
+        }
+        assertEquals(1, c.getCount(ID1, day(128)));
+        assertEquals(0, c.getCount(ID1, day(129)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getCount_daysOutsideWindow() {
+        new WindowedActionCounter(10, 5, UTC).getCount(ID1, day(0), 6);
+    }
+
+    @Test public void load() throws IOException {
+        final File file = File.createTempFile("test", null);
+        final ActionStatisticsStore store = new ActionStatisticsStore(file, UTC);
+        try {
+            store.increment(ID1, day(0), Counter.MOUSE);
+            store.increment(ID1, day(1), Counter.MOUSE);
+            store.increment(ID1, day(1), Counter.MOUSE);
+            store.increment(ID2, day(1), Counter.KEYBOARD);
+
+            final WindowedActionCounter c =
+                    new WindowedActionCounter(10, 2, UTC);
+            c.load(store, day(2));
+            assertEquals(2, c.getCount(ID1, day(2)));
+            assertEquals(0, c.getCount(ID2, day(2)));
+            assertEquals(3, c.increment(ID1, day(2)));
+        } finally {
+            store.close();
+            file.delete();
+            new File(file.getPath() + ActionStatisticsStore.IDS_SUFFIX).delete();
+            new File(file.getPath() + ActionStatisticsStore.RECORDS_SUFFIX).delete();
+        }
+    }
+
+    private long day(final int i) {
+        return (START_DAY + i) * DateUtils.MILLIS_PER_DAY;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import org.eclipse.core.commands.Category;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandManager;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.core.commands.contexts.ContextManager;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.Scheme;
+import org.eclipse.jface.bindings.keys.KeyBinding;
+import org.eclipse.jface.bindings.keys.KeySequence;
+import org.eclipse.jface.bindings.keys.ParseException;
+import org.eclipse.jface.commands.ActionHandler;
+import org.eclipse.ui.activities.IActivityManager;
+import org.eclipse.ui.activities.IIdentifier;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class ActionActionDescGeneratorTest {
+    private static final String SCHEME_ID = "scheme";
+    private static final String CONTEXT_ID = "context";
+
+    private CommandManager commandManager;
+    private BindingManager bindingManager;
+    private Category category;
+    private ActionActionDescGenerator generator;
+
+    @Before public void setUp() throws NotDefinedException {
+        final ContextManager contextManager = new ContextManager();
+        commandManager = new CommandManager();
+        bindingManager = new BindingManager(contextManager, commandManager);
+        contextManager.getContext(CONTEXT_ID).define("Context", null, null);
+        contextManager.setActiveContextIds(Collections.singleton(CONTEXT_ID));
+        final Scheme scheme = bindingManager.getScheme(SCHEME_ID);
+        scheme.define("Scheme", null, null);
+        bindingManager.setActiveScheme(scheme);
+        category = commandManager.getCategory("category");
+        category.define("Category", null);
+        generator = new ActionActionDescGenerator(
+                new ActionBindingIndex(bindingManager), enabledActivities());
+    }
+
+    @Test public void fromActionBinding_sharedClass() throws ParseException {
+        final Command command = commandManager.getCommand("c1");
+        command.define("c1", null, category);
+        final TestAction bound = new TestAction("def1");
+        command.setHandler(new ActionHandler(bound));
+        bindingManager.setBindings(new Binding[] {new KeyBinding(
+                KeySequence.getInstance("CTRL+1"),
+                new ParameterizedCommand(command, null),
+                SCHEME_ID, CONTEXT_ID, null, null, null, Binding.SYSTEM)});
+
+        assertEquals(KeySequence.getInstance("CTRL+1").toString(),
+                generator.fromActionBinding(bound));
+        assertEquals(command, generator.getBindingCommand());
+        // same class, other or no definition id
+        assertNull(generator.fromActionBinding(new TestAction("def2")));
+        assertNull(generator.fromActionBinding(new TestAction(null)));
+    }
+
+    /**
+     * @return activity manager, which enables all the commands.
+     */
+    private static IActivityManager enabledActivities() {
+        final IIdentifier identifier = (IIdentifier) proxy(IIdentifier.class,
+                null);
+        return (IActivityManager) proxy(IActivityManager.class, identifier);
+    }
+
+    /**
+     * @param c the interface to implement.
+     * @param identifier returned by <code>getIdentifier</code>.
+     * @return proxy, which methods return <code>true</code>, the identifier
+     * or <code>null</code>.
+     */
+    private static Object proxy(final Class<?> c, final Object identifier) {
+        return Proxy.newProxyInstance(c.getClassLoader(), new Class<?>[] {c},
+                new InvocationHandler() {
+                    public Object invoke(final Object p, final Method m,
+                            final Object[] args) {
+                        if (m.getReturnType() == boolean.class) {
+                            return Boolean.TRUE;
+                        }
+                        return "getIdentifier".equals(m.getName())
+                                ? identifier : null;
+                    }
+                });
+    }
+
+    private static class TestAction extends Action {
+        TestAction(final String definitionId) {
+            setActionDefinitionId(definitionId);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.core.commands.Category;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandManager;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.core.commands.contexts.ContextManager;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.Scheme;
+import org.eclipse.jface.bindings.keys.KeyBinding;
+import org.eclipse.jface.bindings.keys.KeySequence;
+import org.eclipse.jface.bindings.keys.ParseException;
+import org.eclipse.jface.commands.ActionHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class ActionBindingIndexTest {
+    private static final String SCHEME_ID = "scheme";
+    private static final String CONTEXT_ID = "context";
+
+    private CommandManager commandManager;
+    private BindingManager bindingManager;
+    private Category category;
+    private ActionBindingIndex index;
+
+    @Before public void setUp() throws NotDefinedException {
+        final ContextManager contextManager = new ContextManager();
+        commandManager = new CommandManager();
+        bindingManager = new BindingManager(contextManager, commandManager);
+        contextManager.getContext(CONTEXT_ID).define("Context", null, null);
+        contextManager.setActiveContextIds(Collections.singleton(CONTEXT_ID));
+        final Scheme scheme = bindingManager.getScheme(SCHEME_ID);
+        scheme.define("Scheme", null, null);
+        bindingManager.setActiveScheme(scheme);
+        category = commandManager.getCategory("category");
+        category.define("Category", null);
+        index = new ActionBindingIndex(bindingManager);
+    }
+
+    @Test public void byClassAndDefinition() throws ParseException {
+        final Command c1 = define("c1");
+        final Command c2 = define("c2");
+        final IAction a1 = new Action1("def1");
+        final IAction a2 = new Action1("def2");
+        c1.setHandler(new ActionHandler(a1));
+        c2.setHandler(new ActionHandler(a2));
+        bind(c1, "CTRL+1", c2, "CTRL+2");
+
+        assertEquals(2, index.getEntries(Action1.class).size());
+        assertSequences(index.getEntries(Action1.class, "def1"), "CTRL+1");
+        assertSequences(index.getEntries(Action1.class, "def2"), "CTRL+2");
+        assertTrue(index.getEntries(Action1.class, "def3").isEmpty());
+        assertTrue(index.getEntries(Action2.class).isEmpty());
+        assertSame(a1, index.getEntries(Action1.class, "def1").get(0)
+                .getBoundAction());
+    }
+
+    @Test public void handlerChangeUpdatesOnlyTheCommand()
+            throws ParseException {
+        final Command c1 = define("c1");
+        final Command c2 = define("c2");
+        c1.setHandler(new ActionHandler(new Action1(null)));
+        c2.setHandler(new ActionHandler(new Action1(null)));
+        bind(c1, "CTRL+1", c2, "CTRL+2");
+        assertSequences(index.getEntries(Action1.class), "CTRL+1", "CTRL+2");
+
+        c1.setHandler(new ActionHandler(new Action2()));
+        assertSequences(index.getEntries(Action1.class), "CTRL+2");
+        assertSequences(index.getEntries(Action2.class), "CTRL+1");
+
+        // the binding manager order is kept
+        c1.setHandler(new ActionHandler(new Action1(null)));
+        assertSequences(index.getEntries(Action1.class), "CTRL+1", "CTRL+2");
+        assertTrue(index.getEntries(Action2.class).isEmpty());
+
+        c1.setHandler(null);
+        assertSequences(index.getEntries(Action1.class), "CTRL+2");
+    }
+
+    @Test public void bindingsChange() throws ParseException {
+        final Command c1 = define("c1");
+        final Command c2 = define("c2");
+        c1.setHandler(new ActionHandler(new Action1(null)));
+        c2.setHandler(new ActionHandler(new Action2()));
+        bind(c1, "CTRL+1");
+        assertSequences(index.getEntries(Action1.class), "CTRL+1");
+        assertTrue(index.getEntries(Action2.class).isEmpty());
+
+        bind(c2, "CTRL+2");
+        assertTrue(index.getEntries(Action1.class).isEmpty());
+        assertSequences(index.getEntries(Action2.class), "CTRL+2");
+    }
+
+    private Command define(final String id) {
+        final Command command = commandManager.getCommand(id);
+        command.define(id, null, category);
+        return command;
+    }
+
+    /**
+     * Sets the bindings.
+     * @param commandsAndSequences pairs of the command and the key sequence.
+     */
+    private void bind(final Object... commandsAndSequences)
+            throws ParseException {
+        final Binding[] bindings = new Binding[commandsAndSequences.length / 2];
+        for (int i = 0; i < bindings.length; i++) {
+            bindings[i] = new KeyBinding(
+                    KeySequence.getInstance(
+                            (String) commandsAndSequences[i * 2 + 1]),
+                    new ParameterizedCommand(
+                            (Command) commandsAndSequences[i * 2], null),
+                    SCHEME_ID, CONTEXT_ID, null, null, null, Binding.SYSTEM);
+        }
+        bindingManager.setBindings(bindings);
+    }
+
+    private void assertSequences(final List<ActionBindingIndex.Entry> entries,
+            final String... sequences) throws ParseException {
+        assertEquals(sequences.length, entries.size());
+        for (int i = 0; i < sequences.length; i++) {
+            assertEquals(KeySequence.getInstance(sequences[i]),
+                    entries.get(i).getTriggerSequence());
+        }
+    }
+
+    private static class Action1 extends Action {
+        Action1(final String definitionId) {
+            setActionDefinitionId(definitionId);
+        }
+    }
+
+    private static class Action2 extends Action {
+    }
+}
@@ -21,6 +21,8 @@ package com.mousefeed.eclipse;
 import com.mousefeed.eclipse.preferences.ActionInvocationModeTableCellModifierTest;
 import com.mousefeed.eclipse.preferences.ActionInvocationModeTableLabelProviderTest;
 import com.mousefeed.eclipse.preferences.ActionOnWrongInvocationModeTest;
+import com.mousefeed.eclipse.preferences.AtomicFileWriterTest;
+import com.mousefeed.eclipse.preferences.LogActionOverrideStoreTest;
 import com.mousefeed.eclipse.preferences.PreferenceAccessorTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -31,10 +33,14 @@ import org.junit.runners.Suite.SuiteClasses;
  * @author Robert Wloch (robert@rowlo.de)
  */
 @RunWith(Suite.class)
-@SuiteClasses({ ActionDescImplTest.class,
+@SuiteClasses({ ActionActionDescGeneratorTest.class,
+        ActionBindingIndexTest.class, ActionDescImplTest.class,
+        ConfigurableCommandCacheTest.class,
         ActionInvocationModeTableCellModifierTest.class,
         ActionInvocationModeTableLabelProviderTest.class,
-        ActionOnWrongInvocationModeTest.class, PreferenceAccessorTest.class })
+        ActionOnWrongInvocationModeTest.class, PreferenceAccessorTest.class,
+        AtomicFileWriterTest.class, LogActionOverrideStoreTest.class,
+        NagSchedulerTest.class })
 public class AllEclipseTests {
 
 }
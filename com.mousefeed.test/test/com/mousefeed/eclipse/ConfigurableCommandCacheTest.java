@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.eclipse.core.commands.Category;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandManager;
+import org.eclipse.core.commands.IParameter;
+import org.eclipse.core.commands.IParameterValues;
+import org.eclipse.core.commands.ParameterValuesException;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class ConfigurableCommandCacheTest {
+    private CommandManager commandManager;
+    private Category category;
+    private ConfigurableCommandCache cache;
+
+    @Before public void setUp() {
+        commandManager = new CommandManager();
+        category = commandManager.getCategory("category");
+        category.define("Category", null);
+        cache = new ConfigurableCommandCache();
+    }
+
+    @Test public void undefined() {
+        assertFalse(cache.isConfigurable(commandManager.getCommand("c")));
+    }
+
+    @Test public void noParameters() throws NotDefinedException {
+        final Command command = define("c");
+        assertEquals(new ParameterizedCommand(command, null),
+                cache.getParameterizedCommand(command));
+        assertSameAsGenerated(command);
+    }
+
+    @Test public void parameters() throws NotDefinedException {
+        assertSameAsGenerated(define("c1",
+                new Parameter("p", false, "a", "b")));
+        assertSameAsGenerated(define("c2",
+                new Parameter("p1", true, "a"),
+                new Parameter("p2", false, "b", "c")));
+        assertSameAsGenerated(define("c3",
+                new Parameter("p1", false, "a"),
+                new Parameter("p2", false)));
+        assertSameAsGenerated(define("c4",
+                new Parameter("p1", false),
+                new Parameter("p2", false, "a")));
+        assertSameAsGenerated(define("c5",
+                new Parameter("p1", true)));
+        assertSameAsGenerated(define("c6", new Parameter("p1", false)));
+    }
+
+    @Test public void invalidatedOnDefinitionChange()
+            throws NotDefinedException {
+        final Command command = define("c", new Parameter("p", false));
+        assertFalse(cache.isConfigurable(command));
+        command.define("c", null, category, new IParameter[] {
+                new Parameter("p", false, "a")});
+        assertTrue(cache.isConfigurable(command));
+        command.undefine();
+        assertNull(cache.getParameterizedCommand(command));
+    }
+
+    private Command define(final String id, final IParameter... parameters) {
+        final Command command = commandManager.getCommand(id);
+        command.define(id, null, category,
+                parameters.length == 0 ? null : parameters);
+        return command;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertSameAsGenerated(final Command command)
+            throws NotDefinedException {
+        final Collection<ParameterizedCommand> generated =
+                ParameterizedCommand.generateCombinations(command);
+        final ParameterizedCommand first = cache.getParameterizedCommand(command);
+        if (generated.isEmpty()) {
+            assertNull(first);
+        } else {
+            assertEquals(generated.iterator().next(), first);
+        }
+    }
+
+    private static class Parameter implements IParameter, IParameterValues {
+        private final String id;
+        private final boolean optional;
+        private final Map<String, String> values =
+                new LinkedHashMap<String, String>();
+
+        Parameter(final String id, final boolean optional,
+                final String... values) {
+            this.id = id;
+            this.optional = optional;
+            for (String value : values) {
+                this.values.put(value.toUpperCase(), value);
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return id;
+        }
+
+        public IParameterValues getValues() throws ParameterValuesException {
+            return this;
+        }
+
+        public boolean isOptional() {
+            return optional;
+        }
+
+        @SuppressWarnings("rawtypes")
+        public Map getParameterValues() {
+            return values;
+        }
+    }
+}
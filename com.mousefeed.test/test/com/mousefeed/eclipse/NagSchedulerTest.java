@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mousefeed.eclipse.NagScheduler.Nag;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class NagSchedulerTest {
+    private static final long DELAY = 1000;
+
+    @Test public void offer_debouncesSameReminder() {
+        final NagScheduler s = new NagScheduler();
+        assertTrue(s.offer(reminder("Save", "save", false), 0, DELAY));
+        assertTrue(s.offer(reminder("Save", "save", false), 1, DELAY));
+        final List<Nag> nags = s.drain(2, DELAY, 3);
+        assertEquals(1, nags.size());
+        assertFalse(s.hasPending());
+
+        assertFalse(s.offer(reminder("Save", "save", false), 500, DELAY));
+        assertFalse(s.hasPending());
+        assertTrue(s.offer(reminder("Save", "save", false), 1002, DELAY));
+    }
+
+    @Test public void offer_alwaysAcceptsCancelled() {
+        final NagScheduler s = new NagScheduler();
+        assertTrue(s.offer(reminder("Save", "save", true), 0, DELAY));
+        assertEquals(1, s.drain(0, DELAY, 3).size());
+        assertTrue(s.offer(reminder("Save", "save", true), 1, DELAY));
+        final List<Nag> nags = s.drain(1, DELAY, 3);
+        assertEquals(1, nags.size());
+        assertTrue(nags.get(0).isCancelled());
+    }
+
+    @Test public void offer_keyedOnActionIdAndKind() {
+        final NagScheduler s = new NagScheduler();
+        s.offer(reminder("Save", "save", false), 0, DELAY);
+        s.offer(reminder("Save", "saveAs", false), 0, DELAY);
+        s.offer(reminder("Save", "save", true), 0, DELAY);
+        assertEquals(3, s.drain(0, DELAY, 3).size());
+
+        // actions without an id are told apart by label
+        s.offer(Nag.reminder("Copy", null, "Ctrl+C", false), 0, DELAY);
+        s.offer(Nag.reminder("Paste", null, "Ctrl+C", false), 0, DELAY);
+        assertEquals(2, s.drain(0, DELAY, 3).size());
+    }
+
+    @Test public void drain_mergesDifferentReminders() {
+        final NagScheduler s = new NagScheduler();
+        s.offer(reminder("Save", "save", false), 0, DELAY);
+        s.offer(Nag.shortcutSuggestion("Run", "run"), 0, DELAY);
+        s.offer(reminder("Copy", "copy", false), 0, DELAY);
+        s.offer(reminder("Paste", "paste", false), 0, DELAY);
+        final List<Nag> nags = s.drain(0, DELAY, 2);
+        assertEquals(2, nags.size());
+        assertEquals("Copy", nags.get(0).getActionName());
+        assertEquals("Paste", nags.get(1).getActionName());
+
+        // the dropped reminders are considered shown
+        assertFalse(s.offer(reminder("Save", "save", false), 1, DELAY));
+
+        // the suggestion waits for the reminders
+        assertTrue(s.hasPending());
+        final List<Nag> next = s.drain(1, DELAY, 2);
+        assertEquals(1, next.size());
+        assertEquals("run", next.get(0).getActionId());
+        assertFalse(s.hasPending());
+        assertFalse(s.offer(Nag.shortcutSuggestion("Run", "run"), 2, DELAY));
+    }
+
+    @Test public void drain_keepsCancelledOverMax() {
+        final NagScheduler s = new NagScheduler();
+        s.offer(reminder("Save", "save", true), 0, DELAY);
+        s.offer(reminder("Copy", "copy", false), 0, DELAY);
+        s.offer(reminder("Paste", "paste", false), 0, DELAY);
+        s.offer(reminder("Cut", "cut", true), 0, DELAY);
+        List<Nag> nags = s.drain(0, DELAY, 2);
+        assertEquals(2, nags.size());
+        assertEquals("Save", nags.get(0).getActionName());
+        assertEquals("Cut", nags.get(1).getActionName());
+        assertFalse(s.hasPending());
+
+        // the cancelled reminders, which don't fit, are shown next
+        s.offer(reminder("Save", "save", true), 1, DELAY);
+        s.offer(reminder("Copy", "copy", true), 1, DELAY);
+        s.offer(reminder("Paste", "paste", false), 1, DELAY);
+        s.offer(reminder("Cut", "cut", true), 1, DELAY);
+        nags = s.drain(1, DELAY, 2);
+        assertEquals(2, nags.size());
+        assertEquals("Copy", nags.get(0).getActionName());
+        assertEquals("Cut", nags.get(1).getActionName());
+        nags = s.drain(2, DELAY, 2);
+        assertEquals(1, nags.size());
+        assertEquals("Save", nags.get(0).getActionName());
+        assertFalse(s.hasPending());
+    }
+
+    @Test public void drain_suggestionOnlyWithoutReminders() {
+        final NagScheduler s = new NagScheduler();
+        s.offer(Nag.shortcutSuggestion("Run", "run"), 0, DELAY);
+        s.offer(Nag.shortcutSuggestion("Debug", "debug"), 0, DELAY);
+        final List<Nag> nags = s.drain(0, DELAY, 3);
+        assertEquals(1, nags.size());
+        assertEquals("debug", nags.get(0).getActionId());
+        assertTrue(s.drain(1, DELAY, 3).isEmpty());
+    }
+
+    @Test public void offer_noDelay() {
+        final NagScheduler s = new NagScheduler();
+        s.offer(reminder("Save", "save", false), 0, 0);
+        s.drain(0, 0, 1);
+        assertTrue(s.offer(reminder("Save", "save", false), 0, 0));
+    }
+
+    /**
+     * Creates a reminder with a dummy accelerator.
+     */
+    private static Nag reminder(final String actionName,
+            final String actionId, final boolean cancelled) {
+        return Nag.reminder(actionName, actionId, "Ctrl+" + actionName,
+                cancelled);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class AtomicFileWriterTest {
+    private File file;
+
+    @Before public void initFile() throws IOException {
+        file = File.createTempFile("test", null);
+    }
+
+    @After public void removeFile() {
+        file.delete();
+    }
+
+    @Test public void writeAtomically_replacesContent() throws IOException {
+        AtomicFileWriter.writeAtomically(file, new AtomicFileWriter.Content() {
+            public void writeTo(final OutputStream out) throws IOException {
+                out.write("first".getBytes("UTF-8"));
+            }
+        });
+        assertEquals("first", readLine(file));
+
+        AtomicFileWriter.writeAtomically(file, new AtomicFileWriter.Content() {
+            public void writeTo(final OutputStream out) throws IOException {
+                out.write("second".getBytes("UTF-8"));
+            }
+        });
+        assertEquals("second", readLine(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test public void writeAtomically_text() throws IOException {
+        AtomicFileWriter.writeAtomically(file, "UTF-8",
+                new AtomicFileWriter.TextContent() {
+                    public void writeTo(final Writer writer)
+                            throws IOException {
+                        writer.write("caf\u00e9");
+                    }
+                });
+        assertEquals("caf\u00e9", readLine(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAtomically_failureKeepsFile() throws IOException {
+        AtomicFileWriter.writeAtomically(file, new AtomicFileWriter.Content() {
+            public void writeTo(final OutputStream out) throws IOException {
+                out.write("content".getBytes("UTF-8"));
+            }
+        });
+        try {
+            AtomicFileWriter.writeAtomically(file,
+                    new AtomicFileWriter.Content() {
+                        public void writeTo(final OutputStream out)
+                                throws IOException {
+                            out.write("partial".getBytes("UTF-8"));
+                            throw new IOException("test");
+                        }
+                    });
+        } finally {
+            assertEquals("content", readLine(file));
+            new File(file.getPath() + ".tmp").delete();
+        }
+    }
+
+    private String readLine(final File f) throws IOException {
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(f), "UTF-8"));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Sigasi
+ */
+public class LogActionOverrideStoreTest {
+    // sample data
+    private static final String ID1 = "action \\t <> &id \n\t\r\"1!";
+    private static final String ID2 = "action 2";
+    private File file;
+    private File xmlFile;
+
+    @Before public void initFiles() throws IOException {
+        file = File.createTempFile("test", ".log");
+        file.delete();
+        xmlFile = File.createTempFile("test", ".xml");
+    }
+
+    @After public void removeFiles() {
+        file.delete();
+        xmlFile.delete();
+    }
+
+    @Test public void putAndRemove() {
+        final LogActionOverrideStore store = new LogActionOverrideStore(file, null);
+        assertTrue(store.load().isEmpty());
+
+        store.put(createMode(ID1, "Label\t1", OnWrongInvocationMode.ENFORCE));
+        store.put(createMode(ID2, "Label 2", OnWrongInvocationMode.REMIND));
+        store.put(createMode(ID1, "Label\t1", OnWrongInvocationMode.DO_NOTHING));
+        store.flush();
+
+        Map<String, ActionOnWrongInvocationMode> modes =
+                toMap(new LogActionOverrideStore(file, null).load());
+        assertEquals(2, modes.size());
+        assertEquals("Label\t1", modes.get(ID1).getLabel());
+        assertEquals(OnWrongInvocationMode.DO_NOTHING,
+                modes.get(ID1).getOnWrongInvocationMode());
+        assertEquals(OnWrongInvocationMode.REMIND,
+                modes.get(ID2).getOnWrongInvocationMode());
+
+        store.remove(ID1);
+        store.flush();
+        modes = toMap(new LogActionOverrideStore(file, null).load());
+        assertEquals(1, modes.size());
+        assertFalse(modes.containsKey(ID1));
+    }
+
+    @Test public void load_migratesXml() {
+        final XmlActionOverrideStore xmlStore =
+                new XmlActionOverrideStore(xmlFile);
+        xmlStore.put(createMode(ID1, "Label", OnWrongInvocationMode.ENFORCE));
+        xmlStore.flush();
+
+        final LogActionOverrideStore store =
+                new LogActionOverrideStore(file, new XmlActionOverrideStore(xmlFile));
+        assertEquals(1, store.load().size());
+        store.flush();
+        assertTrue(file.exists());
+
+        // the migration happens only once
+        xmlFile.delete();
+        final Map<String, ActionOnWrongInvocationMode> modes =
+                toMap(new LogActionOverrideStore(file,
+                        new XmlActionOverrideStore(xmlFile)).load());
+        assertEquals(OnWrongInvocationMode.ENFORCE,
+                modes.get(ID1).getOnWrongInvocationMode());
+    }
+
+    @Test public void put_compactsLog() {
+        final LogActionOverrideStore store = new LogActionOverrideStore(file, null);
+        store.load();
+        final OnWrongInvocationMode[] values = OnWrongInvocationMode.values();
+        for (int i = 0; i < 1000; i++) {
+            store.put(createMode(ID1, "Label", values[i % values.length]));
+            store.flush();
+        }
+        // one record per line
+        final int recordLength = LogActionOverrideStore.encode(
+                createMode(ID1, "Label", OnWrongInvocationMode.ENFORCE))
+                .length() + 1;
+        assertTrue(file.length() < 200 * recordLength);
+
+        final Collection<ActionOnWrongInvocationMode> modes =
+                new LogActionOverrideStore(file, null).load();
+        assertEquals(1, modes.size());
+        assertEquals(values[999 % values.length],
+                modes.iterator().next().getOnWrongInvocationMode());
+    }
+
+    @Test public void put_afterTruncatedRecord() throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("+truncated\tLabel\tENF".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        final LogActionOverrideStore store = new LogActionOverrideStore(file, null);
+        assertTrue(store.load().isEmpty());
+        store.put(createMode(ID1, "Label", OnWrongInvocationMode.ENFORCE));
+        store.flush();
+
+        final Map<String, ActionOnWrongInvocationMode> modes =
+                toMap(new LogActionOverrideStore(file, null).load());
+        assertEquals(1, modes.size());
+        assertEquals(OnWrongInvocationMode.ENFORCE,
+                modes.get(ID1).getOnWrongInvocationMode());
+    }
+
+    @Test public void flush_keepsRecordsOnFailure() throws IOException {
+        final LogActionOverrideStore store = new LogActionOverrideStore(file, null);
+        store.load();
+        // a non-empty directory in place of the log fails the writes
+        assertTrue(file.mkdir());
+        final File child = new File(file, "child");
+        assertTrue(child.createNewFile());
+        store.put(createMode(ID1, "Label", OnWrongInvocationMode.ENFORCE));
+        assertFlushFails(store);
+        store.replaceAll(Arrays.asList(
+                createMode(ID2, "Label", OnWrongInvocationMode.REMIND)));
+        assertFlushFails(store);
+        store.put(createMode(ID1, "Label", OnWrongInvocationMode.ENFORCE));
+        assertFlushFails(store);
+
+        assertTrue(child.delete());
+        assertTrue(file.delete());
+        store.flush();
+        final Map<String, ActionOnWrongInvocationMode> modes =
+                toMap(new LogActionOverrideStore(file, null).load());
+        assertEquals(2, modes.size());
+        assertEquals(OnWrongInvocationMode.REMIND,
+                modes.get(ID2).getOnWrongInvocationMode());
+    }
+
+    @Test public void replaceAll() {
+        final LogActionOverrideStore store = new LogActionOverrideStore(file, null);
+        store.put(createMode(ID1, "Label", OnWrongInvocationMode.ENFORCE));
+        store.replaceAll(Arrays.asList(
+                createMode(ID2, "Label", OnWrongInvocationMode.REMIND)));
+        store.flush();
+
+        final Map<String, ActionOnWrongInvocationMode> modes =
+                toMap(new LogActionOverrideStore(file, null).load());
+        assertEquals(1, modes.size());
+        assertTrue(modes.containsKey(ID2));
+    }
+
+    @Test public void escape() {
+        assertEquals(Arrays.asList(ID1, "b", ""),
+                LogActionOverrideStore.unescape(
+                        LogActionOverrideStore.escape(ID1) + "\tb\t"));
+    }
+
+    private ActionOnWrongInvocationMode createMode(final String id,
+            final String label, final OnWrongInvocationMode value) {
+        final ActionOnWrongInvocationMode mode =
+                new ActionOnWrongInvocationMode();
+        mode.setId(id);
+        mode.setLabel(label);
+        mode.setOnWrongInvocationMode(value);
+        return mode;
+    }
+
+    private void assertFlushFails(final LogActionOverrideStore store) {
+        try {
+            store.flush();
+        } catch (final RuntimeException e) {
+            // the failure is thrown instead of logged without the plugin
+        }
+        assertTrue(file.isDirectory());
+    }
+
+    private Map<String, ActionOnWrongInvocationMode> toMap(
+            final Collection<ActionOnWrongInvocationMode> modes) {
+        final Map<String, ActionOnWrongInvocationMode> map =
+                new HashMap<String, ActionOnWrongInvocationMode>();
+        for (ActionOnWrongInvocationMode mode : modes) {
+            map.put(mode.getId(), mode);
+        }
+        return map;
+    }
+}
@@ -19,6 +19,7 @@
 package com.mousefeed.eclipse.preferences;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -26,6 +27,10 @@ import com.mousefeed.client.OnWrongInvocationMode;
 import com.mousefeed.eclipse.ActionDescImpl;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -63,6 +68,8 @@ public class PreferenceAccessorTest {
             mode.setOnWrongInvocationMode(OnWrongInvocationMode.ENFORCE);
             // is saved
             preferences.setOnWrongInvocationMode(mode);
+            // in background
+            preferences.flush();
         }
         assertTrue(FILE.length() > 0);
         assertEquals(OnWrongInvocationMode.ENFORCE,
@@ -77,11 +84,14 @@ public class PreferenceAccessorTest {
                     new ActionOnWrongInvocationMode(actionDesc);
             mode.setOnWrongInvocationMode(OnWrongInvocationMode.DO_NOTHING);
             preferences.setOnWrongInvocationMode(mode);
+            preferences.flush();
         }
         
         // the saved value is correctly retrieved
         {
             final PreferenceAccessor p = new TestPreferenceAccessor();
+            // loaded in background
+            p.waitUntilLoaded();
             assertEquals(OnWrongInvocationMode.ENFORCE,
                     p.getOnWrongInvocationMode(ID1));
             assertEquals(OnWrongInvocationMode.DO_NOTHING,
@@ -93,24 +103,154 @@ public class PreferenceAccessorTest {
                 preferences.getOnWrongInvocationMode(ID1));
         preferences.removeOnWrongInvocaitonMode(ID1);
         assertNull(preferences.getOnWrongInvocationMode(ID1));
+        preferences.flush();
         
         // the saved value is correctly retrieved
         {
             final PreferenceAccessor p = new TestPreferenceAccessor();
+            // loaded in background
+            p.waitUntilLoaded();
             assertNull(p.getOnWrongInvocationMode(ID1));
             assertEquals(OnWrongInvocationMode.DO_NOTHING,
                     p.getOnWrongInvocationMode(ID2));
         }
     }
 
+    @Test public void actionOverrides() {
+        final PreferenceAccessor preferences = new TestPreferenceAccessor();
+        final ActionOverrides initial = preferences.getActionOverrides();
+        final List<ActionOverrides> notified = new ArrayList<ActionOverrides>();
+        final ActionOverridesListener listener = new ActionOverridesListener() {
+            public void actionOverridesChanged(final ActionOverrides overrides) {
+                notified.add(overrides);
+            }
+        };
+        preferences.addActionOverridesListener(listener);
+
+        final ActionOnWrongInvocationMode mode =
+                new ActionOnWrongInvocationMode();
+        mode.setLabel("Label");
+        mode.setId(ID1);
+        mode.setOnWrongInvocationMode(OnWrongInvocationMode.ENFORCE);
+        preferences.setOnWrongInvocationMode(mode);
+        preferences.setActionsOnWrongInvocationMode(
+                Collections.<ActionOnWrongInvocationMode>emptyList());
+
+        // the snapshots are not changed
+        assertTrue(initial.getAll().isEmpty());
+        assertEquals(2, notified.size());
+        assertEquals(OnWrongInvocationMode.ENFORCE,
+                notified.get(0).get(ID1).getOnWrongInvocationMode());
+        assertTrue(notified.get(1).getAll().isEmpty());
+        assertTrue(initial.getVersion() < notified.get(0).getVersion());
+        assertTrue(notified.get(0).getVersion()
+                < notified.get(1).getVersion());
+        assertEquals(preferences.getActionOverrides(), notified.get(1));
+
+        preferences.removeActionOverridesListener(listener);
+        preferences.setOnWrongInvocationMode(mode);
+        assertEquals(2, notified.size());
+        assertFalse(preferences.getActionOverrides().getAll().isEmpty());
+        preferences.flush();
+    }
+
+    @Test public void loadFailure_changesNotSaved() {
+        final PreferenceAccessor preferences = new PreferenceAccessor() {
+            @Override
+            ActionOverrideStore createActionOverrideStore() {
+                return new UnreadableStore();
+            }
+        };
+        preferences.waitUntilLoaded();
+        assertTrue(preferences.getActionOverrides().getAll().isEmpty());
+
+        final ActionOnWrongInvocationMode mode =
+                new ActionOnWrongInvocationMode();
+        mode.setLabel("Label");
+        mode.setId(ID1);
+        mode.setOnWrongInvocationMode(OnWrongInvocationMode.ENFORCE);
+        // the store fails if the changes are saved
+        preferences.setOnWrongInvocationMode(mode);
+        preferences.setActionsOnWrongInvocationMode(
+                Collections.<ActionOnWrongInvocationMode>emptyList());
+        preferences.setOnWrongInvocationMode(mode);
+        preferences.removeOnWrongInvocaitonMode(ID2);
+        // the changes are applied for the session
+        assertEquals(OnWrongInvocationMode.ENFORCE,
+                preferences.getOnWrongInvocationMode(ID1));
+    }
+
+    @Test public void feedbackSettings_refreshedOnChange() {
+        final PreferenceAccessor preferences = new TestPreferenceAccessor();
+        final FeedbackSettings initial = preferences.getFeedbackSettings();
+        assertTrue(initial == preferences.getFeedbackSettings());
+        final int threshold = initial.getConfigureKeyboardShortcutThreshold();
+        final int window = initial.getConfigureKeyboardShortcutWindow();
+        final OnWrongInvocationMode mode = initial.getOnWrongInvocationMode();
+        final int fontScale = initial.getPopupFontScale();
+        try {
+            preferences.storeConfigureKeyboardShortcutThreshold(threshold + 1);
+            preferences.storeConfigureKeyboardShortcutWindow(window + 1);
+            preferences.storeOnWrongInvocationMode(
+                    OnWrongInvocationMode.ENFORCE);
+            preferences.storePopupFontScale(fontScale + 1);
+            assertEquals(threshold + 1,
+                    preferences.getConfigureKeyboardShortcutThreshold());
+            assertEquals(window + 1,
+                    preferences.getConfigureKeyboardShortcutWindow());
+            assertEquals(OnWrongInvocationMode.ENFORCE,
+                    preferences.getFeedbackSettings().getOnWrongInvocationMode());
+            assertEquals(fontScale + 1, preferences.getPopupFontScale());
+            // the snapshot is not changed
+            assertEquals(threshold,
+                    initial.getConfigureKeyboardShortcutThreshold());
+        } finally {
+            preferences.storeConfigureKeyboardShortcutThreshold(threshold);
+            preferences.storeConfigureKeyboardShortcutWindow(window);
+            preferences.storeOnWrongInvocationMode(mode);
+            preferences.storePopupFontScale(fontScale);
+        }
+    }
+
     /**
      * Provides the provided file as the actions invocation mode file.
      */
     private class TestPreferenceAccessor extends PreferenceAccessor {
         // see base
         @Override
-        File getActionsWrongInvocationModeFile() {
+        File getActionOverridesFile() {
             return FILE;
         }
+
+        // see base
+        @Override
+        File getActionsWrongInvocationModeFile() {
+            return new File(FILE.getPath() + ".xml");
+        }
+    }
+
+    /**
+     * Fails to load and must not be changed.
+     */
+    private static class UnreadableStore implements ActionOverrideStore {
+        public Collection<ActionOnWrongInvocationMode> load() {
+            throw new IllegalStateException("Unreadable");
+        }
+
+        public void put(final ActionOnWrongInvocationMode mode) {
+            throw new AssertionError();
+        }
+
+        public void remove(final String actionId) {
+            throw new AssertionError();
+        }
+
+        public void replaceAll(
+                final Collection<ActionOnWrongInvocationMode> modes) {
+            throw new AssertionError();
+        }
+
+        public void flush() {
+        }
     }
 }
@@ -21,13 +21,19 @@ package com.mousefeed.client;
 import static org.apache.commons.lang.StringUtils.isBlank;
 
 import java.text.MessageFormat;
+import java.util.Locale;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Provides localized messages. Messages are retrieved with
  * {@link #get(String, Object...)}. If it is be provided with a class to
  * retrieve the messages for, one can drop this class name from the key names.
+ * The resolved messages are cached by key, with the message format compiled
+ * once per locale, so a repeated lookup does not search the bundle or parse
+ * the message again.
  * 
  * @see #get(String, Object...)
  * @author Andriy Palamarchuk
@@ -50,6 +56,13 @@ public class Messages {
      */
     private final Class<?> forClass;
 
+    /**
+     * The resolved messages by the key passed to
+     * {@link #get(String, Object...)}.
+     */
+    private final ConcurrentMap<String, Message> messages =
+            new ConcurrentHashMap<String, Message>();
+
     /**
      * Constructor. For an object created by this constructor it is necessary to
      * pass full message key to {@link #get(String, Object...)}.
@@ -102,27 +115,71 @@ public class Messages {
             throw new NullPointerException("Blank key was provided: '" + key
                     + "'");
         }
-        try {
-            final String forClassKey = forClass.getSimpleName() + "." + key;
-            return getFromBundle(forClassKey, arguments);
-        } catch (final MissingResourceException e) {
-            return getFromBundle(key, arguments);
+        Message message = messages.get(key);
+        if (message == null) {
+            message = resolve(key);
+            messages.put(key, message);
         }
+        return arguments.length == 0 ? message.pattern
+                : message.format(arguments);
     }
 
     /**
-     * Retrieves the string specified by the key from bundle.
+     * Finds the message in the bundle.
      * 
      * @param key
-     *            the message key. Not blank.
-     * @return the message by the key. The message is formatted with
-     *         {@link MessageFormat#format(Object)} if any arguments are
-     *         provided.
+     *            the message key as passed to {@link #get(String, Object...)}.
+     *            Not blank.
+     * @return the message. Never <code>null</code>.
+     * @throws MissingResourceException
+     *             if the provided key is not found.
+     */
+    private Message resolve(final String key) throws MissingResourceException {
+        final String forClassKey = forClass.getSimpleName() + "." + key;
+        if (BUNDLE.containsKey(forClassKey)) {
+            return new Message(BUNDLE.getString(forClassKey));
+        }
+        return new Message(BUNDLE.getString(key));
+    }
+
+    /**
+     * A resolved message.
      */
-    private String getFromBundle(final String key, final Object... arguments) {
-        final String pattern = BUNDLE.getString(key);
-        return arguments.length == 0 ? pattern : MessageFormat.format(pattern,
-                arguments);
+    private static final class Message {
+        /**
+         * The message text.
+         */
+        private final String pattern;
+
+        /**
+         * The compiled {@link #pattern}. <code>null</code> until the message
+         * is formatted first time.
+         * Is used only while holding the lock of this object, because
+         * {@link MessageFormat} is not thread-safe.
+         */
+        private MessageFormat format;
+
+        /**
+         * Creates new message.
+         * @param pattern the message text. Assumed not <code>null</code>.
+         */
+        Message(final String pattern) {
+            this.pattern = pattern;
+        }
+
+        /**
+         * Formats the message in the current default locale.
+         * @param arguments the message arguments. Assumed not
+         * <code>null</code>.
+         * @return the formatted message. Never <code>null</code>.
+         */
+        synchronized String format(final Object[] arguments) {
+            final Locale locale = Locale.getDefault();
+            if (format == null || !locale.equals(format.getLocale())) {
+                format = new MessageFormat(pattern, locale);
+            }
+            return format.format(arguments);
+        }
     }
 
     /**
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.ActionStatisticsStore.Counter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per-action invocation totals, updated as the invocations arrive.
+ * Each action has a row, the rows are never removed or reordered, so
+ * a row index identifies the action. Besides the totals, each row keeps
+ * a ring of the mouse invocation counts of the last two weeks to tell
+ * the mouse usage trend.
+ * <p>
+ * Not thread-safe, should be used from the UI thread.
+ * </p>
+ *
+ * @author Sigasi
+ */
+public class ActionAggregates {
+    /**
+     * How the number of the mouse invocations of an action changes.
+     */
+    public enum Trend {
+        /**
+         * The action is invoked with a mouse more often than
+         * the previous week.
+         */
+        UP,
+
+        /**
+         * The action is invoked with a mouse less often than
+         * the previous week.
+         */
+        DOWN,
+
+        /**
+         * The action is invoked with a mouse as often as the previous week.
+         */
+        STEADY
+    }
+
+    /**
+     * The number of days the trend periods consist of.
+     */
+    public static final int TREND_PERIOD = 7;
+
+    /**
+     * The aggregates of an action.
+     */
+    private static final class Row {
+        /**
+         * The action id.
+         */
+        private final String actionId;
+
+        /**
+         * The action label. The action id until the label is known.
+         */
+        private String label;
+
+        /**
+         * The action keyboard shortcut. <code>null</code> if unknown or
+         * there is no shortcut.
+         */
+        private String accelerator;
+
+        /**
+         * The total number of the mouse invocations.
+         */
+        private int mouseCount;
+
+        /**
+         * The total number of the keyboard invocations.
+         */
+        private int keyboardCount;
+
+        /**
+         * The mouse invocation counts of the last two trend periods,
+         * by day modulo the ring size.
+         */
+        private final int[] dayCounts = new int[2 * TREND_PERIOD];
+
+        /**
+         * The latest day of {@link #dayCounts}.
+         */
+        private int lastDay;
+
+        /**
+         * The mouse invocations in the latest trend period.
+         */
+        private int recentCount;
+
+        /**
+         * The mouse invocations in the period before the latest one.
+         */
+        private int previousCount;
+
+        /**
+         * Creates new row.
+         * @param actionId the action id.
+         * @param day the current day.
+         */
+        Row(final String actionId, final int day) {
+            this.actionId = actionId;
+            this.label = actionId;
+            this.lastDay = day;
+        }
+    }
+
+    /**
+     * The rows in the order the actions were first seen.
+     */
+    private final List<Row> rows = new ArrayList<Row>();
+
+    /**
+     * Indexes of {@link #rows} by action id.
+     */
+    private final Map<String, Integer> rowIndex =
+            new HashMap<String, Integer>();
+
+    /**
+     * The listeners to notify about the changes.
+     */
+    private final List<ActionAggregatesListener> listeners =
+            new CopyOnWriteArrayList<ActionAggregatesListener>();
+
+    /**
+     * The time zone defining the day boundaries.
+     */
+    private final TimeZone timeZone;
+
+    /**
+     * Creates empty aggregates.
+     */
+    public ActionAggregates() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Creates empty aggregates.
+     * @param timeZone the time zone defining the day boundaries.
+     * Not <code>null</code>.
+     */
+    ActionAggregates(final TimeZone timeZone) {
+        notNull(timeZone);
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Counts an action invocation.
+     * @param action the action. Not <code>null</code>, has an id.
+     * @param keyboard whether the action was invoked with keyboard.
+     * @param time the invocation time in milliseconds, as returned by
+     * {@link System#currentTimeMillis()}.
+     */
+    public void onAction(final AbstractActionDesc action,
+            final boolean keyboard, final long time) {
+        notNull(action);
+        notNull(action.getId());
+        final int day = ActionStatisticsStore.toDay(time, timeZone);
+        final boolean added = !rowIndex.containsKey(action.getId());
+        final int i = getRowIndex(action.getId(), day);
+        final Row row = rows.get(i);
+        row.label = action.getLabel();
+        row.accelerator = action.getAccelerator();
+        add(row, day, keyboard ? 0 : 1, keyboard ? 1 : 0);
+        fireChanged(i, added);
+    }
+
+    /**
+     * Adds the counts kept by the statistics store.
+     * Should be called before any invocations are counted, otherwise
+     * the invocations are counted twice.
+     * The store does not keep the labels and the keyboard shortcuts, so
+     * the added actions are labeled by their ids and have no shortcut until
+     * they are invoked.
+     * @param store the statistics store. Not <code>null</code>.
+     * @param time the current time.
+     */
+    public void load(final ActionStatisticsStore store, final long time) {
+        notNull(store);
+        final int today = ActionStatisticsStore.toDay(time, timeZone);
+        for (int i = 0; i < store.getRecordCount(); i++) {
+            final String actionId = store.getActionId(i);
+            final boolean added = !rowIndex.containsKey(actionId);
+            final int index = getRowIndex(actionId, today);
+            add(rows.get(index), store.getDay(i),
+                    store.getCount(i, Counter.MOUSE),
+                    store.getCount(i, Counter.KEYBOARD));
+            fireChanged(index, added);
+        }
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * @param row the row index, from 0 to {@link #getRowCount()}.
+     * @return the action id. Never <code>null</code>.
+     */
+    public String getActionId(final int row) {
+        return rows.get(row).actionId;
+    }
+
+    /**
+     * @param row the row index, from 0 to {@link #getRowCount()}.
+     * @return the action label. The action id if the label is not known.
+     * Never <code>null</code>.
+     */
+    public String getLabel(final int row) {
+        return rows.get(row).label;
+    }
+
+    /**
+     * @param row the row index, from 0 to {@link #getRowCount()}.
+     * @return the action keyboard shortcut.
+     * <code>null</code> if unknown or the action has no shortcut.
+     */
+    public String getAccelerator(final int row) {
+        return rows.get(row).accelerator;
+    }
+
+    /**
+     * @param row the row index, from 0 to {@link #getRowCount()}.
+     * @return the total number of the action mouse invocations.
+     */
+    public int getMouseCount(final int row) {
+        return rows.get(row).mouseCount;
+    }
+
+    /**
+     * @param row the row index, from 0 to {@link #getRowCount()}.
+     * @return the total number of the action keyboard invocations.
+     */
+    public int getKeyboardCount(final int row) {
+        return rows.get(row).keyboardCount;
+    }
+
+    /**
+     * Compares the number of the mouse invocations of the last
+     * {@link #TREND_PERIOD} days with the same number of days before.
+     * @param row the row index, from 0 to {@link #getRowCount()}.
+     * @param time the current time.
+     * @return the trend. Never <code>null</code>.
+     */
+    public Trend getTrend(final int row, final long time) {
+        final Row r = rows.get(row);
+        advance(r, ActionStatisticsStore.toDay(time, timeZone));
+        if (r.recentCount > r.previousCount) {
+            return Trend.UP;
+        } else if (r.recentCount < r.previousCount) {
+            return Trend.DOWN;
+        } else {
+            return Trend.STEADY;
+        }
+    }
+
+    /**
+     * Starts notifying the listener about the changes.
+     * Does nothing if the listener is already added.
+     * @param listener the listener. Not <code>null</code>.
+     */
+    public void addListener(final ActionAggregatesListener listener) {
+        notNull(listener);
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Stops notifying the listener added by
+     * {@link #addListener(ActionAggregatesListener)}.
+     * @param listener the listener. Not <code>null</code>.
+     */
+    public void removeListener(final ActionAggregatesListener listener) {
+        notNull(listener);
+        listeners.remove(listener);
+    }
+
+    /**
+     * Finds the row of the action, adding it if necessary.
+     * @param actionId the action id. Assumed not <code>null</code>.
+     * @param day the current day.
+     * @return the row index.
+     */
+    private int getRowIndex(final String actionId, final int day) {
+        final Integer index = rowIndex.get(actionId);
+        if (index != null) {
+            return index;
+        }
+        rows.add(new Row(actionId, day));
+        rowIndex.put(actionId, rows.size() - 1);
+        return rows.size() - 1;
+    }
+
+    /**
+     * Adds the invocations to the row.
+     * @param row the row. Assumed not <code>null</code>.
+     * @param day the invocations day.
+     * @param mouse the number of the mouse invocations. Not negative.
+     * @param keyboard the number of the keyboard invocations. Not negative.
+     */
+    private void add(final Row row, final int day, final int mouse,
+            final int keyboard) {
+        isTrue(mouse >= 0 && keyboard >= 0);
+        row.mouseCount += mouse;
+        row.keyboardCount += keyboard;
+        advance(row, day);
+        if (day > row.lastDay - TREND_PERIOD) {
+            row.dayCounts[day % row.dayCounts.length] += mouse;
+            row.recentCount += mouse;
+        } else if (day > row.lastDay - row.dayCounts.length) {
+            row.dayCounts[day % row.dayCounts.length] += mouse;
+            row.previousCount += mouse;
+        }
+    }
+
+    /**
+     * Moves the trend periods of the row to end at the day.
+     * The day leaving the recent period moves to the previous period,
+     * the day leaving the previous period is cleared.
+     * @param row the row. Assumed not <code>null</code>.
+     * @param day the day. Is ignored if it is earlier than the last
+     * day of the row.
+     */
+    private void advance(final Row row, final int day) {
+        final int size = row.dayCounts.length;
+        final int steps = Math.min(day - row.lastDay, size);
+        for (int i = 1; i <= steps; i++) {
+            final int d = row.lastDay + i;
+            final int leaving = d % size;
+            row.previousCount -= row.dayCounts[leaving];
+            row.dayCounts[leaving] = 0;
+            final int aging = (d - TREND_PERIOD) % size;
+            row.recentCount -= row.dayCounts[aging];
+            row.previousCount += row.dayCounts[aging];
+        }
+        row.lastDay = Math.max(row.lastDay, day);
+    }
+
+    /**
+     * Notifies the listeners about the row change.
+     * @param row the row index.
+     * @param added whether the row was added.
+     */
+    private void fireChanged(final int row, final boolean added) {
+        for (ActionAggregatesListener listener : listeners) {
+            if (added) {
+                listener.rowAdded(row);
+            } else {
+                listener.rowChanged(row);
+            }
+        }
+    }
+}
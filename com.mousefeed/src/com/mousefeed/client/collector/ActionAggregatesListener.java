@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+/**
+ * Is notified about changes of the action aggregates.
+ *
+ * @author Sigasi
+ * @see ActionAggregates#addListener(ActionAggregatesListener)
+ */
+public interface ActionAggregatesListener {
+    /**
+     * Is called after a row for a new action is added.
+     * Is called in the thread, which changed the aggregates.
+     * @param row the index of the added row. Is the last row.
+     */
+    void rowAdded(int row);
+
+    /**
+     * Is called after the counts of an action changed.
+     * Is called in the thread, which changed the aggregates.
+     * @param row the index of the changed row.
+     */
+    void rowChanged(int row);
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The latest action invocations.
+ * Keeps a fixed number of the latest invocations in a ring buffer of
+ * primitive arrays, so recording an invocation does not create objects.
+ * The action ids are interned into a table and referred to by index.
+ * <p>
+ * Is thread-safe. The invocations are usually recorded from the UI thread,
+ * and are read from other threads through {@link #snapshot()}, which copies
+ * the buffer, so the readers never see the invocations recorded after
+ * the snapshot was taken.
+ * </p>
+ *
+ * @author Sigasi
+ */
+public class ActionHistory {
+    /**
+     * An action invocation.
+     */
+    public static final class Event {
+        /**
+         * @see #getActionId()
+         */
+        private final String actionId;
+
+        /**
+         * @see #getTime()
+         */
+        private final long time;
+
+        /**
+         * @see #isKeyboard()
+         */
+        private final boolean keyboard;
+
+        /**
+         * @see #hasAccelerator()
+         */
+        private final boolean accelerator;
+
+        /**
+         * @see #getOutcome()
+         */
+        private final ActionOutcome outcome;
+
+        /**
+         * Creates new event.
+         * @param actionId the action id.
+         * @param time the invocation time.
+         * @param keyboard whether the action was invoked with keyboard.
+         * @param accelerator whether the action has a keyboard shortcut.
+         * @param outcome the invocation outcome. Assumed not <code>null</code>.
+         */
+        Event(final String actionId, final long time, final boolean keyboard,
+                final boolean accelerator, final ActionOutcome outcome) {
+            this.actionId = actionId;
+            this.time = time;
+            this.keyboard = keyboard;
+            this.accelerator = accelerator;
+            this.outcome = outcome;
+        }
+
+        /**
+         * @return the action id. Can be <code>null</code>.
+         */
+        public String getActionId() {
+            return actionId;
+        }
+
+        /**
+         * @return the invocation time in milliseconds, as returned by
+         * {@link System#currentTimeMillis()}.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return <code>true</code> if the action was invoked with a keyboard
+         * shortcut, <code>false</code> if it was invoked with a mouse.
+         */
+        public boolean isKeyboard() {
+            return keyboard;
+        }
+
+        /**
+         * @return whether the action had a keyboard shortcut.
+         */
+        public boolean hasAccelerator() {
+            return accelerator;
+        }
+
+        /**
+         * @return what MouseFeed did on the invocation. Never
+         * <code>null</code>.
+         */
+        public ActionOutcome getOutcome() {
+            return outcome;
+        }
+    }
+
+    /**
+     * The recorded invocations as of the moment the snapshot was taken,
+     * oldest first.
+     */
+    public static final class Snapshot implements Iterable<Event> {
+        /**
+         * @see ActionHistory#idIndexes
+         */
+        private final int[] idIndexes;
+
+        /**
+         * @see ActionHistory#times
+         */
+        private final long[] times;
+
+        /**
+         * @see ActionHistory#flags
+         */
+        private final byte[] flags;
+
+        /**
+         * The interned ids. Only the ids referred to by
+         * {@link #idIndexes} are used.
+         */
+        private final String[] ids;
+
+        /**
+         * Creates new snapshot.
+         * @param idIndexes the action id indexes. Assumed not <code>null</code>.
+         * @param times the invocation times. Assumed not <code>null</code>.
+         * @param flags the invocation flags. Assumed not <code>null</code>.
+         * @param ids the interned ids. Assumed not <code>null</code>.
+         */
+        Snapshot(final int[] idIndexes, final long[] times,
+                final byte[] flags, final String[] ids) {
+            this.idIndexes = idIndexes;
+            this.times = times;
+            this.flags = flags;
+            this.ids = ids;
+        }
+
+        /**
+         * @return the number of the invocations.
+         */
+        public int size() {
+            return times.length;
+        }
+
+        /**
+         * @param i the invocation index, 0 for the oldest one.
+         * @return the action id. Can be <code>null</code>.
+         */
+        public String getActionId(final int i) {
+            final int idIndex = idIndexes[i];
+            return idIndex == NO_ID ? null : ids[idIndex];
+        }
+
+        /**
+         * @param i the invocation index, 0 for the oldest one.
+         * @return the invocation time in milliseconds.
+         */
+        public long getTime(final int i) {
+            return times[i];
+        }
+
+        /**
+         * @param i the invocation index, 0 for the oldest one.
+         * @return whether the action was invoked with keyboard.
+         */
+        public boolean isKeyboard(final int i) {
+            return (flags[i] & KEYBOARD) != 0;
+        }
+
+        /**
+         * @param i the invocation index, 0 for the oldest one.
+         * @return whether the action had a keyboard shortcut.
+         */
+        public boolean hasAccelerator(final int i) {
+            return (flags[i] & ACCELERATOR) != 0;
+        }
+
+        /**
+         * @param i the invocation index, 0 for the oldest one.
+         * @return the invocation outcome. Never <code>null</code>.
+         */
+        public ActionOutcome getOutcome(final int i) {
+            return OUTCOMES[flags[i] >>> OUTCOME_SHIFT];
+        }
+
+        /**
+         * @param i the invocation index, 0 for the oldest one.
+         * @return the invocation. Never <code>null</code>.
+         */
+        public Event get(final int i) {
+            return new Event(getActionId(i), getTime(i), isKeyboard(i),
+                    hasAccelerator(i), getOutcome(i));
+        }
+
+        /**
+         * Iterates over the invocations, oldest first.
+         * @return the iterator. Never <code>null</code>.
+         */
+        public Iterator<Event> iterator() {
+            return new Iterator<Event>() {
+                /**
+                 * The index of the next invocation.
+                 */
+                private int index;
+
+                public boolean hasNext() {
+                    return index < size();
+                }
+
+                public Event next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(index++);
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * The id index of the actions without id.
+     */
+    private static final int NO_ID = -1;
+
+    /**
+     * The flag of the keyboard invocations.
+     */
+    private static final int KEYBOARD = 1;
+
+    /**
+     * The flag of the actions with a keyboard shortcut.
+     */
+    private static final int ACCELERATOR = 2;
+
+    /**
+     * The position of the outcome ordinal in the flags.
+     */
+    private static final int OUTCOME_SHIFT = 2;
+
+    /**
+     * All the outcomes by ordinal.
+     */
+    private static final ActionOutcome[] OUTCOMES = ActionOutcome.values();
+
+    /**
+     * The initial size of the interned ids table.
+     */
+    private static final int INITIAL_IDS_SIZE = 16;
+
+    /**
+     * The action id indexes in {@link #ids}, or {@link #NO_ID}.
+     */
+    private final int[] idIndexes;
+
+    /**
+     * The invocation times.
+     */
+    private final long[] times;
+
+    /**
+     * The keyboard and accelerator flags and the outcome ordinal.
+     */
+    private final byte[] flags;
+
+    /**
+     * The interned action ids. The array is replaced, not changed, when the
+     * table is rebuilt, so the snapshots can share it.
+     */
+    private String[] ids = new String[INITIAL_IDS_SIZE];
+
+    /**
+     * The number of the used entries in {@link #ids}.
+     */
+    private int idCount;
+
+    /**
+     * The index in {@link #ids} by id.
+     */
+    private Map<String, Integer> idIndex = new HashMap<String, Integer>();
+
+    /**
+     * The total number of the recorded invocations.
+     */
+    private long count;
+
+    /**
+     * Creates new history.
+     * @param capacity how many latest invocations to keep. Positive.
+     */
+    public ActionHistory(final int capacity) {
+        isTrue(capacity > 0);
+        idIndexes = new int[capacity];
+        times = new long[capacity];
+        flags = new byte[capacity];
+    }
+
+    /**
+     * @return how many latest invocations are kept.
+     */
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * Records an invocation. Replaces the oldest invocation if the history
+     * is full.
+     * @param actionId the action id. Can be <code>null</code>.
+     * @param time the invocation time in milliseconds.
+     * @param keyboard whether the action was invoked with keyboard.
+     * @param accelerator whether the action has a keyboard shortcut.
+     * @param outcome the invocation outcome. Not <code>null</code>.
+     */
+    public synchronized void record(final String actionId, final long time,
+            final boolean keyboard, final boolean accelerator,
+            final ActionOutcome outcome) {
+        notNull(outcome);
+        final int i = (int) (count % times.length);
+        idIndexes[i] = actionId == null ? NO_ID : intern(actionId);
+        times[i] = time;
+        flags[i] = (byte) ((keyboard ? KEYBOARD : 0)
+                | (accelerator ? ACCELERATOR : 0)
+                | (outcome.ordinal() << OUTCOME_SHIFT));
+        count++;
+    }
+
+    /**
+     * Copies the recorded invocations.
+     * @return the snapshot of the invocations, oldest first.
+     * Never <code>null</code>.
+     */
+    public synchronized Snapshot snapshot() {
+        final int capacity = times.length;
+        final int size = (int) Math.min(count, capacity);
+        final int[] snapshotIdIndexes = new int[size];
+        final long[] snapshotTimes = new long[size];
+        final byte[] snapshotFlags = new byte[size];
+        // the oldest entry is the next one to be overwritten
+        final int start = (int) ((count - size) % capacity);
+        final int head = Math.min(size, capacity - start);
+        System.arraycopy(idIndexes, start, snapshotIdIndexes, 0, head);
+        System.arraycopy(idIndexes, 0, snapshotIdIndexes, head, size - head);
+        System.arraycopy(times, start, snapshotTimes, 0, head);
+        System.arraycopy(times, 0, snapshotTimes, head, size - head);
+        System.arraycopy(flags, start, snapshotFlags, 0, head);
+        System.arraycopy(flags, 0, snapshotFlags, head, size - head);
+        return new Snapshot(snapshotIdIndexes, snapshotTimes, snapshotFlags,
+                ids);
+    }
+
+    /**
+     * @return the total number of the recorded invocations, including the
+     * ones, which are not kept any more.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Finds the index of the id, adding it to the table if necessary.
+     * @param actionId the action id. Assumed not <code>null</code>.
+     * @return the id index in {@link #ids}.
+     */
+    private int intern(final String actionId) {
+        final Integer index = idIndex.get(actionId);
+        if (index != null) {
+            return index.intValue();
+        }
+        if (idCount == ids.length) {
+            rebuildIds();
+        }
+        ids[idCount] = actionId;
+        idIndex.put(actionId, Integer.valueOf(idCount));
+        return idCount++;
+    }
+
+    /**
+     * Rebuilds the interned ids table, dropping the ids, which are not used
+     * by the kept invocations any more. Grows the table if it is still full.
+     * Creates new table, because {@link #ids} can be shared with snapshots.
+     */
+    private void rebuildIds() {
+        final int size = (int) Math.min(count, times.length);
+        final Map<String, Integer> newIdIndex = new HashMap<String, Integer>();
+        final String[] used = new String[ids.length];
+        int usedCount = 0;
+        for (int i = 0; i < size; i++) {
+            final int old = idIndexes[i];
+            if (old == NO_ID) {
+                continue;
+            }
+            final String id = ids[old];
+            Integer index = newIdIndex.get(id);
+            if (index == null) {
+                index = Integer.valueOf(usedCount);
+                used[usedCount++] = id;
+                newIdIndex.put(id, index);
+            }
+            idIndexes[i] = index.intValue();
+        }
+        final int newSize = usedCount * 2 > ids.length
+                ? ids.length * 2 : ids.length;
+        final String[] newIds = new String[newSize];
+        System.arraycopy(used, 0, newIds, 0, usedCount);
+        ids = newIds;
+        idIndex = newIdIndex;
+        idCount = usedCount;
+    }
+}
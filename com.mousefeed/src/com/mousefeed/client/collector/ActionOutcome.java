@@ -1,5 +1,5 @@
 /*
- * Copyright (C) Heavy Lifting Software 2007.
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
  *
  * This file is part of MouseFeed.
  *
@@ -16,27 +16,33 @@
  * You should have received a copy of the GNU Lesser General Public License
  * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
  */
-package com.mousefeed.eclipse;
-
-import org.eclipse.swt.events.DisposeEvent;
-import org.eclipse.swt.events.DisposeListener;
-import org.eclipse.swt.graphics.Font;
+package com.mousefeed.client.collector;
 
 /**
- * Disposes the provided font when the widget it listens to is disposed.
- * @author Andriy Palamarchuk 
+ * What MouseFeed did on an action invocation.
+ *
+ * @author Sigasi
  */
-class DestroyFontDisposeListener implements DisposeListener {
+public enum ActionOutcome {
     /**
-     * The font to destroy.
+     * No feedback was given.
      */
-    private final Font newFont;
+    NONE,
 
-    public DestroyFontDisposeListener(final Font newFont) {
-        this.newFont = newFont;
-    }
+    /**
+     * The user was reminded about the action keyboard shortcut.
+     */
+    REMINDED,
 
-    public void widgetDisposed(final DisposeEvent e) {
-        newFont.dispose();
-    }
-}
\ No newline at end of file
+    /**
+     * The action was canceled, because it must be invoked with its keyboard
+     * shortcut.
+     */
+    CANCELLED,
+
+    /**
+     * The user was suggested to configure a keyboard shortcut for the
+     * action.
+     */
+    SHORTCUT_SUGGESTED
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import java.io.IOException;
+
+/**
+ * Is notified when the action statistics can't be updated.
+ *
+ * @author Sigasi
+ * @see Collector#setStatistics(ActionStatisticsStore,
+ * ActionStatisticsListener)
+ */
+public interface ActionStatisticsListener {
+    /**
+     * Is called after the collector stopped updating the statistics store
+     * because it failed. The collector does not use the store any more,
+     * the listener is responsible for closing it.
+     * Is called in the thread, which reported the action.
+     * @param statistics the failed store. Not <code>null</code>.
+     * @param e the failure. Not <code>null</code>.
+     */
+    void statisticsFailed(ActionStatisticsStore statistics, IOException e);
+}
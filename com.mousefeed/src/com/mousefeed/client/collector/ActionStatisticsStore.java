@@ -0,0 +1,801 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import org.apache.commons.lang.time.DateUtils;
+
+/**
+ * Per-action daily invocation statistics, kept between the sessions.
+ * <p>
+ * The data is stored in two memory-mapped files. The ids file keeps each
+ * action id once, the records file keeps fixed-size records of daily
+ * counters of an action. Each record refers to the action id by its index
+ * in the ids file. A record is appended on the first invocation of
+ * an action during a day, the later invocations increment the record
+ * counters in place, so an update does not serialize anything and
+ * does not perform any I/O calls. The operating system writes the changed
+ * pages to disk.
+ * </p>
+ * <p>
+ * The records are appended in time order. If the system clock is set back,
+ * an action can have more than one record for a day, so the readers should
+ * sum the counters of such records.
+ * </p>
+ * <p>
+ * The records are kept for {@link #KEPT_DAYS} days. When the records file
+ * is full, the older records of each action are merged into one record
+ * dated the day before the kept days, so the totals stay the same.
+ * The file is extended only if this compaction does not free enough space.
+ * </p>
+ * <p>
+ * Not thread-safe, should be used from the UI thread.
+ * </p>
+ *
+ * @author Sigasi
+ */
+public class ActionStatisticsStore {
+    /**
+     * The counters kept for an action.
+     */
+    public enum Counter {
+        /**
+         * The action was invoked with a mouse.
+         */
+        MOUSE,
+
+        /**
+         * The action was invoked with a keyboard shortcut.
+         */
+        KEYBOARD,
+
+        /**
+         * The user was reminded about the action keyboard shortcut.
+         */
+        REMINDED,
+
+        /**
+         * The action was canceled, because it must be invoked with its
+         * keyboard shortcut.
+         */
+        ENFORCED
+    }
+
+    /**
+     * Suffix of the file keeping the action ids.
+     */
+    public static final String IDS_SUFFIX = ".ids";
+
+    /**
+     * Suffix of the file keeping the daily records.
+     */
+    public static final String RECORDS_SUFFIX = ".days";
+
+    /**
+     * The number of the latest days the daily records are kept for.
+     */
+    public static final int KEPT_DAYS = 365;
+
+    /**
+     * The ids file signature, "MFID".
+     */
+    static final int IDS_MAGIC = 0x4d464944;
+
+    /**
+     * The records file signature, "MFDR".
+     */
+    static final int RECORDS_MAGIC = 0x4d464452;
+
+    /**
+     * The version of the files format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of an <code>int</code> value in bytes.
+     */
+    private static final int INT_SIZE = 4;
+
+    /**
+     * Size of the record in bytes. The record consists of the day,
+     * the action id index and the counters, all stored as <code>int</code>.
+     */
+    private static final int RECORD_SIZE =
+            INT_SIZE * (2 + Counter.values().length);
+
+    /**
+     * Size of the action id length prefix in bytes.
+     */
+    private static final int LENGTH_SIZE = 2;
+
+    /**
+     * The maximal length of the encoded action id.
+     */
+    private static final int MAX_ID_LENGTH = 0xFFFF;
+
+    /**
+     * Offset of the action id index in the record.
+     */
+    private static final int RECORD_ID_OFFSET = INT_SIZE;
+
+    /**
+     * Offset of the first counter in the record.
+     */
+    private static final int RECORD_COUNTERS_OFFSET = 2 * INT_SIZE;
+
+    /**
+     * The records file is extended after a compaction, which leaves less
+     * free space than the file size divided by this.
+     */
+    private static final int MIN_FREE_FRACTION = 4;
+
+    /**
+     * Encoding of the action ids.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Keeps the action ids. The header entry count is the number of ids,
+     * the entries are the UTF-8 encoded ids prefixed with their length.
+     */
+    private final MappedFile idsFile;
+
+    /**
+     * Keeps the daily records. The header entry count is the number of
+     * records.
+     */
+    private final MappedFile recordsFile;
+
+    /**
+     * The action ids in the order they are stored.
+     */
+    private final List<String> ids = new ArrayList<String>();
+
+    /**
+     * Indexes of {@link #ids} by action id.
+     */
+    private final Map<String, Integer> idIndex =
+            new HashMap<String, Integer>();
+
+    /**
+     * Indexes of the records of {@link #currentDay} by action id index.
+     */
+    private final Map<Integer, Integer> currentDayRecords =
+            new HashMap<Integer, Integer>();
+
+    /**
+     * The day {@link #currentDayRecords} is for. <code>-1</code> if it
+     * was not computed yet.
+     */
+    private int currentDay = -1;
+
+    /**
+     * The time zone defining the day boundaries.
+     */
+    private final TimeZone timeZone;
+
+    /**
+     * Opens the store, creating the files if they don't exist yet.
+     * The stored data is discarded if the files are damaged or are in
+     * an unknown format.
+     * @param file the base name of the store files. The actual file names
+     * are formed by appending {@link #IDS_SUFFIX} and {@link #RECORDS_SUFFIX}.
+     * Not <code>null</code>.
+     * @throws IOException if the files can't be opened.
+     */
+    public ActionStatisticsStore(final File file) throws IOException {
+        this(file, TimeZone.getDefault());
+    }
+
+    /**
+     * Opens the store, creating the files if they don't exist yet.
+     * @param file the base name of the store files. Not <code>null</code>.
+     * @param timeZone the time zone defining the day boundaries.
+     * Not <code>null</code>.
+     * @throws IOException if the files can't be opened.
+     * @see #ActionStatisticsStore(File)
+     */
+    ActionStatisticsStore(final File file, final TimeZone timeZone)
+            throws IOException {
+        notNull(file);
+        notNull(timeZone);
+        this.timeZone = timeZone;
+        idsFile = new MappedFile(new File(file.getPath() + IDS_SUFFIX),
+                IDS_MAGIC);
+        try {
+            recordsFile = new MappedFile(
+                    new File(file.getPath() + RECORDS_SUFFIX), RECORDS_MAGIC);
+        } catch (final IOException e) {
+            idsFile.close();
+            throw e;
+        }
+        if (!idsFile.isValid() || !recordsFile.isValid() || !readIds()
+                || !recordsValid()) {
+            idsFile.reset();
+            recordsFile.reset();
+            ids.clear();
+            idIndex.clear();
+        }
+    }
+
+    /**
+     * Reads the stored action ids to {@link #ids} and {@link #idIndex}.
+     * @return <code>false</code> if the ids file content is damaged.
+     */
+    private boolean readIds() {
+        final int count = idsFile.getEntryCount();
+        int position = idsFile.getHeaderSize();
+        for (int i = 0; i < count; i++) {
+            if (position + LENGTH_SIZE > idsFile.getSize()) {
+                return false;
+            }
+            final int length = idsFile.getBuffer().getShort(position) & MAX_ID_LENGTH;
+            position += LENGTH_SIZE;
+            if (position + length > idsFile.getSize()) {
+                return false;
+            }
+            final byte[] bytes = new byte[length];
+            idsFile.getBuffer().position(position);
+            idsFile.getBuffer().get(bytes);
+            position += length;
+            addId(decode(bytes));
+        }
+        idsFile.setEnd(position);
+        return true;
+    }
+
+    /**
+     * @return whether the records file content is consistent with
+     * the ids file.
+     */
+    private boolean recordsValid() {
+        final int count = recordsFile.getEntryCount();
+        if (count < 0 || recordsFile.getHeaderSize()
+                + (long) count * RECORD_SIZE > recordsFile.getSize()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            final int id = recordsFile.getBuffer().getInt(
+                    recordOffset(i) + RECORD_ID_OFFSET);
+            if (id < 0 || id >= ids.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Increments the action counter for the day of the provided time.
+     * @param actionId the action id. Not <code>null</code>.
+     * @param time the invocation time in milliseconds, as returned by
+     * {@link System#currentTimeMillis()}.
+     * @param counter the counter to increment. Not <code>null</code>.
+     * @throws IOException if the files can't be extended to add the data.
+     */
+    public void increment(final String actionId, final long time,
+            final Counter counter) throws IOException {
+        notNull(actionId);
+        notNull(counter);
+        final int offset = recordOffset(getRecord(getIdIndex(actionId),
+                toDay(time))) + RECORD_COUNTERS_OFFSET + INT_SIZE * counter.ordinal();
+        final MappedByteBuffer buffer = recordsFile.getBuffer();
+        buffer.putInt(offset, buffer.getInt(offset) + 1);
+    }
+
+    /**
+     * The number of the stored daily records.
+     * @return the record count.
+     */
+    public int getRecordCount() {
+        return recordsFile.getEntryCount();
+    }
+
+    /**
+     * The day of the record.
+     * @param i the record index, from 0 to {@link #getRecordCount()}.
+     * @return the number of days since the epoch in the store time zone.
+     * @see #toDay(long)
+     */
+    public int getDay(final int i) {
+        return recordsFile.getBuffer().getInt(checkedRecordOffset(i));
+    }
+
+    /**
+     * The action the record is for.
+     * @param i the record index, from 0 to {@link #getRecordCount()}.
+     * @return the action id. Never <code>null</code>.
+     */
+    public String getActionId(final int i) {
+        return ids.get(recordsFile.getBuffer().getInt(
+                checkedRecordOffset(i) + RECORD_ID_OFFSET));
+    }
+
+    /**
+     * The counter value of the record.
+     * @param i the record index, from 0 to {@link #getRecordCount()}.
+     * @param counter the counter. Not <code>null</code>.
+     * @return the counter value.
+     */
+    public int getCount(final int i, final Counter counter) {
+        notNull(counter);
+        return recordsFile.getBuffer().getInt(checkedRecordOffset(i)
+                + RECORD_COUNTERS_OFFSET + INT_SIZE * counter.ordinal());
+    }
+
+    /**
+     * Converts the time to the day number used by the store.
+     * @param time the time in milliseconds, as returned by
+     * {@link System#currentTimeMillis()}.
+     * @return the number of days since the epoch in the store time zone.
+     */
+    public int toDay(final long time) {
+        return toDay(time, timeZone);
+    }
+
+    /**
+     * Converts the time to the day number.
+     * @param time the time in milliseconds.
+     * @param timeZone the time zone defining the day boundaries.
+     * Assumed not <code>null</code>.
+     * @return the number of days since the epoch in the time zone.
+     */
+    static int toDay(final long time, final TimeZone timeZone) {
+        return (int) ((time + timeZone.getOffset(time))
+                / DateUtils.MILLIS_PER_DAY);
+    }
+
+    /**
+     * Forces the changes to disk.
+     * Is not necessary to keep the data when the application exits,
+     * but protects the data from an operating system crash.
+     */
+    public void force() {
+        idsFile.getBuffer().force();
+        recordsFile.getBuffer().force();
+    }
+
+    /**
+     * Writes the changes, unmaps and closes the files. The store can't be
+     * used after this call.
+     * @throws IOException if closing the files failed.
+     */
+    public void close() throws IOException {
+        force();
+        try {
+            idsFile.close();
+        } finally {
+            recordsFile.close();
+        }
+    }
+
+    /**
+     * Finds the index of the action id, storing the id if it is new.
+     * @param actionId the action id. Assumed not <code>null</code>.
+     * @return the index of the action id in {@link #ids}.
+     * @throws IOException if the ids file can't be extended.
+     */
+    private int getIdIndex(final String actionId) throws IOException {
+        final Integer index = idIndex.get(actionId);
+        if (index != null) {
+            return index;
+        }
+        final byte[] bytes = encode(actionId);
+        isTrue(bytes.length <= MAX_ID_LENGTH, "The action id is too long");
+        final int position = idsFile.getEnd();
+        idsFile.ensureSize(position + LENGTH_SIZE + bytes.length);
+        final MappedByteBuffer buffer = idsFile.getBuffer();
+        buffer.putShort(position, (short) bytes.length);
+        buffer.position(position + LENGTH_SIZE);
+        buffer.put(bytes);
+        idsFile.setEnd(position + LENGTH_SIZE + bytes.length);
+        // the count is updated last, so an interrupted write is ignored
+        idsFile.setEntryCount(ids.size() + 1);
+        return addId(actionId);
+    }
+
+    /**
+     * Adds the id to {@link #ids} and {@link #idIndex}.
+     * @param actionId the action id. Assumed not <code>null</code>.
+     * @return the id index.
+     */
+    private int addId(final String actionId) {
+        final int index = ids.size();
+        ids.add(actionId);
+        idIndex.put(actionId, index);
+        return index;
+    }
+
+    /**
+     * Finds the record for the action and the day, appending a new record
+     * if there is no such record yet.
+     * @param id the action id index.
+     * @param day the day.
+     * @return the record index.
+     * @throws IOException if the records file can't be extended.
+     */
+    private int getRecord(final int id, final int day) throws IOException {
+        if (day != currentDay) {
+            loadCurrentDayRecords(day);
+        }
+        final Integer record = currentDayRecords.get(id);
+        if (record != null) {
+            return record;
+        }
+        int index = recordsFile.getEntryCount();
+        if (recordOffset(index + 1) > recordsFile.getSize() && compact(day)) {
+            // the record indexes changed
+            loadCurrentDayRecords(day);
+            index = recordsFile.getEntryCount();
+            recordsFile.ensureSize(recordOffset(
+                    index + 1 + index / (MIN_FREE_FRACTION - 1)));
+        }
+        recordsFile.ensureSize(recordOffset(index) + RECORD_SIZE);
+        writeRecord(index, day, id, new int[Counter.values().length]);
+        recordsFile.setEntryCount(index + 1);
+        currentDayRecords.put(id, index);
+        return index;
+    }
+
+    /**
+     * Merges the records older than {@link #KEPT_DAYS} into one record per
+     * action. The records are only moved towards the file start, and the
+     * record count is updated last, so an interrupted compaction can only
+     * leave some counts added twice.
+     * @param today the current day.
+     * @return <code>false</code> if there is nothing to compact.
+     */
+    private boolean compact(final int today) {
+        final int mergedDay = today - KEPT_DAYS;
+        final int count = recordsFile.getEntryCount();
+        final int counters = Counter.values().length;
+        final Map<Integer, int[]> merged = new LinkedHashMap<Integer, int[]>();
+        final List<Integer> kept = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            if (getDay(i) > mergedDay) {
+                kept.add(i);
+                continue;
+            }
+            final int id = recordsFile.getBuffer().getInt(
+                    recordOffset(i) + RECORD_ID_OFFSET);
+            int[] counts = merged.get(id);
+            if (counts == null) {
+                counts = new int[counters];
+                merged.put(id, counts);
+            }
+            for (int c = 0; c < counters; c++) {
+                counts[c] += getCount(i, Counter.values()[c]);
+            }
+        }
+        if (merged.size() + kept.size() == count) {
+            return false;
+        }
+        // reads the kept records before they are overwritten
+        final int[][] keptRecords = new int[kept.size()][];
+        for (int k = 0; k < keptRecords.length; k++) {
+            keptRecords[k] = readRecord(kept.get(k));
+        }
+        int index = 0;
+        for (Map.Entry<Integer, int[]> entry : merged.entrySet()) {
+            writeRecord(index, mergedDay, entry.getKey(), entry.getValue());
+            index++;
+        }
+        for (int[] record : keptRecords) {
+            writeRecord(index, record[0], record[1],
+                    Arrays.copyOfRange(record, 2, record.length));
+            index++;
+        }
+        recordsFile.setEntryCount(index);
+        return true;
+    }
+
+    /**
+     * Reads the record.
+     * @param i the record index.
+     * @return the day, the action id index and the counters of the record.
+     */
+    private int[] readRecord(final int i) {
+        final int[] record = new int[RECORD_SIZE / INT_SIZE];
+        for (int j = 0; j < record.length; j++) {
+            record[j] = recordsFile.getBuffer().getInt(
+                    recordOffset(i) + INT_SIZE * j);
+        }
+        return record;
+    }
+
+    /**
+     * Writes the record. The records file must be big enough.
+     * @param i the record index.
+     * @param day the day.
+     * @param id the action id index.
+     * @param counts the counters. Assumed not <code>null</code>.
+     */
+    private void writeRecord(final int i, final int day, final int id,
+            final int[] counts) {
+        final int offset = recordOffset(i);
+        final MappedByteBuffer buffer = recordsFile.getBuffer();
+        buffer.putInt(offset, day);
+        buffer.putInt(offset + RECORD_ID_OFFSET, id);
+        for (int c = 0; c < counts.length; c++) {
+            buffer.putInt(offset + RECORD_COUNTERS_OFFSET + INT_SIZE * c,
+                    counts[c]);
+        }
+    }
+
+    /**
+     * Finds the latest records of the day.
+     * @param day the day to make current.
+     */
+    private void loadCurrentDayRecords(final int day) {
+        currentDay = day;
+        currentDayRecords.clear();
+        for (int i = recordsFile.getEntryCount() - 1;
+                i >= 0 && getDay(i) == day; i--) {
+            final int id = recordsFile.getBuffer().getInt(
+                    recordOffset(i) + RECORD_ID_OFFSET);
+            currentDayRecords.put(id, i);
+        }
+    }
+
+    /**
+     * @param i the record index.
+     * @return the offset of the record in the records file.
+     */
+    private int recordOffset(final int i) {
+        return recordsFile.getHeaderSize() + i * RECORD_SIZE;
+    }
+
+    /**
+     * Checks the record index.
+     * @param i the record index, from 0 to {@link #getRecordCount()}.
+     * @return the offset of the record in the records file.
+     */
+    private int checkedRecordOffset(final int i) {
+        if (i < 0 || i >= getRecordCount()) {
+            throw new IndexOutOfBoundsException("Record index: " + i);
+        }
+        return recordOffset(i);
+    }
+
+    /**
+     * @param s the string to encode. Assumed not <code>null</code>.
+     * @return the UTF-8 representation of the string.
+     */
+    private static byte[] encode(final String s) {
+        try {
+            return s.getBytes(ENCODING);
+        } catch (final UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param bytes the UTF-8 encoded string. Assumed not <code>null</code>.
+     * @return the decoded string.
+     */
+    private static String decode(final byte[] bytes) {
+        try {
+            return new String(bytes, ENCODING);
+        } catch (final UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A memory-mapped file, which starts with a header of the file
+     * signature, the format version and the number of the file entries.
+     * The file is extended by doubling its size. The replaced mappings are
+     * released right away.
+     */
+    private static final class MappedFile {
+        /**
+         * The size of the newly created file.
+         */
+        private static final int INITIAL_SIZE = 4096;
+
+        /**
+         * Offset of the format version in the header.
+         */
+        private static final int VERSION_OFFSET = 4;
+
+        /**
+         * Offset of the entry count in the header.
+         */
+        private static final int COUNT_OFFSET = 8;
+
+        /**
+         * Size of the header.
+         */
+        private static final int HEADER_SIZE = 12;
+
+        /**
+         * The file signature.
+         */
+        private final int magic;
+
+        /**
+         * The open file.
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * The mapped file content.
+         */
+        private MappedByteBuffer buffer;
+
+        /**
+         * The offset after the last entry.
+         */
+        private int end = HEADER_SIZE;
+
+        /**
+         * Whether the file had a valid header when it was opened.
+         */
+        private final boolean valid;
+
+        /**
+         * Opens and maps the file.
+         * @param path the file. Assumed not <code>null</code>.
+         * @param magic the file signature.
+         * @throws IOException if the file can't be opened.
+         */
+        MappedFile(final File path, final int magic) throws IOException {
+            this.magic = magic;
+            file = new RandomAccessFile(path, "rw");
+            try {
+                final long length = file.length();
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("File is too big: " + path);
+                }
+                map(Math.max((int) length, INITIAL_SIZE));
+            } catch (final IOException e) {
+                file.close();
+                throw e;
+            }
+            valid = buffer.getInt(0) == magic
+                    && buffer.getInt(VERSION_OFFSET) == VERSION
+                    && getEntryCount() >= 0;
+        }
+
+        /**
+         * Maps the file, extending it if necessary.
+         * @param size the size to map.
+         * @throws IOException on the mapping failure.
+         */
+        private void map(final int size) throws IOException {
+            final MappedByteBuffer old = buffer;
+            buffer = file.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, size);
+            if (old != null) {
+                MappedBuffers.unmap(old);
+            }
+        }
+
+        /**
+         * @return whether the file had a valid header when it was opened.
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * Discards the file content.
+         */
+        public void reset() {
+            buffer.putInt(0, magic);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            setEntryCount(0);
+            end = HEADER_SIZE;
+        }
+
+        /**
+         * Makes sure the file is big enough.
+         * @param size the minimal file size.
+         * @throws IOException if the file can't be extended.
+         */
+        public void ensureSize(final int size) throws IOException {
+            if (size > buffer.capacity()) {
+                int newSize = buffer.capacity();
+                while (newSize < size) {
+                    newSize *= 2;
+                }
+                map(newSize);
+            }
+        }
+
+        /**
+         * @return the mapped file content. Never <code>null</code>.
+         * Changes when the file is extended.
+         */
+        public MappedByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * @return the mapped size.
+         */
+        public int getSize() {
+            return buffer.capacity();
+        }
+
+        /**
+         * @return the size of the header, the entries start after it.
+         */
+        public int getHeaderSize() {
+            return HEADER_SIZE;
+        }
+
+        /**
+         * @return the number of entries stored in the header.
+         */
+        public int getEntryCount() {
+            return buffer.getInt(COUNT_OFFSET);
+        }
+
+        /**
+         * @param count the new number of entries.
+         */
+        public void setEntryCount(final int count) {
+            buffer.putInt(COUNT_OFFSET, count);
+        }
+
+        /**
+         * @return the offset after the last entry.
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @param end the new offset after the last entry.
+         */
+        public void setEnd(final int end) {
+            this.end = end;
+        }
+
+        /**
+         * Unmaps and closes the file.
+         * @throws IOException on the failure.
+         */
+        public void close() throws IOException {
+            try {
+                file.close();
+            } finally {
+                if (buffer != null) {
+                    MappedBuffers.unmap(buffer);
+                    buffer = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts action invocations.
+ * Keeps at most the specified number of actions, forgetting the least
+ * recently used ones. The counts can decay with time, so actions, which are
+ * not used any more, are eventually forgotten.
+ * <p>
+ * The ids and the counts are kept in an open-addressed table of primitive
+ * arrays. The table stores the first instance of each action id, so it also
+ * serves as the pool of the tracked ids.
+ * </p>
+ * Not thread-safe.
+ *
+ * @author Sigasi
+ */
+public class ActionUsageCounter {
+    /**
+     * The persisted data format version.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The initial size of the table. A power of 2.
+     */
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /**
+     * The decay period count, after which any count becomes 0.
+     */
+    private static final int MAX_DECAY_PERIODS = Integer.SIZE - 1;
+
+    /**
+     * Orders the read records from the most recently used one.
+     */
+    private static final Comparator<Record> MOST_RECENT_FIRST =
+            new Comparator<Record>() {
+                public int compare(final Record r1, final Record r2) {
+                    int result = 0;
+                    if (r1.lastUsed > r2.lastUsed) {
+                        result = -1;
+                    } else if (r1.lastUsed < r2.lastUsed) {
+                        result = 1;
+                    }
+                    return result;
+                }
+            };
+
+    /**
+     * The maximal number of the tracked actions.
+     */
+    private final int maxSize;
+
+    /**
+     * Time in milliseconds, after which a count is halved.
+     * 0 if the counts don't decay.
+     */
+    private long halfLife;
+
+    /**
+     * The action ids. <code>null</code> for an empty slot.
+     * The size is a power of 2.
+     */
+    private String[] ids;
+
+    /**
+     * The action counts by slot.
+     */
+    private int[] counts;
+
+    /**
+     * The time the count was last decayed at, by slot.
+     */
+    private long[] decayedAt;
+
+    /**
+     * The value of {@link #tick} when the action was last used, by slot.
+     */
+    private long[] lastUsed;
+
+    /**
+     * The number of the tracked actions.
+     */
+    private int size;
+
+    /**
+     * Increases with each use of an action.
+     */
+    private long tick;
+
+    /**
+     * Creates new counter.
+     * @param maxSize the maximal number of the tracked actions.
+     * Must be positive.
+     * @param halfLife time in milliseconds, after which a count is halved.
+     * 0 if the counts should not decay. Not negative.
+     */
+    public ActionUsageCounter(final int maxSize, final long halfLife) {
+        isTrue(maxSize > 0);
+        isTrue(halfLife >= 0);
+        this.maxSize = maxSize;
+        this.halfLife = halfLife;
+        clear();
+    }
+
+    /**
+     * Creates a copy of the counter.
+     * @param counter the counter to copy. Not <code>null</code>.
+     */
+    public ActionUsageCounter(final ActionUsageCounter counter) {
+        notNull(counter);
+        maxSize = counter.maxSize;
+        halfLife = counter.halfLife;
+        ids = counter.ids.clone();
+        counts = counter.counts.clone();
+        decayedAt = counter.decayedAt.clone();
+        lastUsed = counter.lastUsed.clone();
+        size = counter.size;
+        tick = counter.tick;
+    }
+
+    /**
+     * Changes how fast the counts decay. The counts are decayed with the
+     * old half-life up to now, and with the new one from now on.
+     * Does nothing if the half-life does not change.
+     * @param newHalfLife time in milliseconds, after which a count is halved.
+     * 0 if the counts should not decay. Not negative.
+     * @param now the current time in milliseconds.
+     */
+    public void setHalfLife(final long newHalfLife, final long now) {
+        if (newHalfLife == halfLife) {
+            return;
+        }
+        isTrue(newHalfLife >= 0);
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != null) {
+                decay(i, now);
+                decayedAt[i] = now;
+            }
+        }
+        halfLife = newHalfLife;
+    }
+
+    /**
+     * Records an action invocation now.
+     * @param id the action id. Not <code>null</code>.
+     * @return the action count including this invocation.
+     */
+    public int increment(final String id) {
+        return increment(id, System.currentTimeMillis());
+    }
+
+    /**
+     * Records an action invocation at the specified time.
+     * @param id the action id. Not <code>null</code>.
+     * @param now the current time in milliseconds.
+     * @return the action count including this invocation.
+     */
+    public int increment(final String id, final long now) {
+        notNull(id);
+        int i = indexOf(id);
+        if (i < 0) {
+            i = insert(id, now);
+        } else {
+            decay(i, now);
+        }
+        if (counts[i] < Integer.MAX_VALUE) {
+            counts[i]++;
+        }
+        tick++;
+        lastUsed[i] = tick;
+        return counts[i];
+    }
+
+    /**
+     * The current action count.
+     * @param id the action id. Not <code>null</code>.
+     * @param now the current time in milliseconds.
+     * @return the count. 0 if the action is not tracked.
+     */
+    public int get(final String id, final long now) {
+        notNull(id);
+        final int i = indexOf(id);
+        if (i < 0) {
+            return 0;
+        }
+        final long periods = getDecayPeriods(i, now);
+        return periods > MAX_DECAY_PERIODS ? 0 : counts[i] >>> periods;
+    }
+
+    /**
+     * @return the number of the tracked actions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets all the actions.
+     */
+    public final void clear() {
+        ids = new String[INITIAL_TABLE_SIZE];
+        counts = new int[INITIAL_TABLE_SIZE];
+        decayedAt = new long[INITIAL_TABLE_SIZE];
+        lastUsed = new long[INITIAL_TABLE_SIZE];
+        size = 0;
+        tick = 0;
+    }
+
+    /**
+     * Writes the counts.
+     * @param out the output to write to. Not <code>null</code>.
+     * @throws IOException on a write failure.
+     * @see #readFrom(DataInput)
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        notNull(out);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != null) {
+                out.writeUTF(ids[i]);
+                out.writeInt(counts[i]);
+                out.writeLong(decayedAt[i]);
+                out.writeLong(lastUsed[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the counts with the ones written by
+     * {@link #writeTo(DataOutput)}.
+     * If there are more actions than this counter can track, the least
+     * recently used ones are dropped.
+     * @param in the input to read from. Not <code>null</code>.
+     * @throws IOException on a read failure or if the data format is not
+     * recognized. In this case the counter is empty.
+     */
+    public void readFrom(final DataInput in) throws IOException {
+        notNull(in);
+        clear();
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported action usage data format");
+        }
+        final int n = in.readInt();
+        final List<Record> records = new ArrayList<Record>();
+        for (int k = 0; k < n; k++) {
+            records.add(new Record(in));
+        }
+        // the table order is not the usage order
+        Collections.sort(records, MOST_RECENT_FIRST);
+        for (int k = 0; k < records.size() && size < maxSize; k++) {
+            final Record record = records.get(k);
+            if (indexOf(record.id) < 0) {
+                final int i = insert(record.id, record.decayedAt);
+                counts[i] = Math.max(record.count, 0);
+                lastUsed[i] = record.lastUsed;
+                tick = Math.max(tick, record.lastUsed);
+            }
+        }
+    }
+
+    /**
+     * Finds the action slot.
+     * @param id the action id. Assumed not <code>null</code>.
+     * @return the slot index. -1 if the action is not tracked.
+     */
+    private int indexOf(final String id) {
+        final int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        while (ids[i] != null) {
+            if (ids[i].equals(id)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Starts tracking the action. Evicts the least recently used action if
+     * the counter is full.
+     * @param id the action id. Assumed not <code>null</code> and not tracked.
+     * @param now the current time in milliseconds.
+     * @return the slot of the new action.
+     */
+    private int insert(final String id, final long now) {
+        if (size >= maxSize) {
+            removeAt(findLeastRecentlyUsed());
+        } else if ((size + 1) * 2 > ids.length) {
+            resize(ids.length * 2);
+        }
+        final int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        while (ids[i] != null) {
+            i = (i + 1) & mask;
+        }
+        ids[i] = id;
+        counts[i] = 0;
+        decayedAt[i] = now;
+        lastUsed[i] = 0;
+        size++;
+        return i;
+    }
+
+    /**
+     * Finds the least recently used action.
+     * Scans the table, which is fine, because eviction happens only when a
+     * new action is used after the counter is full.
+     * @return the action slot.
+     */
+    private int findLeastRecentlyUsed() {
+        int found = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != null
+                    && (found < 0 || lastUsed[i] < lastUsed[found])) {
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Removes the action, shifting back the following entries of the probe
+     * sequence, so no tombstones are needed.
+     * @param slot the action slot. Assumed to contain an action.
+     */
+    private void removeAt(final int slot) {
+        final int mask = ids.length - 1;
+        int hole = slot;
+        ids[hole] = null;
+        size--;
+        int i = (hole + 1) & mask;
+        while (ids[i] != null) {
+            final int home = hash(ids[i]) & mask;
+            // the distances from the home slot along the probe sequence
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Moves the entry to an empty slot.
+     * @param from the slot to move the entry from.
+     * @param to the empty slot.
+     */
+    private void move(final int from, final int to) {
+        ids[to] = ids[from];
+        counts[to] = counts[from];
+        decayedAt[to] = decayedAt[from];
+        lastUsed[to] = lastUsed[from];
+        ids[from] = null;
+    }
+
+    /**
+     * Rebuilds the table with the new size.
+     * @param newSize the new table size. A power of 2.
+     */
+    private void resize(final int newSize) {
+        final String[] oldIds = ids;
+        final int[] oldCounts = counts;
+        final long[] oldDecayedAt = decayedAt;
+        final long[] oldLastUsed = lastUsed;
+        ids = new String[newSize];
+        counts = new int[newSize];
+        decayedAt = new long[newSize];
+        lastUsed = new long[newSize];
+        final int mask = newSize - 1;
+        for (int k = 0; k < oldIds.length; k++) {
+            if (oldIds[k] != null) {
+                int i = hash(oldIds[k]) & mask;
+                while (ids[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                ids[i] = oldIds[k];
+                counts[i] = oldCounts[k];
+                decayedAt[i] = oldDecayedAt[k];
+                lastUsed[i] = oldLastUsed[k];
+            }
+        }
+    }
+
+    /**
+     * Applies the decay to the stored count.
+     * @param i the action slot.
+     * @param now the current time in milliseconds.
+     */
+    private void decay(final int i, final long now) {
+        final long periods = getDecayPeriods(i, now);
+        if (periods == 0) {
+            return;
+        }
+        counts[i] = periods > MAX_DECAY_PERIODS ? 0 : counts[i] >>> periods;
+        decayedAt[i] += periods * halfLife;
+    }
+
+    /**
+     * The number of the count half-lives passed since the count was decayed.
+     * @param i the action slot.
+     * @param now the current time in milliseconds.
+     * @return the number of periods. 0 if the counts don't decay.
+     */
+    private long getDecayPeriods(final int i, final long now) {
+        if (halfLife == 0 || now <= decayedAt[i]) {
+            return 0;
+        }
+        return (now - decayedAt[i]) / halfLife;
+    }
+
+    /**
+     * Spreads the string hash code, so the lower bits used to address the
+     * table depend on all the bits.
+     * @param id the action id. Assumed not <code>null</code>.
+     * @return the hash.
+     */
+    private static int hash(final String id) {
+        final int h = id.hashCode();
+        return h ^ (h >>> (Integer.SIZE / 2));
+    }
+
+    /**
+     * An action count read by {@link ActionUsageCounter#readFrom(DataInput)}.
+     */
+    private static class Record {
+        /**
+         * The action id.
+         */
+        private final String id;
+
+        /**
+         * The action count.
+         */
+        private final int count;
+
+        /**
+         * The time the count was last decayed at.
+         */
+        private final long decayedAt;
+
+        /**
+         * The tick the action was last used at.
+         */
+        private final long lastUsed;
+
+        /**
+         * Reads the record written by
+         * {@link ActionUsageCounter#writeTo(DataOutput)}.
+         * @param in the input to read from. Assumed not <code>null</code>.
+         * @throws IOException on a read failure.
+         */
+        Record(final DataInput in) throws IOException {
+            id = in.readUTF();
+            count = in.readInt();
+            decayedAt = in.readLong();
+            lastUsed = in.readLong();
+        }
+    }
+}
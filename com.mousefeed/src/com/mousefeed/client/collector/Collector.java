@@ -20,17 +20,60 @@ package com.mousefeed.client.collector;
 
 import static org.apache.commons.lang.Validate.notNull;
 
+import com.mousefeed.client.collector.ActionStatisticsStore.Counter;
+import java.io.IOException;
+
 /**
  * Collects user activity data.
  * @author Andriy Palamarchuk
  */
 public class Collector {
+    /**
+     * How many latest action invocations {@link #getHistory()} keeps.
+     */
+    public static final int HISTORY_CAPACITY = 8192;
+
+    /**
+     * How many most often invoked actions {@link #getTopActions()} tracks.
+     * Several times more than the number of actions usually shown, so
+     * the counts of the shown actions are precise.
+     */
+    public static final int TOP_ACTIONS_CAPACITY = 100;
 
     /**
      * @see #getLastAction()
      */
     private AbstractActionDesc lastAction;
 
+    /**
+     * @see #getHistory()
+     */
+    private final ActionHistory history = new ActionHistory(HISTORY_CAPACITY);
+
+    /**
+     * @see #getTopActions()
+     */
+    private final TopActionTracker topActions =
+            new TopActionTracker(TOP_ACTIONS_CAPACITY);
+
+    /**
+     * @see #getAggregates()
+     */
+    private final ActionAggregates aggregates = new ActionAggregates();
+
+    /**
+     * Is guarded by <code>this</code>, so the store is not used after
+     * {@link #removeStatistics()} returns.
+     * @see #getStatistics()
+     */
+    private ActionStatisticsStore statistics;
+
+    /**
+     * Is notified when {@link #statistics} fails. Can be <code>null</code>.
+     * Is guarded by <code>this</code>.
+     */
+    private ActionStatisticsListener statisticsListener;
+
     /**
      * Default constructor. Does nothing.
      */
@@ -48,12 +91,148 @@ public class Collector {
         return lastAction;
     }
 
+    /**
+     * The latest action invocations.
+     * @return the history. Never <code>null</code>.
+     */
+    public ActionHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * The actions most often invoked with a mouse during the session.
+     * @return the tracker. Never <code>null</code>.
+     */
+    public TopActionTracker getTopActions() {
+        return topActions;
+    }
+
+    /**
+     * The per-action invocation totals, updated as the actions are invoked.
+     * Should be used from the UI thread.
+     * @return the aggregates. Never <code>null</code>.
+     */
+    public ActionAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * The persistent action statistics.
+     * @return the statistics store the collector updates.
+     * <code>null</code> if the statistics are not kept.
+     */
+    public synchronized ActionStatisticsStore getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Starts updating the statistics store.
+     * @param newStatistics the statistics store to update.
+     * Not <code>null</code>.
+     * @param listener is notified if the store fails.
+     * <code>null</code> if the failures are ignored.
+     * @see #getStatistics()
+     */
+    public synchronized void setStatistics(
+            final ActionStatisticsStore newStatistics,
+            final ActionStatisticsListener listener) {
+        notNull(newStatistics);
+        this.statistics = newStatistics;
+        this.statisticsListener = listener;
+    }
+
+    /**
+     * Stops updating the statistics store. The collector does not use
+     * the store after this method returns, so the store can be closed from
+     * any thread.
+     * @return the removed store. <code>null</code> if the statistics were not
+     * kept.
+     */
+    public synchronized ActionStatisticsStore removeStatistics() {
+        final ActionStatisticsStore removed = statistics;
+        statistics = null;
+        statisticsListener = null;
+        return removed;
+    }
+
     /**
      * Must be called on user action. 
      * @param action the action. Not be <code>null</code>.
      */
     public void onAction(final AbstractActionDesc action) {
+        onAction(action, ActionOutcome.NONE);
+    }
+
+    /**
+     * Must be called on an action invoked with a mouse.
+     * @param action the action. Not be <code>null</code>.
+     * @param outcome what was done on the action invocation.
+     * Not <code>null</code>.
+     */
+    public void onAction(final AbstractActionDesc action,
+            final ActionOutcome outcome) {
         notNull(action);
+        notNull(outcome);
         lastAction = action;
+        final long now = System.currentTimeMillis();
+        history.record(action.getId(), now, false, action.hasAccelerator(),
+                outcome);
+        if (action.getId() != null) {
+            topActions.offer(action.getId());
+            aggregates.onAction(action, false, now);
+            updateStatistics(action.getId(), now, Counter.MOUSE, outcome);
+        }
+    }
+
+    /**
+     * Must be called on an action invoked with a keyboard shortcut.
+     * Does not change {@link #getLastAction()} and {@link #getTopActions()},
+     * which are about the actions invoked with a mouse.
+     * @param action the action. Not be <code>null</code>.
+     */
+    public void onKeyboardAction(final AbstractActionDesc action) {
+        notNull(action);
+        final long now = System.currentTimeMillis();
+        history.record(action.getId(), now, true, action.hasAccelerator(),
+                ActionOutcome.NONE);
+        if (action.getId() != null) {
+            aggregates.onAction(action, true, now);
+            updateStatistics(action.getId(), now, Counter.KEYBOARD,
+                    ActionOutcome.NONE);
+        }
+    }
+
+    /**
+     * Updates {@link #statistics} for an action invocation.
+     * Stops updating the statistics and notifies {@link #statisticsListener}
+     * if the store fails. Does nothing if the statistics are not kept.
+     * @param actionId the action id. Assumed not <code>null</code>.
+     * @param time the invocation time.
+     * @param invocation the counter of the way the action was invoked.
+     * Assumed not <code>null</code>.
+     * @param outcome what was done on the action invocation.
+     * Assumed not <code>null</code>.
+     */
+    private synchronized void updateStatistics(final String actionId,
+            final long time, final Counter invocation,
+            final ActionOutcome outcome) {
+        if (statistics == null) {
+            return;
+        }
+        try {
+            statistics.increment(actionId, time, invocation);
+            if (outcome == ActionOutcome.REMINDED) {
+                statistics.increment(actionId, time, Counter.REMINDED);
+            } else if (outcome == ActionOutcome.CANCELLED) {
+                statistics.increment(actionId, time, Counter.ENFORCED);
+            }
+        } catch (final IOException e) {
+            final ActionStatisticsStore failed = statistics;
+            final ActionStatisticsListener listener = statisticsListener;
+            removeStatistics();
+            if (listener != null) {
+                listener.statisticsFailed(failed, e);
+            }
+        }
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases the memory mappings of files without waiting for the garbage
+ * collector. While a file is mapped, Windows does not allow to delete or
+ * replace it. Relies on the JVM internals, does nothing if they are not
+ * available, leaving the mapping to the garbage collector.
+ * The buffer must not be accessed after it is unmapped.
+ *
+ * @author Sigasi
+ */
+final class MappedBuffers {
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private MappedBuffers() {
+    }
+
+    /**
+     * Unmaps the buffer.
+     * @param buffer the buffer to unmap. Not <code>null</code>.
+     */
+    public static void unmap(final MappedByteBuffer buffer) {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                        ByteBuffer.class);
+            } catch (final NoSuchMethodException e) {
+                // before Java 9
+                cleanDirectly(buffer);
+                return;
+            }
+            final Field unsafe = unsafeClass.getDeclaredField("theUnsafe");
+            unsafe.setAccessible(true);
+            invokeCleaner.invoke(unsafe.get(null), buffer);
+        } catch (final ClassNotFoundException e) {
+            // the mapping is released by the garbage collector
+        } catch (final NoSuchFieldException e) {
+            // the mapping is released by the garbage collector
+        } catch (final NoSuchMethodException e) {
+            // the mapping is released by the garbage collector
+        } catch (final IllegalAccessException e) {
+            // the mapping is released by the garbage collector
+        } catch (final InvocationTargetException e) {
+            // the mapping is released by the garbage collector
+        } catch (final SecurityException e) {
+            // the mapping is released by the garbage collector
+        }
+    }
+
+    /**
+     * Runs the cleaner of the buffer, as available before Java 9.
+     * @param buffer the buffer to unmap. Assumed not <code>null</code>.
+     * @throws NoSuchMethodException if the buffer has no cleaner.
+     * @throws IllegalAccessException if the cleaner is not accessible.
+     * @throws InvocationTargetException if the cleaner failed.
+     */
+    private static void cleanDirectly(final MappedByteBuffer buffer)
+            throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException {
+        final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        final Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most often invoked actions in fixed memory.
+ * Uses the SpaceSaving algorithm: a fixed number of counters is kept,
+ * and an action, which is not tracked yet, replaces the action with
+ * the smallest count, inheriting its count as the possible error.
+ * Any action invoked more often than the total number of invocations
+ * divided by the capacity is guaranteed to be tracked.
+ * <p>
+ * The counters are kept in primitive arrays ordered as a min-heap by
+ * count, so an update takes logarithmic time of the capacity.
+ * </p>
+ * <p>
+ * Is thread-safe.
+ * </p>
+ *
+ * @author Sigasi
+ */
+public class TopActionTracker {
+    /**
+     * An action with its approximate invocation count.
+     * The actual count is between {@link #getGuaranteedCount()} and
+     * {@link #getCount()}.
+     */
+    public static final class Entry {
+        /**
+         * @see #getActionId()
+         */
+        private final String actionId;
+
+        /**
+         * @see #getCount()
+         */
+        private final long count;
+
+        /**
+         * @see #getError()
+         */
+        private final long error;
+
+        /**
+         * Creates new entry.
+         * @param actionId the action id.
+         * @param count the estimated count.
+         * @param error the maximal overestimation of the count.
+         */
+        Entry(final String actionId, final long count, final long error) {
+            this.actionId = actionId;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * @return the action id. Never <code>null</code>.
+         */
+        public String getActionId() {
+            return actionId;
+        }
+
+        /**
+         * @return the estimated invocation count. Is never smaller than
+         * the actual count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the maximal overestimation of {@link #getCount()}.
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return the number of invocations, which certainly happened.
+         * Is never greater than the actual count.
+         */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+    }
+
+    /**
+     * Orders the entries by decreasing count.
+     */
+    private static final Comparator<Entry> BY_COUNT = new Comparator<Entry>() {
+        public int compare(final Entry e1, final Entry e2) {
+            if (e1.getCount() == e2.getCount()) {
+                return 0;
+            }
+            return e1.getCount() > e2.getCount() ? -1 : 1;
+        }
+    };
+
+    /**
+     * The tracked action ids by slot.
+     */
+    private final String[] ids;
+
+    /**
+     * The estimated counts by slot.
+     */
+    private final long[] counts;
+
+    /**
+     * The count errors by slot.
+     */
+    private final long[] errors;
+
+    /**
+     * The used slots, ordered as a min-heap by count.
+     */
+    private final int[] heap;
+
+    /**
+     * The position in {@link #heap} by slot.
+     */
+    private final int[] heapPositions;
+
+    /**
+     * The slot by tracked action id.
+     */
+    private final Map<String, Integer> slots;
+
+    /**
+     * The number of the used slots.
+     */
+    private int size;
+
+    /**
+     * The total number of the counted invocations.
+     */
+    private long total;
+
+    /**
+     * Whether a tracked action was replaced with another one.
+     * Until then all the counts are exact.
+     */
+    private boolean replaced;
+
+    /**
+     * Creates new tracker.
+     * @param capacity the number of actions to track. Positive.
+     * The larger the capacity, the more precise the counts.
+     */
+    public TopActionTracker(final int capacity) {
+        isTrue(capacity > 0);
+        ids = new String[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        heap = new int[capacity];
+        heapPositions = new int[capacity];
+        slots = new HashMap<String, Integer>(capacity * 2);
+    }
+
+    /**
+     * @return the number of actions tracked.
+     */
+    public int getCapacity() {
+        return ids.length;
+    }
+
+    /**
+     * Counts an invocation of the action.
+     * @param actionId the action id. Not <code>null</code>.
+     */
+    public synchronized void offer(final String actionId) {
+        notNull(actionId);
+        total++;
+        final Integer slot = slots.get(actionId);
+        if (slot != null) {
+            counts[slot]++;
+            siftDown(heapPositions[slot]);
+        } else if (size < ids.length) {
+            ids[size] = actionId;
+            counts[size] = 1;
+            errors[size] = 0;
+            heap[size] = size;
+            heapPositions[size] = size;
+            slots.put(actionId, size);
+            siftUp(size);
+            size++;
+        } else {
+            // replaces the action with the smallest count
+            final int minSlot = heap[0];
+            slots.remove(ids[minSlot]);
+            ids[minSlot] = actionId;
+            errors[minSlot] = counts[minSlot];
+            counts[minSlot]++;
+            slots.put(actionId, minSlot);
+            replaced = true;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * The most often invoked actions.
+     * @param n the maximal number of actions to return. Not negative.
+     * @return the actions with the largest estimated counts, ordered by
+     * decreasing count. Never <code>null</code>.
+     * The returned list is not changed by the later invocations.
+     */
+    public synchronized List<Entry> getTop(final int n) {
+        isTrue(n >= 0);
+        final List<Entry> entries = new ArrayList<Entry>(size);
+        for (int slot = 0; slot < size; slot++) {
+            entries.add(new Entry(ids[slot], counts[slot], errors[slot]));
+        }
+        Collections.sort(entries, BY_COUNT);
+        return entries.subList(0, Math.min(n, size));
+    }
+
+    /**
+     * The estimated invocation count of an action.
+     * @param actionId the action id. Not <code>null</code>.
+     * @return the action entry. If the action is not tracked,
+     * the entry count is the upper bound of the actual count.
+     * Never <code>null</code>.
+     */
+    public synchronized Entry get(final String actionId) {
+        notNull(actionId);
+        final Integer slot = slots.get(actionId);
+        if (slot == null) {
+            final long maxError = getMaxError();
+            return new Entry(actionId, maxError, maxError);
+        }
+        return new Entry(actionId, counts[slot], errors[slot]);
+    }
+
+    /**
+     * The maximal error of the tracked counts.
+     * @return the largest number, by which an action count can be
+     * overestimated. Is not greater than the total number of the counted
+     * invocations divided by the capacity.
+     */
+    public synchronized long getMaxError() {
+        return replaced ? counts[heap[0]] : 0;
+    }
+
+    /**
+     * @return the total number of the counted invocations.
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Moves the heap element up until its parent count is not greater.
+     * @param position the element position in {@link #heap}.
+     */
+    private void siftUp(final int position) {
+        int i = position;
+        while (i > 0) {
+            final int parent = (i - 1) / 2;
+            if (counts[heap[parent]] <= counts[heap[i]]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves the heap element down until its children counts are not
+     * smaller.
+     * @param position the element position in {@link #heap}.
+     */
+    private void siftDown(final int position) {
+        int i = position;
+        while (true) {
+            final int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            final int right = left + 1;
+            final int child = right < size
+                    && counts[heap[right]] < counts[heap[left]] ? right : left;
+            if (counts[heap[i]] <= counts[heap[child]]) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /**
+     * Swaps the heap elements.
+     * @param i1 the first element position.
+     * @param i2 the second element position.
+     */
+    private void swap(final int i1, final int i2) {
+        final int slot1 = heap[i1];
+        final int slot2 = heap[i2];
+        heap[i1] = slot2;
+        heap[i2] = slot1;
+        heapPositions[slot2] = i1;
+        heapPositions[slot1] = i2;
+    }
+}
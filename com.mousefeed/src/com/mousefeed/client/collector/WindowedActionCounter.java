@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.client.collector;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.ActionStatisticsStore.Counter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Counts action invocations within the last days.
+ * Keeps a ring of daily counts per action together with the sum of
+ * the ring, so counting an invocation takes constant time and does not
+ * keep the invocation times. The ring slots of the days, which left the
+ * window, are cleared when the action is counted again. A ring starts small
+ * and grows up to the window size only when the action is counted on days
+ * far apart, so a long window does not cost memory for the actions used
+ * during a few days.
+ * The invocations within a shorter number of the last days can be counted
+ * too, so a single counter serves all the windows up to its size.
+ * <p>
+ * Keeps at most the specified number of actions. When there is no room
+ * for a new action, the actions not invoked within the window are
+ * forgotten, and if there are no such actions, the action invoked the
+ * longest time ago is forgotten.
+ * </p>
+ * Not thread-safe.
+ *
+ * @author Sigasi
+ */
+public class WindowedActionCounter {
+    /**
+     * The daily counts of an action.
+     */
+    private static final class Ring {
+        /**
+         * The counts by day modulo the array length. Keeps the days from
+         * {@link #lastDay} back by the array length, which is not greater
+         * than the window size.
+         */
+        private int[] counts;
+
+        /**
+         * The earliest day, which can have a count within the window.
+         */
+        private int firstDay;
+
+        /**
+         * The latest counted day.
+         */
+        private int lastDay;
+
+        /**
+         * The sum of {@link #counts}.
+         */
+        private int total;
+
+        /**
+         * Creates new ring.
+         * @param window the number of days in the window.
+         * @param day the first counted day.
+         */
+        Ring(final int window, final int day) {
+            counts = new int[Math.min(window, INITIAL_RING_SIZE)];
+            firstDay = day;
+            lastDay = day;
+        }
+    }
+
+    /**
+     * The number of days a new ring keeps.
+     */
+    private static final int INITIAL_RING_SIZE = 4;
+
+    /**
+     * The maximal number of the tracked actions.
+     */
+    private final int maxSize;
+
+    /**
+     * @see #getWindow()
+     */
+    private final int window;
+
+    /**
+     * The time zone defining the day boundaries.
+     */
+    private final TimeZone timeZone;
+
+    /**
+     * The daily counts by action id.
+     */
+    private final Map<String, Ring> rings = new HashMap<String, Ring>();
+
+    /**
+     * Creates new counter.
+     * @param maxSize the maximal number of actions to track. Positive.
+     * @param window the number of days to count the invocations in.
+     * Positive.
+     */
+    public WindowedActionCounter(final int maxSize, final int window) {
+        this(maxSize, window, TimeZone.getDefault());
+    }
+
+    /**
+     * Creates new counter.
+     * @param maxSize the maximal number of actions to track. Positive.
+     * @param window the number of days to count the invocations in.
+     * Positive.
+     * @param timeZone the time zone defining the day boundaries.
+     * Not <code>null</code>.
+     */
+    WindowedActionCounter(final int maxSize, final int window,
+            final TimeZone timeZone) {
+        isTrue(maxSize > 0);
+        isTrue(window > 0);
+        notNull(timeZone);
+        this.maxSize = maxSize;
+        this.window = window;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * @return the number of days the invocations are counted in,
+     * including the current day.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Counts the action invocation.
+     * @param actionId the action id. Not <code>null</code>.
+     * @param time the invocation time in milliseconds, as returned by
+     * {@link System#currentTimeMillis()}.
+     * @return the number of the action invocations within the window
+     * ending on the invocation day, including this one.
+     */
+    public int increment(final String actionId, final long time) {
+        return increment(actionId, time, window);
+    }
+
+    /**
+     * Counts the action invocation.
+     * @param actionId the action id. Not <code>null</code>.
+     * @param time the invocation time in milliseconds, as returned by
+     * {@link System#currentTimeMillis()}.
+     * @param days the number of the last days to return the count for.
+     * Positive, not greater than {@link #getWindow()}.
+     * @return the number of the action invocations within the specified
+     * number of days ending on the invocation day, including this one.
+     */
+    public int increment(final String actionId, final long time,
+            final int days) {
+        notNull(actionId);
+        isTrue(days > 0 && days <= window);
+        return sum(add(actionId, ActionStatisticsStore.toDay(time, timeZone),
+                1), days);
+    }
+
+    /**
+     * The number of the action invocations within the window.
+     * @param actionId the action id. Not <code>null</code>.
+     * @param time the time the window ends at.
+     * @return the invocation count.
+     */
+    public int getCount(final String actionId, final long time) {
+        return getCount(actionId, time, window);
+    }
+
+    /**
+     * The number of the action invocations within the last days.
+     * @param actionId the action id. Not <code>null</code>.
+     * @param time the time the days end at.
+     * @param days the number of the last days to count the invocations in.
+     * Positive, not greater than {@link #getWindow()}.
+     * @return the invocation count.
+     */
+    public int getCount(final String actionId, final long time,
+            final int days) {
+        notNull(actionId);
+        isTrue(days > 0 && days <= window);
+        final Ring ring = rings.get(actionId);
+        if (ring == null) {
+            return 0;
+        }
+        advance(ring, ActionStatisticsStore.toDay(time, timeZone));
+        return sum(ring, days);
+    }
+
+    /**
+     * Counts the mouse invocations kept by the statistics store,
+     * which fall into the window.
+     * @param store the statistics store. Not <code>null</code>.
+     * @param time the time the window ends at.
+     */
+    public void load(final ActionStatisticsStore store, final long time) {
+        notNull(store);
+        final int today = ActionStatisticsStore.toDay(time, timeZone);
+        for (int i = 0; i < store.getRecordCount(); i++) {
+            final int day = store.getDay(i);
+            final int count = store.getCount(i, Counter.MOUSE);
+            if (day > today - window && day <= today && count > 0) {
+                add(store.getActionId(i), day, count);
+            }
+        }
+    }
+
+    /**
+     * Adds the invocations to the action counts.
+     * @param actionId the action id. Assumed not <code>null</code>.
+     * @param day the invocations day.
+     * @param count the number of the invocations.
+     * @return the action daily counts. Never <code>null</code>.
+     */
+    private Ring add(final String actionId, final int day, final int count) {
+        Ring ring = rings.get(actionId);
+        if (ring == null) {
+            if (rings.size() >= maxSize) {
+                makeRoom(day);
+            }
+            ring = new Ring(window, day);
+            rings.put(actionId, ring);
+        }
+        advance(ring, day);
+        if (day > ring.lastDay - window) {
+            if (day < ring.firstDay) {
+                // the clock was set back
+                ensureCapacity(ring, ring.lastDay - day + 1);
+                ring.firstDay = day;
+            }
+            ring.counts[day % ring.counts.length] += count;
+            ring.total += count;
+        }
+        return ring;
+    }
+
+    /**
+     * Grows the ring to keep the specified number of days, but not more
+     * days than the window.
+     * @param ring the ring. Assumed not <code>null</code>.
+     * @param days the number of days to keep.
+     */
+    private void ensureCapacity(final Ring ring, final int days) {
+        final int size = ring.counts.length;
+        if (days <= size || size == window) {
+            return;
+        }
+        final int newSize = Math.min(window, Math.max(days, 2 * size));
+        final int[] counts = new int[newSize];
+        for (int day = ring.lastDay - size + 1; day <= ring.lastDay; day++) {
+            counts[day % newSize] = ring.counts[day % size];
+        }
+        ring.counts = counts;
+    }
+
+    /**
+     * Sums the counts of the last days of the ring.
+     * @param ring the ring. Assumed not <code>null</code>.
+     * @param days the number of the last days. Assumed positive and not
+     * greater than {@link #window}.
+     * @return the sum of the counts.
+     */
+    private int sum(final Ring ring, final int days) {
+        if (days == window) {
+            return ring.total;
+        }
+        final int size = ring.counts.length;
+        int sum = 0;
+        for (int i = 0; i < Math.min(days, size); i++) {
+            sum += ring.counts[(ring.lastDay - i) % size];
+        }
+        return sum;
+    }
+
+    /**
+     * Moves the ring window to end at the day, clearing the counts of the
+     * days, which left the window.
+     * @param ring the ring. Assumed not <code>null</code>.
+     * @param day the day. Is ignored if it is earlier than the last
+     * counted day.
+     */
+    private void advance(final Ring ring, final int day) {
+        if (day <= ring.lastDay) {
+            return;
+        }
+        ring.firstDay = Math.max(ring.firstDay, day - window + 1);
+        // grows before the slots are reused for the new days
+        ensureCapacity(ring, day - ring.firstDay + 1);
+
+        final int size = ring.counts.length;
+        final int steps = Math.min(day - ring.lastDay, size);
+        for (int i = 1; i <= steps; i++) {
+            final int slot = (ring.lastDay + i) % size;
+            ring.total -= ring.counts[slot];
+            ring.counts[slot] = 0;
+        }
+        ring.lastDay = day;
+    }
+
+    /**
+     * Forgets the actions not invoked within the window, or the action
+     * invoked the longest time ago if all the actions were invoked within
+     * the window.
+     * @param day the current day.
+     */
+    private void makeRoom(final int day) {
+        String oldestId = null;
+        int oldestDay = Integer.MAX_VALUE;
+        for (final Iterator<Map.Entry<String, Ring>> it =
+                rings.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<String, Ring> entry = it.next();
+            final int lastDay = entry.getValue().lastDay;
+            if (lastDay <= day - window) {
+                it.remove();
+            } else if (lastDay < oldestDay) {
+                oldestDay = lastDay;
+                oldestId = entry.getKey();
+            }
+        }
+        if (rings.size() >= maxSize) {
+            rings.remove(oldestId);
+        }
+    }
+}
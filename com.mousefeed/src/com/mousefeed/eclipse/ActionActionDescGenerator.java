@@ -21,26 +21,17 @@ package com.mousefeed.eclipse;
 import static org.apache.commons.lang.Validate.notNull;
 
 import com.mousefeed.client.collector.AbstractActionDesc;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Map;
+import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.commands.Command;
-import org.eclipse.core.commands.IHandler;
 import org.eclipse.jface.action.ExternalActionManager;
 import org.eclipse.jface.action.ExternalActionManager.ICallback;
 import org.eclipse.jface.action.IAction;
-import org.eclipse.jface.bindings.Binding;
 import org.eclipse.jface.bindings.TriggerSequence;
-import org.eclipse.jface.bindings.keys.KeySequence;
 import org.eclipse.jface.bindings.keys.SWTKeySupport;
-import org.eclipse.jface.commands.ActionHandler;
-import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.actions.RetargetAction;
 import org.eclipse.ui.activities.IActivityManager;
-import org.eclipse.ui.internal.keys.BindingService;
-import org.eclipse.ui.keys.IBindingService;
 
 //COUPLING:OFF
 /**
@@ -51,7 +42,6 @@ import org.eclipse.ui.keys.IBindingService;
  * @author Andriy Palamarchuk
  * @author Robert Wloch
  */
-@SuppressWarnings("restriction")
 public class ActionActionDescGenerator {
 
     /**
@@ -66,23 +56,44 @@ public class ActionActionDescGenerator {
     private final TextActionHandlerActionLocator actionSearcher = new TextActionHandlerActionLocator();
 
     /**
-     * The binding service for the associated workbench.
+     * The active bindings handled by actions.
      */
-    private final IBindingService bindingService;
+    private final ActionBindingIndex bindingIndex;
 
     /**
      * The activity manager for the associated workbench.
      */
     private final IActivityManager activityManager;
 
+    /**
+     * The command, which binding provided the accelerator of the last
+     * generated description. <code>null</code> if the accelerator was not
+     * found through the bindings.
+     */
+    private Command bindingCommand;
+
     /**
      * Creates new finder.
      */
     public ActionActionDescGenerator() {
-        bindingService = (IBindingService) getWorkbench().getAdapter(
-                IBindingService.class);
-        activityManager = getWorkbench().getActivitySupport()
-                .getActivityManager();
+        this(new ActionBindingIndex(BindingManagerLocator.getBindingManager()),
+                PlatformUI.getWorkbench().getActivitySupport()
+                        .getActivityManager());
+    }
+
+    /**
+     * Creates new finder.
+     * @param bindingIndex the active bindings handled by actions.
+     * Not <code>null</code>.
+     * @param activityManager the workbench activity manager.
+     * Not <code>null</code>.
+     */
+    ActionActionDescGenerator(final ActionBindingIndex bindingIndex,
+            final IActivityManager activityManager) {
+        notNull(bindingIndex);
+        notNull(activityManager);
+        this.bindingIndex = bindingIndex;
+        this.activityManager = activityManager;
     }
 
     /**
@@ -97,6 +108,7 @@ public class ActionActionDescGenerator {
         notNull(action);
 
         actionDesc = new ActionDescImpl();
+        bindingCommand = null;
         // actions may have no text nor tool tip text
         final String text = action.getText();
         final String toolTipText = action.getToolTipText();
@@ -132,7 +144,9 @@ public class ActionActionDescGenerator {
             }
         }
 
-        fromActionBinding(action);
+        if (!actionDesc.hasAccelerator()) {
+            actionDesc.setAccelerator(fromActionBinding(action));
+        }
     }
 
     /**
@@ -184,10 +198,10 @@ public class ActionActionDescGenerator {
 
     /**
      * Scans current bindings, returns a trigger sequence, associated with this
-     * action. Uses heuristic to find an association. Assumes that if a binding
-     * action and the provided action are the same, if they have same class.
-     * This logic can potentially fail if an action class is used for different
-     * actions.
+     * action. A binding is associated with the action only if the bound action
+     * has the same class and definition id, or if the action handles a bound
+     * retarget action. The actions sharing a class, but not the definition
+     * id, don't get each other's accelerators.
      * 
      * @param action
      *            the action to search trigger sequence for. Returns
@@ -195,7 +209,7 @@ public class ActionActionDescGenerator {
      * @return the accelerator from the trigger sequence associated with the
      *         action or <code>null</code> if such sequence was not found.
      */
-    private String fromActionBinding(final IAction action) {
+    String fromActionBinding(final IAction action) {
         if (action == null) {
             return null;
         }
@@ -208,7 +222,7 @@ public class ActionActionDescGenerator {
     }
 
     /**
-     * Scans bindings for the action.
+     * Looks up the bindings index for the action.
      * 
      * @param action
      *            the action to scan bindings for. Assumed not <code>null</code>
@@ -216,36 +230,55 @@ public class ActionActionDescGenerator {
      * @return the accelerator from the action trigger sequence.
      *         <code>null</code> if the binding was not found.
      */
-    @SuppressWarnings("rawtypes")
     private String scanBindings(final IAction action) {
-        final KeySequence keySequence = KeySequence.getInstance();
-        // In eclipse 4 BindingService#getPartialMatches() doesn't call the
-        // BindingManager any more leading to an ArrayIndexOutOfBoundsException
-        // due to bad code quality. Only for this reason, mousefeed needs to
-        // perform a direct call on the BindingManager now.
-        if (bindingService instanceof BindingService) {
-            final BindingService theBindingService = (BindingService) bindingService;
-            final Map matches = theBindingService.getBindingManager()
-                    .getPartialMatches(keySequence);
+        final String definitionId = action.getActionDefinitionId();
+        String accelerator = null;
+        if (definitionId != null) {
+            accelerator = findEnabled(bindingIndex.getEntries(
+                    action.getClass(), definitionId));
+        }
+        if (accelerator == null) {
+            accelerator = scanRetargetBindings(action);
+        }
+        return accelerator;
+    }
 
-            final Class<? extends IAction> actionClass = action.getClass();
-            for (Object o : matches.keySet()) {
-                final TriggerSequence triggerSequence = (TriggerSequence) o;
-                final Binding binding = (Binding) matches.get(triggerSequence);
-                final Command command = binding.getParameterizedCommand()
-                        .getCommand();
-                final IHandler handler = getCommandHandler(command);
-                if (!(handler instanceof ActionHandler)) {
-                    continue;
+    /**
+     * Looks up the bindings of retarget actions for the action.
+     * 
+     * @param action
+     *            the action to scan bindings for. Assumed not <code>null</code>
+     *            .
+     * @return the accelerator from the action trigger sequence.
+     *         <code>null</code> if the binding was not found.
+     */
+    private String scanRetargetBindings(final IAction action) {
+        for (ActionBindingIndex.Entry entry : bindingIndex
+                .getRetargetEntries()) {
+            if (isCommandEnabled(entry.getCommand())) {
+                final String accelerator = getFromRetargetAction(action,
+                        entry.getTriggerSequence(),
+                        (RetargetAction) entry.getBoundAction());
+                if (accelerator != null) {
+                    bindingCommand = entry.getCommand();
+                    return accelerator;
                 }
+            }
+        }
+        return null;
+    }
 
-                if (isCommandEnabled(command)) {
-                    final String accelerator = getFromBindingData(action,
-                            actionClass, triggerSequence, handler);
-                    if (accelerator != null) {
-                        return accelerator;
-                    }
-                }
+    /**
+     * The trigger sequence of the first binding with an enabled command.
+     * @param entries the bindings to check. Assumed not <code>null</code>.
+     * @return the accelerator. <code>null</code> if there is no such
+     * binding.
+     */
+    private String findEnabled(final List<ActionBindingIndex.Entry> entries) {
+        for (ActionBindingIndex.Entry entry : entries) {
+            if (isCommandEnabled(entry.getCommand())) {
+                bindingCommand = entry.getCommand();
+                return entry.getTriggerSequence().toString();
             }
         }
         return null;
@@ -254,38 +287,25 @@ public class ActionActionDescGenerator {
     // RETURNCOUNT:OFF
     // clear, simple structure, leave extra returns
     /**
-     * Gets accelerator for the bindings data.
+     * Gets accelerator for the binding of a retarget action, if the action
+     * is the current handler of the retarget action.
      * 
      * @param action
      *            the action. Assumed not null.
-     * @param actionClass
-     *            effective action class. Assumed not null.
      * @param triggerSequence
      *            the binding trigger sequence. Assumed not null.
-     * @param handler
-     *            the action handler. Assumed not null.
+     * @param boundAction
+     *            the bound retarget action. Assumed not null.
      * @return the accelerator if found, <code>null</code> otherwise.
      */
-    private String getFromBindingData(final IAction action,
-            final Class<? extends IAction> actionClass,
-            final TriggerSequence triggerSequence, final IHandler handler) {
-        final ActionHandler actionHandler = (ActionHandler) handler;
-        final IAction boundAction = actionHandler.getAction();
-        if (boundAction == null) {
-            return null;
-        }
-        if (boundAction.getClass().equals(actionClass)) {
-            return triggerSequence.toString();
-        }
-        if (!(boundAction instanceof RetargetAction)) {
-            return null;
-        }
-        final IAction searchTarget = ((RetargetAction) boundAction)
-                .getActionHandler();
+    private String getFromRetargetAction(final IAction action,
+            final TriggerSequence triggerSequence,
+            final RetargetAction boundAction) {
+        final IAction searchTarget = boundAction.getActionHandler();
         if (searchTarget == null) {
             return null;
         }
-        if (searchTarget.getClass().equals(actionClass)) {
+        if (searchTarget == action) {
             return triggerSequence.toString();
         }
         if (actionSearcher.isSearchable(searchTarget)) {
@@ -312,48 +332,39 @@ public class ActionActionDescGenerator {
     }
 
     /**
-     * Current workbench. Not <code>null</code>.
+     * The command, which binding provided the accelerator of the last
+     * description generated by {@link #generate(IAction)}. The description
+     * is valid only while {@link #isCommandEnabled(Command, IActivityManager)}
+     * is <code>true</code> for the command.
+     * @return the command. <code>null</code> if the accelerator was not
+     * found through the bindings.
      */
-    private IWorkbench getWorkbench() {
-        return PlatformUI.getWorkbench();
+    public Command getBindingCommand() {
+        return bindingCommand;
     }
 
     /**
-     * Retrieves command handler from a command.
+     * Returns <code>true</code> if the command is defined and is enabled.
      * 
      * @param command
-     *            the command to retrieve the handler from. Not
-     *            <code>null</code>.
-     * @return the handler. Returns <code>null</code>, if can't retrieve a
-     *         handler.
+     *            the command to check. Not <code>null</code>.
      */
-    private IHandler getCommandHandler(final Command command) {
-        try {
-            final Method method = Command.class.getDeclaredMethod("getHandler");
-            method.setAccessible(true);
-            return (IHandler) method.invoke(command);
-        } catch (final SecurityException e) {
-            // want to know when this happens
-            throw new RuntimeException(e);
-        } catch (final NoSuchMethodException e) {
-            // should never happen
-            throw new AssertionError(e);
-        } catch (final IllegalAccessException e) {
-            // should never happen
-            throw new AssertionError(e);
-        } catch (final InvocationTargetException e) {
-            // should never happen
-            throw new AssertionError(e);
-        }
+    private boolean isCommandEnabled(final Command command) {
+        return isCommandEnabled(command, activityManager);
     }
 
     /**
-     * Returns <code>true</code> if the command is defined and is enabled.
+     * Returns <code>true</code> if the command is defined and is enabled by
+     * the activities.
      * 
      * @param command
      *            the command to check. Not <code>null</code>.
+     * @param activityManager
+     *            the workbench activity manager. Not <code>null</code>.
+     * @return whether the command binding can be used.
      */
-    private boolean isCommandEnabled(final Command command) {
+    static boolean isCommandEnabled(final Command command,
+            final IActivityManager activityManager) {
         return command.isDefined()
                 && activityManager.getIdentifier(command.getId()).isEnabled();
     }
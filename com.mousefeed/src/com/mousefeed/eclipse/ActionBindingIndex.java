@@ -0,0 +1,504 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang.ObjectUtils;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandEvent;
+import org.eclipse.core.commands.ICommandListener;
+import org.eclipse.core.commands.IHandler;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.BindingManagerEvent;
+import org.eclipse.jface.bindings.IBindingManagerListener;
+import org.eclipse.jface.bindings.TriggerSequence;
+import org.eclipse.jface.bindings.keys.KeySequence;
+import org.eclipse.jface.commands.ActionHandler;
+import org.eclipse.ui.actions.RetargetAction;
+
+/**
+ * Index of the active key bindings, which are handled by legacy
+ * {@link IAction} objects. The bindings are keyed by the class and the
+ * definition id of the bound action, so an accelerator lookup for a clicked
+ * action does not need to scan all the bindings of the active scheme.
+ * <p>
+ * The index is built lazily on the first lookup and is rebuilt only after
+ * the binding manager reports changed active bindings. When one of the
+ * bound commands reports a handler change, e.g. on a part activation, only
+ * the entries of that command are updated before the next lookup.
+ * </p>
+ * Must be used from the UI thread only.
+ *
+ * @author Sigasi
+ */
+class ActionBindingIndex {
+    /**
+     * A key binding for a command handled by an {@link ActionHandler}.
+     */
+    static final class Entry {
+        /**
+         * Position of the binding in the binding manager order.
+         */
+        private final int order;
+
+        /**
+         * @see #getTriggerSequence()
+         */
+        private final TriggerSequence triggerSequence;
+
+        /**
+         * @see #getCommand()
+         */
+        private final Command command;
+
+        /**
+         * @see #getBoundAction()
+         */
+        private final IAction boundAction;
+
+        /**
+         * The index key of the entry.
+         */
+        private final Key key;
+
+        /**
+         * Creates new entry.
+         * @param order see {@link #order}.
+         * @param triggerSequence the binding trigger sequence.
+         * Assumed not <code>null</code>.
+         * @param command the bound command. Assumed not <code>null</code>.
+         * @param boundAction the action handling the command.
+         * Assumed not <code>null</code>.
+         */
+        private Entry(final int order, final TriggerSequence triggerSequence,
+                final Command command, final IAction boundAction) {
+            this.order = order;
+            this.triggerSequence = triggerSequence;
+            this.command = command;
+            this.boundAction = boundAction;
+            key = new Key(boundAction.getClass(),
+                    boundAction.getActionDefinitionId());
+        }
+
+        /**
+         * The binding trigger sequence.
+         * @return the trigger sequence. Never <code>null</code>.
+         */
+        public TriggerSequence getTriggerSequence() {
+            return triggerSequence;
+        }
+
+        /**
+         * The bound command.
+         * @return the command. Never <code>null</code>.
+         */
+        public Command getCommand() {
+            return command;
+        }
+
+        /**
+         * The action, which handles the command.
+         * @return the action. Never <code>null</code>.
+         */
+        public IAction getBoundAction() {
+            return boundAction;
+        }
+    }
+
+    /**
+     * The index key: the class and the definition id of the bound action.
+     */
+    private static final class Key {
+        /**
+         * The action class.
+         */
+        private final Class<?> actionClass;
+
+        /**
+         * The action definition id. Can be <code>null</code>.
+         */
+        private final String definitionId;
+
+        /**
+         * Creates new key.
+         * @param actionClass see {@link #actionClass}.
+         * @param definitionId see {@link #definitionId}.
+         */
+        Key(final Class<?> actionClass, final String definitionId) {
+            this.actionClass = actionClass;
+            this.definitionId = definitionId;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return actionClass == key.actionClass
+                    && ObjectUtils.equals(definitionId, key.definitionId);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return actionClass.hashCode()
+                    ^ ObjectUtils.hashCode(definitionId);
+        }
+    }
+
+    /**
+     * A binding of a command.
+     */
+    private static final class CommandBinding {
+        /**
+         * Position of the binding in the binding manager order.
+         */
+        private final int order;
+
+        /**
+         * The binding trigger sequence.
+         */
+        private final TriggerSequence triggerSequence;
+
+        /**
+         * Creates new binding.
+         * @param order see {@link #order}.
+         * @param triggerSequence see {@link #triggerSequence}.
+         */
+        CommandBinding(final int order,
+                final TriggerSequence triggerSequence) {
+            this.order = order;
+            this.triggerSequence = triggerSequence;
+        }
+    }
+
+    /**
+     * The binding manager to index. <code>null</code> if the bindings
+     * can't be scanned.
+     */
+    private final BindingManager bindingManager;
+
+    /**
+     * The active bindings by the bound command.
+     */
+    private final Map<Command, List<CommandBinding>> bindingsByCommand =
+            new HashMap<Command, List<CommandBinding>>();
+
+    /**
+     * The indexed entries by the command. Contains only the commands
+     * handled by an action.
+     */
+    private final Map<Command, List<Entry>> entriesByCommand =
+            new HashMap<Command, List<Entry>>();
+
+    /**
+     * Binding entries, keyed by the class of the bound action.
+     * Entries of a key are kept in the binding manager order.
+     */
+    private final Map<Class<?>, List<Entry>> entriesByActionClass =
+            new HashMap<Class<?>, List<Entry>>();
+
+    /**
+     * Binding entries, keyed by the class and the definition id of the bound
+     * action. Entries of a key are kept in the binding manager order.
+     */
+    private final Map<Key, List<Entry>> entriesByKey =
+            new HashMap<Key, List<Entry>>();
+
+    /**
+     * Entries, which actions are {@link RetargetAction}. The handler of such
+     * action changes with the active part, so it must be checked on each
+     * lookup. Kept in the binding manager order.
+     */
+    private final List<Entry> retargetEntries = new ArrayList<Entry>();
+
+    /**
+     * The commands, which reported a handler change since the last lookup.
+     */
+    private final Set<Command> changedCommands = new HashSet<Command>();
+
+    /**
+     * Indicates that the index must be rebuilt before the next lookup.
+     */
+    private boolean stale = true;
+
+    /**
+     * Marks the index stale when the active bindings change.
+     */
+    private final IBindingManagerListener bindingManagerListener =
+            new IBindingManagerListener() {
+        public void bindingManagerChanged(final BindingManagerEvent event) {
+            if (event.isActiveBindingsChanged()) {
+                stale = true;
+            }
+        }
+    };
+
+    /**
+     * Remembers the bound commands, which change their handler.
+     */
+    private final ICommandListener commandListener = new ICommandListener() {
+        public void commandChanged(final CommandEvent event) {
+            if (event.isHandledChanged()) {
+                changedCommands.add(event.getCommand());
+            }
+        }
+    };
+
+    /**
+     * Creates new index.
+     * @param bindingManager the binding manager to index.
+     * If <code>null</code>, the index is always empty.
+     */
+    public ActionBindingIndex(final BindingManager bindingManager) {
+        this.bindingManager = bindingManager;
+        if (bindingManager != null) {
+            bindingManager.addBindingManagerListener(bindingManagerListener);
+        }
+    }
+
+    /**
+     * The bindings, which bound action has exactly the provided class and
+     * definition id.
+     * @param actionClass the action class. Not <code>null</code>.
+     * @param definitionId the action definition id. Can be
+     * <code>null</code>.
+     * @return the binding entries in the binding manager order.
+     * Never <code>null</code>. Must not be changed.
+     */
+    public List<Entry> getEntries(final Class<?> actionClass,
+            final String definitionId) {
+        notNull(actionClass);
+        update();
+        return nullToEmpty(entriesByKey.get(
+                new Key(actionClass, definitionId)));
+    }
+
+    /**
+     * The bindings, which bound action has exactly the provided class,
+     * regardless of the action definition id.
+     * @param actionClass the action class. Not <code>null</code>.
+     * @return the binding entries in the binding manager order.
+     * Never <code>null</code>. Must not be changed.
+     */
+    public List<Entry> getEntries(final Class<?> actionClass) {
+        notNull(actionClass);
+        update();
+        return nullToEmpty(entriesByActionClass.get(actionClass));
+    }
+
+    /**
+     * The bindings, which bound action is a {@link RetargetAction}.
+     * @return the binding entries in the binding manager order.
+     * Never <code>null</code>. Must not be changed.
+     */
+    public List<Entry> getRetargetEntries() {
+        update();
+        return retargetEntries;
+    }
+
+    /**
+     * Rebuilds the index if it is marked stale, otherwise updates the
+     * entries of the commands, which changed their handler.
+     */
+    private void update() {
+        if (stale) {
+            changedCommands.clear();
+            rebuild();
+            // reading the bindings may report the active bindings computed
+            // for the read
+            stale = false;
+        } else if (!changedCommands.isEmpty()) {
+            for (Command command : changedCommands) {
+                removeEntries(command);
+                addEntries(command);
+            }
+            changedCommands.clear();
+        }
+    }
+
+    /**
+     * Scans all the active bindings.
+     */
+    @SuppressWarnings("rawtypes")
+    private void rebuild() {
+        entriesByCommand.clear();
+        entriesByActionClass.clear();
+        entriesByKey.clear();
+        retargetEntries.clear();
+        for (Command command : bindingsByCommand.keySet()) {
+            command.removeCommandListener(commandListener);
+        }
+        bindingsByCommand.clear();
+        if (bindingManager == null) {
+            return;
+        }
+
+        final Map matches =
+                bindingManager.getPartialMatches(KeySequence.getInstance());
+        int order = 0;
+        for (Object o : matches.keySet()) {
+            final TriggerSequence triggerSequence = (TriggerSequence) o;
+            final Binding binding = (Binding) matches.get(triggerSequence);
+            final Command command =
+                    binding.getParameterizedCommand().getCommand();
+            List<CommandBinding> bindings = bindingsByCommand.get(command);
+            if (bindings == null) {
+                bindings = new ArrayList<CommandBinding>(1);
+                bindingsByCommand.put(command, bindings);
+                command.addCommandListener(commandListener);
+            }
+            bindings.add(new CommandBinding(order, triggerSequence));
+            order++;
+        }
+        for (Command command : bindingsByCommand.keySet()) {
+            addEntries(command);
+        }
+    }
+
+    /**
+     * Indexes the bindings of the command, if it is handled by an action.
+     * @param command the command. Assumed not <code>null</code>.
+     */
+    private void addEntries(final Command command) {
+        final List<CommandBinding> bindings = bindingsByCommand.get(command);
+        if (bindings == null) {
+            return;
+        }
+        final IHandler handler = getCommandHandler(command);
+        if (!(handler instanceof ActionHandler)) {
+            return;
+        }
+        final IAction boundAction = ((ActionHandler) handler).getAction();
+        if (boundAction == null) {
+            return;
+        }
+        final List<Entry> entries = new ArrayList<Entry>(bindings.size());
+        for (CommandBinding binding : bindings) {
+            final Entry entry = new Entry(binding.order,
+                    binding.triggerSequence, command, boundAction);
+            entries.add(entry);
+            insert(entriesByActionClass, entry.key.actionClass, entry);
+            insert(entriesByKey, entry.key, entry);
+            if (boundAction instanceof RetargetAction) {
+                insert(retargetEntries, entry);
+            }
+        }
+        entriesByCommand.put(command, entries);
+    }
+
+    /**
+     * Removes the indexed bindings of the command.
+     * @param command the command. Assumed not <code>null</code>.
+     */
+    private void removeEntries(final Command command) {
+        final List<Entry> entries = entriesByCommand.remove(command);
+        if (entries == null) {
+            return;
+        }
+        for (Entry entry : entries) {
+            remove(entriesByActionClass, entry.key.actionClass, entry);
+            remove(entriesByKey, entry.key, entry);
+            retargetEntries.remove(entry);
+        }
+    }
+
+    /**
+     * Adds the entry to the map list, keeping the binding manager order.
+     * @param map the map. Assumed not <code>null</code>.
+     * @param key the key. Assumed not <code>null</code>.
+     * @param entry the entry to add. Assumed not <code>null</code>.
+     * @param <K> the key type.
+     */
+    private static <K> void insert(final Map<K, List<Entry>> map,
+            final K key, final Entry entry) {
+        List<Entry> entries = map.get(key);
+        if (entries == null) {
+            entries = new ArrayList<Entry>(1);
+            map.put(key, entries);
+        }
+        insert(entries, entry);
+    }
+
+    /**
+     * Adds the entry to the list, keeping the binding manager order.
+     * @param entries the list. Assumed not <code>null</code>.
+     * @param entry the entry to add. Assumed not <code>null</code>.
+     */
+    private static void insert(final List<Entry> entries, final Entry entry) {
+        int i = entries.size();
+        while (i > 0 && entries.get(i - 1).order > entry.order) {
+            i--;
+        }
+        entries.add(i, entry);
+    }
+
+    /**
+     * Removes the entry from the map list.
+     * @param map the map. Assumed not <code>null</code>.
+     * @param key the key. Assumed not <code>null</code>.
+     * @param entry the entry to remove. Assumed not <code>null</code>.
+     * @param <K> the key type.
+     */
+    private static <K> void remove(final Map<K, List<Entry>> map,
+            final K key, final Entry entry) {
+        final List<Entry> entries = map.get(key);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * Converts a missing list to an empty one.
+     * @param entries the list. Can be <code>null</code>.
+     * @return the list. Never <code>null</code>.
+     */
+    private static List<Entry> nullToEmpty(final List<Entry> entries) {
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        return entries;
+    }
+
+    /**
+     * Retrieves command handler from a command.
+     *
+     * @param command
+     *            the command to retrieve the handler from. Not
+     *            <code>null</code>.
+     * @return the handler. Returns <code>null</code>, if can't retrieve a
+     *         handler.
+     */
+    private IHandler getCommandHandler(final Command command) {
+        return (IHandler) ReflectiveAccessorRegistry.getInstance().invoke(
+                command, "getHandler");
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.apache.commons.lang.ObjectUtils;
+import org.eclipse.core.commands.Command;
+import org.eclipse.jface.action.ActionContributionItem;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.action.IContributionItem;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.BindingManagerEvent;
+import org.eclipse.jface.bindings.IBindingManagerListener;
+import org.eclipse.ui.actions.RetargetAction;
+import org.eclipse.ui.activities.ActivityManagerEvent;
+import org.eclipse.ui.activities.IActivityManager;
+import org.eclipse.ui.activities.IActivityManagerListener;
+
+/**
+ * Caches action descriptions generated for contribution items, so repeated
+ * clicks on the same menu item or tool item do not run the action
+ * description generators again.
+ * <p>
+ * The contribution items are referenced weakly. The whole cache is cleared
+ * when the binding manager reports a change of the active scheme or of the
+ * active bindings. The latter also covers the active contexts changes.
+ * Each description is checked against the text the item widget showed when
+ * the description was generated, because the labels of command and handled
+ * contribution items change through <code>IElementUpdater</code> without a
+ * binding change. Descriptions of {@link ActionContributionItem} objects are
+ * additionally checked against the action text and the retarget action
+ * handler, e.g. the "Undo" action label.
+ * If their accelerator was found through a binding, the generator checks of
+ * the binding command are repeated on each hit, and the cache is cleared
+ * when the enabled activities change.
+ * </p>
+ * Must be used from the UI thread only.
+ *
+ * @author Sigasi
+ */
+class ActionDescCache {
+    /**
+     * A cached action description with the state it was generated for.
+     */
+    private static final class CachedActionDesc {
+        /**
+         * The cached action description.
+         */
+        private final AbstractActionDesc actionDesc;
+
+        /**
+         * The text of the item widget when the description was generated.
+         */
+        private final String itemText;
+
+        /**
+         * The action text when the description was generated.
+         * <code>null</code> for non-action contribution items.
+         */
+        private final String actionText;
+
+        /**
+         * The class of the retarget action handler when the description
+         * was generated. <code>null</code> if there was no handler.
+         */
+        private final Class<?> handlerClass;
+
+        /**
+         * The command, which binding provided the accelerator.
+         * <code>null</code> if the accelerator was not found through the
+         * bindings.
+         */
+        private final Command bindingCommand;
+
+        /**
+         * Creates new cached description.
+         * @param actionDesc the description. Assumed not <code>null</code>.
+         * @param itemText see {@link #itemText}.
+         * @param actionText see {@link #actionText}.
+         * @param handlerClass see {@link #handlerClass}.
+         * @param bindingCommand see {@link #bindingCommand}.
+         */
+        private CachedActionDesc(final AbstractActionDesc actionDesc,
+                final String itemText, final String actionText,
+                final Class<?> handlerClass, final Command bindingCommand) {
+            this.actionDesc = actionDesc;
+            this.itemText = itemText;
+            this.actionText = actionText;
+            this.handlerClass = handlerClass;
+            this.bindingCommand = bindingCommand;
+        }
+    }
+
+    /**
+     * Cached descriptions by contribution item.
+     */
+    private final Map<IContributionItem, CachedActionDesc> cache =
+            new WeakHashMap<IContributionItem, CachedActionDesc>();
+
+    /**
+     * Clears the cache when the active bindings change.
+     */
+    private final IBindingManagerListener bindingManagerListener =
+            new IBindingManagerListener() {
+        public void bindingManagerChanged(final BindingManagerEvent event) {
+            if (event.isActiveBindingsChanged()
+                    || event.isActiveSchemeChanged()) {
+                clear();
+            }
+        }
+    };
+
+    /**
+     * Clears the cache when the enabled activities change, because
+     * the activities decide which bindings can be used.
+     */
+    private final IActivityManagerListener activityManagerListener =
+            new IActivityManagerListener() {
+        public void activityManagerChanged(final ActivityManagerEvent event) {
+            if (event.haveEnabledActivityIdsChanged()) {
+                clear();
+            }
+        }
+    };
+
+    /**
+     * The activity manager to check the binding commands with.
+     */
+    private final IActivityManager activityManager;
+
+    /**
+     * Creates new cache.
+     * @param bindingManager the binding manager to track changes of.
+     * If <code>null</code>, the cache is never invalidated by binding
+     * changes.
+     * @param activityManager the workbench activity manager.
+     * Not <code>null</code>.
+     */
+    public ActionDescCache(final BindingManager bindingManager,
+            final IActivityManager activityManager) {
+        notNull(activityManager);
+        this.activityManager = activityManager;
+        if (bindingManager != null) {
+            bindingManager.addBindingManagerListener(bindingManagerListener);
+        }
+        activityManager.addActivityManagerListener(activityManagerListener);
+    }
+
+    /**
+     * The cached action description for the contribution item.
+     * @param item the contribution item. Not <code>null</code>.
+     * @param itemText the current text of the item widget.
+     * @return the description cached by
+     * {@link #put(IContributionItem, String, AbstractActionDesc, Command)}.
+     * <code>null</code> if there is no description cached for the item or
+     * the cached one is outdated.
+     */
+    public AbstractActionDesc get(final IContributionItem item,
+            final String itemText) {
+        notNull(item);
+        final CachedActionDesc cached = cache.get(item);
+        if (cached == null) {
+            return null;
+        }
+        if (!ObjectUtils.equals(cached.itemText, itemText)
+                || item instanceof ActionContributionItem
+                        && isActionChanged(cached,
+                                ((ActionContributionItem) item).getAction())) {
+            cache.remove(item);
+            return null;
+        }
+        return cached.actionDesc;
+    }
+
+    /**
+     * Caches the action description for the contribution item.
+     * @param item the contribution item. Not <code>null</code>.
+     * @param itemText the current text of the item widget.
+     * @param actionDesc the description generated for the item.
+     * Not <code>null</code>.
+     * @param bindingCommand the command, which binding provided the
+     * accelerator of an {@link ActionContributionItem} description, see
+     * {@link ActionActionDescGenerator#getBindingCommand()}.
+     * <code>null</code> if the accelerator was not found through the
+     * bindings.
+     */
+    public void put(final IContributionItem item, final String itemText,
+            final AbstractActionDesc actionDesc, final Command bindingCommand) {
+        notNull(item);
+        notNull(actionDesc);
+        if (item instanceof ActionContributionItem) {
+            final IAction action = ((ActionContributionItem) item).getAction();
+            cache.put(item, new CachedActionDesc(actionDesc, itemText,
+                    action.getText(), getHandlerClass(action),
+                    bindingCommand));
+        } else {
+            cache.put(item, new CachedActionDesc(actionDesc, itemText,
+                    null, null, null));
+        }
+    }
+
+    /**
+     * Removes all the cached descriptions.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Whether the action changed since its description was cached.
+     * @param cached the cached description. Assumed not <code>null</code>.
+     * @param action the action of the cached contribution item.
+     * Assumed not <code>null</code>.
+     * @return <code>true</code> if the cached description is outdated.
+     */
+    private boolean isActionChanged(final CachedActionDesc cached,
+            final IAction action) {
+        return !ObjectUtils.equals(cached.actionText, action.getText())
+                || cached.handlerClass != getHandlerClass(action)
+                || !isBindingCommandEnabled(cached);
+    }
+
+    /**
+     * Runs the checks the generator applied to the binding, which provided
+     * the accelerator of the cached description.
+     * @param cached the cached description. Assumed not <code>null</code>.
+     * @return <code>false</code> if the binding can't be used any more.
+     */
+    private boolean isBindingCommandEnabled(final CachedActionDesc cached) {
+        return cached.bindingCommand == null
+                || ActionActionDescGenerator.isCommandEnabled(
+                        cached.bindingCommand, activityManager);
+    }
+
+    /**
+     * The class of the current handler of a retarget action.
+     * @param action the action. Assumed not <code>null</code>.
+     * @return the handler class. <code>null</code> if the action is not a
+     * retarget action or does not have a handler.
+     */
+    private Class<?> getHandlerClass(final IAction action) {
+        if (!(action instanceof RetargetAction)) {
+            return null;
+        }
+        final IAction handler = ((RetargetAction) action).getActionHandler();
+        return handler == null ? null : handler.getClass();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_INVOCATION_CONTROL_ENABLED;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Item;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.ToolBar;
+import org.eclipse.swt.widgets.ToolItem;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * Delivers the selection events of the menu and tool bar items to the
+ * action listener.
+ * <p>
+ * When invocation control is enabled, the filter is registered for the
+ * selection events of the whole display, so the action listener is called
+ * before the action and can cancel it. The events of the other widgets,
+ * e.g. trees and tables, are dropped with a class check.
+ * </p>
+ * <p>
+ * When invocation control is disabled, the action listener does not need to
+ * cancel actions, so the filter only listens to the menu and tool bar items.
+ * The existing items are hooked when the mode is switched on, the new ones
+ * when they are created, as reported by the display skin events. No display
+ * filters are installed in this mode.
+ * </p>
+ *
+ * @author Sigasi
+ */
+class ActionSelectionFilter implements Listener {
+    /**
+     * The display to listen to.
+     */
+    private final Display display;
+
+    /**
+     * Receives the action item selection events.
+     */
+    private final Listener actionListener;
+
+    /**
+     * Provides access to the plugin preferences.
+     */
+    private final PreferenceAccessor preferences =
+            PreferenceAccessor.getInstance();
+
+    /**
+     * Whether the filter listens to the whole display.
+     * Is accessed only from the UI thread.
+     */
+    private boolean displayWide;
+
+    /**
+     * Whether the filter is installed.
+     * Is accessed only from the UI thread.
+     */
+    private boolean installed;
+
+    /**
+     * Hooks {@link #itemListener} to the created menu and tool bar items.
+     * Is registered for the display skin events, which are sent once for
+     * each new widget.
+     */
+    private final Listener itemHook = new Listener() {
+        public void handleEvent(final Event event) {
+            if (isActionItem(event.widget)) {
+                hookItem((Item) event.widget);
+            }
+        }
+    };
+
+    /**
+     * Is added to each menu and tool bar item, while invocation control is
+     * disabled. Stays on the items after invocation control is enabled,
+     * doing nothing.
+     */
+    private final Listener itemListener = new Listener() {
+        public void handleEvent(final Event event) {
+            if (!displayWide) {
+                actionListener.handleEvent(event);
+            }
+        }
+    };
+
+    /**
+     * Switches the registration when invocation control is turned on or off.
+     */
+    private final IPropertyChangeListener preferenceListener =
+            new IPropertyChangeListener() {
+                public void propertyChange(final PropertyChangeEvent event) {
+                    if (!P_INVOCATION_CONTROL_ENABLED.equals(
+                            event.getProperty())) {
+                        return;
+                    }
+                    // also lets the preference accessor refresh its values
+                    display.asyncExec(new Runnable() {
+                        public void run() {
+                            if (installed && !display.isDisposed()) {
+                                register(preferences
+                                        .isInvocationControlEnabled());
+                            }
+                        }
+                    });
+                }
+            };
+
+    /**
+     * Creates new filter.
+     * @param display the display to listen to. Not <code>null</code>.
+     * @param actionListener receives the selection events of the menu and
+     * tool bar items. Not <code>null</code>.
+     */
+    public ActionSelectionFilter(final Display display,
+            final Listener actionListener) {
+        notNull(display);
+        notNull(actionListener);
+        this.display = display;
+        this.actionListener = actionListener;
+    }
+
+    /**
+     * Starts listening to the display.
+     * Must be called from the UI thread.
+     */
+    public void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        getPreferenceStore().addPropertyChangeListener(preferenceListener);
+        register(preferences.isInvocationControlEnabled());
+    }
+
+    /**
+     * Stops listening to the display.
+     * Must be called from the UI thread.
+     */
+    public void uninstall() {
+        if (!installed) {
+            return;
+        }
+        installed = false;
+        getPreferenceStore().removePropertyChangeListener(preferenceListener);
+        unregister();
+    }
+
+    /**
+     * Passes the selection events of the menu and tool bar items to the
+     * action listener. Is registered as the display filter.
+     * @param event the event. Not <code>null</code>.
+     */
+    public void handleEvent(final Event event) {
+        if (isActionItem(event.widget)) {
+            actionListener.handleEvent(event);
+        }
+    }
+
+    /**
+     * Whether the widget can trigger an action.
+     * @param widget the widget to check. Can be <code>null</code>.
+     * @return <code>true</code> for a menu or a tool bar item.
+     */
+    static boolean isActionItem(final Widget widget) {
+        return widget instanceof MenuItem || widget instanceof ToolItem;
+    }
+
+    /**
+     * Registers the listeners for the mode.
+     * @param listenToDisplay whether to listen to the whole display.
+     */
+    private void register(final boolean listenToDisplay) {
+        unregister();
+        displayWide = listenToDisplay;
+        if (listenToDisplay) {
+            display.addFilter(SWT.Selection, this);
+        } else {
+            display.addListener(SWT.Skin, itemHook);
+            for (Shell shell : display.getShells()) {
+                hookControl(shell);
+            }
+        }
+    }
+
+    /**
+     * Removes the listeners added by {@link #register(boolean)}.
+     */
+    private void unregister() {
+        display.removeFilter(SWT.Selection, this);
+        display.removeListener(SWT.Skin, itemHook);
+    }
+
+    /**
+     * Hooks the items of the control menus and tool bars, including the
+     * child controls.
+     * @param control the control. Assumed not <code>null</code>.
+     */
+    private void hookControl(final Control control) {
+        hookMenu(control.getMenu());
+        if (control instanceof Shell) {
+            hookMenu(((Shell) control).getMenuBar());
+        }
+        if (control instanceof ToolBar) {
+            for (ToolItem item : ((ToolBar) control).getItems()) {
+                hookItem(item);
+            }
+        }
+        if (control instanceof Composite) {
+            for (Control child : ((Composite) control).getChildren()) {
+                hookControl(child);
+            }
+        }
+    }
+
+    /**
+     * Hooks the items of the menu and of its submenus.
+     * @param menu the menu. Can be <code>null</code>.
+     */
+    private void hookMenu(final Menu menu) {
+        if (menu != null) {
+            for (MenuItem item : menu.getItems()) {
+                hookItem(item);
+                hookMenu(item.getMenu());
+            }
+        }
+    }
+
+    /**
+     * Adds {@link #itemListener} to the item. The listener is added only
+     * once, even if the item was hooked before.
+     * @param item the item. Assumed not <code>null</code>.
+     */
+    private void hookItem(final Item item) {
+        item.removeListener(SWT.Selection, itemListener);
+        item.addListener(SWT.Selection, itemListener);
+    }
+
+    /**
+     * @return the plugin preference store. Not <code>null</code>.
+     */
+    private IPreferenceStore getPreferenceStore() {
+        return Activator.getDefault().getPreferenceStore();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+
+/**
+ * Provides the rows of {@link ActionStatisticsView} on demand.
+ * The table elements are the row indexes in the aggregates.
+ *
+ * @author Sigasi
+ */
+class ActionStatisticsContentProvider implements ILazyContentProvider {
+    /**
+     * The viewer to provide the elements to.
+     */
+    private TableViewer viewer;
+
+    /**
+     * Default constructor does nothing.
+     */
+    public ActionStatisticsContentProvider() {
+    }
+
+    // see base
+    public void updateElement(final int index) {
+        viewer.replace(Integer.valueOf(index), index);
+    }
+
+    // see base
+    public void inputChanged(final Viewer newViewer, final Object oldInput,
+            final Object newInput) {
+        this.viewer = (TableViewer) newViewer;
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void dispose() {}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.Messages;
+import com.mousefeed.client.OnWrongInvocationMode;
+import com.mousefeed.client.collector.ActionAggregates;
+import com.mousefeed.eclipse.ActionStatisticsView.Column;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jface.viewers.BaseLabelProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Renders the rows of {@link ActionStatisticsView}.
+ * The elements are the row indexes in the aggregates.
+ *
+ * @author Sigasi
+ */
+class ActionStatisticsLabelProvider extends BaseLabelProvider
+        implements ITableLabelProvider {
+    /**
+     * Provides text from the resource.
+     */
+    private static final Messages MESSAGES =
+            new Messages(ActionStatisticsLabelProvider.class);
+
+    /**
+     * The table columns in order.
+     */
+    private static final Column[] COLUMNS = Column.values();
+
+    /**
+     * The rendered data.
+     */
+    private final ActionAggregates aggregates;
+
+    /**
+     * Provides the on wrong invocation mode settings.
+     */
+    private final PreferenceAccessor preferences;
+
+    /**
+     * Creates new label provider.
+     * @param aggregates the rendered data. Not <code>null</code>.
+     * @param preferences the plugin preferences. Not <code>null</code>.
+     */
+    public ActionStatisticsLabelProvider(final ActionAggregates aggregates,
+            final PreferenceAccessor preferences) {
+        notNull(aggregates);
+        notNull(preferences);
+        this.aggregates = aggregates;
+        this.preferences = preferences;
+    }
+
+    /**
+     * Returns <code>null</code>.
+     */
+    public Image getColumnImage(final Object element, final int columnIndex) {
+        return null;
+    }
+
+    // see base
+    public String getColumnText(final Object element, final int columnIndex) {
+        final int row = (Integer) element;
+        final String text;
+        switch (COLUMNS[columnIndex]) {
+        case ACTION:
+            text = aggregates.getLabel(row);
+            break;
+        case ACCELERATOR:
+            text = StringUtils.defaultString(aggregates.getAccelerator(row));
+            break;
+        case MOUSE:
+            text = Integer.toString(aggregates.getMouseCount(row));
+            break;
+        case KEYBOARD:
+            text = Integer.toString(aggregates.getKeyboardCount(row));
+            break;
+        case MODE:
+            text = getOnWrongInvocationMode(row).getLabel();
+            break;
+        case TREND:
+            text = MESSAGES.get("trend." + aggregates.getTrend(
+                    row, System.currentTimeMillis()).name());
+            break;
+        default:
+            throw new IllegalArgumentException(
+                    "Unrecognized column index: " + columnIndex);
+        }
+        return text;
+    }
+
+    /**
+     * @param row the row index.
+     * @return the on wrong invocation mode of the row action.
+     * Never <code>null</code>.
+     */
+    private OnWrongInvocationMode getOnWrongInvocationMode(final int row) {
+        final OnWrongInvocationMode mode =
+                preferences.getOnWrongInvocationMode(aggregates.getActionId(row));
+        return mode == null ? preferences.getOnWrongInvocationMode() : mode;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_DEFAULT_ON_WRONG_INVOCATION_MODE;
+
+import com.mousefeed.client.Messages;
+import com.mousefeed.client.collector.ActionAggregates;
+import com.mousefeed.client.collector.ActionAggregatesListener;
+import com.mousefeed.eclipse.preferences.ActionOverrides;
+import com.mousefeed.eclipse.preferences.ActionOverridesListener;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows how the actions are invoked.
+ * The rows are read from the {@link ActionAggregates} of the collector,
+ * which are updated as the actions are invoked. The table is virtual,
+ * so only the visible rows are rendered, and a change of the aggregates
+ * refreshes only the changed row.
+ * <p>
+ * The action statistics store keeps only the action ids, so the actions
+ * loaded from it are shown by their ids and without a keyboard shortcut
+ * until they are invoked in the current session.
+ * </p>
+ *
+ * @author Sigasi
+ */
+public class ActionStatisticsView extends ViewPart {
+    /**
+     * The table columns.
+     * The column order is the order of the enumeration members.
+     */
+    static enum Column {
+        /**
+         * The action label column.
+         */
+        ACTION,
+
+        /**
+         * The keyboard shortcut column.
+         */
+        ACCELERATOR,
+
+        /**
+         * The number of mouse invocations column.
+         */
+        MOUSE,
+
+        /**
+         * The number of keyboard invocations column.
+         */
+        KEYBOARD,
+
+        /**
+         * The on wrong invocation mode column.
+         */
+        MODE,
+
+        /**
+         * The mouse usage trend column.
+         */
+        TREND
+    }
+
+    /**
+     * The view id.
+     */
+    public static final String ID = "com.mousefeed.views.actionStatistics";
+
+    /**
+     * Provides text from the resource.
+     */
+    private static final Messages MESSAGES =
+            new Messages(ActionStatisticsView.class);
+
+    /**
+     * The shown data.
+     */
+    private final ActionAggregates aggregates =
+            Activator.getDefault().getCollector().getAggregates();
+
+    /**
+     * Provides access to the plugin preferences.
+     */
+    private final PreferenceAccessor preferences =
+            PreferenceAccessor.getInstance();
+
+    /**
+     * Shows the aggregates.
+     */
+    private TableViewer viewer;
+
+    /**
+     * The display of the view.
+     */
+    private Display display;
+
+    /**
+     * Updates the changed rows.
+     * The aggregates are changed in the UI thread.
+     */
+    private final ActionAggregatesListener aggregatesListener =
+            new ActionAggregatesListener() {
+        public void rowAdded(final int row) {
+            viewer.setItemCount(aggregates.getRowCount());
+        }
+
+        public void rowChanged(final int row) {
+            viewer.getTable().clear(row);
+        }
+    };
+
+    /**
+     * Updates the on wrong invocation mode column when the action-specific
+     * settings change.
+     */
+    private final ActionOverridesListener actionOverridesListener =
+            new ActionOverridesListener() {
+        public void actionOverridesChanged(final ActionOverrides overrides) {
+            refreshLater();
+        }
+    };
+
+    /**
+     * Updates the on wrong invocation mode column when the default
+     * setting changes.
+     */
+    private final IPropertyChangeListener preferencesListener =
+            new IPropertyChangeListener() {
+        public void propertyChange(final PropertyChangeEvent event) {
+            if (P_DEFAULT_ON_WRONG_INVOCATION_MODE.equals(
+                    event.getProperty())) {
+                refreshLater();
+            }
+        }
+    };
+
+    /**
+     * Default constructor does nothing.
+     */
+    public ActionStatisticsView() {
+    }
+
+    // see base
+    @Override
+    public void createPartControl(final Composite parent) {
+        display = parent.getDisplay();
+        final Table table = new Table(parent, SWT.VIRTUAL | SWT.V_SCROLL
+                | SWT.H_SCROLL | SWT.BORDER | SWT.FULL_SELECTION);
+        table.setLinesVisible(true);
+        table.setHeaderVisible(true);
+        for (Column c : Column.values()) {
+            final TableColumn column = new TableColumn(table,
+                    c == Column.MOUSE || c == Column.KEYBOARD
+                            ? SWT.RIGHT : SWT.LEFT);
+            column.setText(MESSAGES.get("column." + c.name()));
+            column.pack();
+        }
+
+        viewer = new TableViewer(table);
+        viewer.setUseHashlookup(true);
+        viewer.setContentProvider(new ActionStatisticsContentProvider());
+        viewer.setLabelProvider(
+                new ActionStatisticsLabelProvider(aggregates, preferences));
+        viewer.setInput(aggregates);
+        viewer.setItemCount(aggregates.getRowCount());
+
+        aggregates.addListener(aggregatesListener);
+        preferences.addActionOverridesListener(actionOverridesListener);
+        getPreferenceStore().addPropertyChangeListener(preferencesListener);
+    }
+
+    // see base
+    @Override
+    public void setFocus() {
+        viewer.getControl().setFocus();
+    }
+
+    // see base
+    @Override
+    public void dispose() {
+        aggregates.removeListener(aggregatesListener);
+        preferences.removeActionOverridesListener(actionOverridesListener);
+        getPreferenceStore().removePropertyChangeListener(preferencesListener);
+        super.dispose();
+    }
+
+    /**
+     * Schedules re-rendering of the visible rows.
+     * Can be called from any thread.
+     */
+    private void refreshLater() {
+        if (display.isDisposed()) {
+            return;
+        }
+        display.asyncExec(new Runnable() {
+            public void run() {
+                final Table table = viewer.getTable();
+                if (!table.isDisposed()) {
+                    table.clearAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the plugin preference store. Never <code>null</code>.
+     */
+    private IPreferenceStore getPreferenceStore() {
+        return Activator.getDefault().getPreferenceStore();
+    }
+}
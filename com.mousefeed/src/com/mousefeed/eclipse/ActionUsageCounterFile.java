@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.ActionUsageCounter;
+import com.mousefeed.eclipse.preferences.AtomicFileWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Keeps {@link ActionUsageCounter} data between the sessions.
+ *
+ * @author Sigasi
+ */
+class ActionUsageCounterFile {
+    /**
+     * The file to store the data in.
+     */
+    private final File file;
+
+    /**
+     * Creates new file accessor.
+     * @param file the file to store the data in. Not <code>null</code>.
+     */
+    public ActionUsageCounterFile(final File file) {
+        notNull(file);
+        this.file = file;
+    }
+
+    /**
+     * Loads the stored counts. Leaves the counter empty if there is no data
+     * or the data can't be read.
+     * @param counter the counter to load the data to. Not <code>null</code>.
+     */
+    public void load(final ActionUsageCounter counter) {
+        notNull(counter);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                counter.readFrom(in);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            log(IStatus.WARNING, "Failed to read " + file, e);
+        }
+    }
+
+    /**
+     * Stores the counts. The file is replaced atomically, so a failed write
+     * does not damage the stored data.
+     * @param counter the counter to save. Not <code>null</code>.
+     */
+    public void save(final ActionUsageCounter counter) {
+        notNull(counter);
+        try {
+            AtomicFileWriter.writeAtomically(file,
+                    new AtomicFileWriter.Content() {
+                public void writeTo(final OutputStream out)
+                        throws IOException {
+                    final DataOutputStream data = new DataOutputStream(
+                            new BufferedOutputStream(out));
+                    counter.writeTo(data);
+                    data.flush();
+                }
+            });
+        } catch (final IOException e) {
+            log(IStatus.ERROR, "Failed to write " + file, e);
+        }
+    }
+
+    /**
+     * Reports the failure to the plugin log.
+     * @param severity the status severity.
+     * @param message the message. Assumed not <code>null</code>.
+     * @param e the failure. Assumed not <code>null</code>.
+     */
+    private void log(final int severity, final String message,
+            final IOException e) {
+        final Activator activator = Activator.getDefault();
+        if (activator != null) {
+            activator.getLog().log(
+                    new Status(severity, Activator.PLUGIN_ID, message, e));
+        }
+    }
+}
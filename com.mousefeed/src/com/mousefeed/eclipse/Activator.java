@@ -18,11 +18,25 @@
  */
 package com.mousefeed.eclipse;
 
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX;
 import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.time.DateUtils.MILLIS_PER_DAY;
+import static org.apache.commons.lang.time.DateUtils.MILLIS_PER_MINUTE;
 
+import com.mousefeed.client.collector.ActionStatisticsListener;
+import com.mousefeed.client.collector.ActionStatisticsStore;
+import com.mousefeed.client.collector.ActionUsageCounter;
 import com.mousefeed.client.collector.Collector;
+import com.mousefeed.client.collector.WindowedActionCounter;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import java.io.IOException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.osgi.framework.BundleContext;
 
 /**
  * The activator class controls the plug-in life cycle.
@@ -35,6 +49,34 @@ public class Activator extends AbstractUIPlugin {
      */
     public static final String PLUGIN_ID = "com.mousefeed";
 
+    /**
+     * Name of the file to store the action usage counts in.
+     */
+    static final String ACTION_USAGE_FILE = "actionUsage.dat";
+
+    /**
+     * Base name of the files to store the action statistics in.
+     */
+    static final String ACTION_STATISTICS_FILE = "actionStatistics";
+
+    /**
+     * The maximal number of actions to count the usage of.
+     */
+    private static final int MAX_COUNTED_ACTIONS = 1000;
+
+    /**
+     * The maximal number of actions to count the invocations within
+     * the window of days.
+     */
+    private static final int MAX_WINDOW_COUNTED_ACTIONS = 1000;
+
+    /**
+     * How long after an action usage count change the counts are saved, in
+     * milliseconds. The counts are saved at most this often, so a crash
+     * loses only the last minute of the usage.
+     */
+    private static final long ACTION_USAGE_SAVE_DELAY = MILLIS_PER_MINUTE;
+
     /**
      * The shared instance.
      */
@@ -44,6 +86,46 @@ public class Activator extends AbstractUIPlugin {
      * @see #getCollector()
      */
     private final Collector collector = new Collector();
+
+    /**
+     * @see #countActionUsage(String, int)
+     */
+    private ActionUsageCounter actionUsageCounter;
+
+    /**
+     * Counts the action invocations within the last days. Covers the
+     * longest window, so changing the window does not reload the counts.
+     * Access to the counter is synchronized on the counter.
+     * @see #countWindowedActionUsage(String, int)
+     */
+    private final WindowedActionCounter windowedActionCounter =
+            new WindowedActionCounter(MAX_WINDOW_COUNTED_ACTIONS,
+                    CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX);
+
+    /**
+     * Logs the failure of the action statistics store and closes it.
+     */
+    private final ActionStatisticsListener statisticsListener =
+            new ActionStatisticsListener() {
+        public void statisticsFailed(final ActionStatisticsStore statistics,
+                final IOException e) {
+            getLog().log(new Status(IStatus.WARNING, PLUGIN_ID,
+                    "Failed to update the action statistics", e));
+            closeActionStatistics(statistics);
+        }
+    };
+
+    /**
+     * Saves {@link #actionUsageCounter} in background.
+     */
+    private final Job actionUsageSaveJob =
+            new Job("Saving MouseFeed action usage") {
+        @Override
+        protected IStatus run(final IProgressMonitor monitor) {
+            saveActionUsage();
+            return Status.OK_STATUS;
+        }
+    };
     
     /**
      * The constructor.
@@ -51,6 +133,74 @@ public class Activator extends AbstractUIPlugin {
     public Activator() {
         isTrue(plugin == null);
         plugin = this;
+        actionUsageSaveJob.setSystem(true);
+    }
+
+    /**
+     * Opens the action statistics store and loads the counts kept by it.
+     * {@inheritDoc}
+     */
+    @Override
+    public void start(final BundleContext context) throws Exception {
+        super.start(context);
+        try {
+            final ActionStatisticsStore statistics = new ActionStatisticsStore(
+                    getStateLocation().append(ACTION_STATISTICS_FILE)
+                    .toFile());
+            final long now = System.currentTimeMillis();
+            collector.getAggregates().load(statistics, now);
+            synchronized (windowedActionCounter) {
+                windowedActionCounter.load(statistics, now);
+            }
+            collector.setStatistics(statistics, statisticsListener);
+        } catch (final IOException e) {
+            getLog().log(new Status(IStatus.WARNING, PLUGIN_ID,
+                    "Failed to open the action statistics", e));
+        }
+    }
+
+    /**
+     * Writes the settings, which are not saved yet.
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop(final BundleContext context) throws Exception {
+        final PreferenceAccessor preferences =
+                PreferenceAccessor.getExistingInstance();
+        if (preferences != null) {
+            preferences.flush();
+        }
+        actionUsageSaveJob.cancel();
+        actionUsageSaveJob.join();
+        saveActionUsage();
+        closeActionStatistics();
+        super.stop(context);
+    }
+
+    /**
+     * Stops collecting the action statistics and closes the store.
+     * The collector stops using the store before it is closed, so this
+     * can be called while the UI thread reports actions.
+     */
+    private void closeActionStatistics() {
+        final ActionStatisticsStore statistics = collector.removeStatistics();
+        if (statistics != null) {
+            closeActionStatistics(statistics);
+        }
+    }
+
+    /**
+     * Closes the action statistics store, logging the failure.
+     * @param statistics the store, not used by the collector any more.
+     * Assumed not <code>null</code>.
+     */
+    private void closeActionStatistics(final ActionStatisticsStore statistics) {
+        try {
+            statistics.close();
+        } catch (final IOException e) {
+            getLog().log(new Status(IStatus.ERROR, PLUGIN_ID,
+                    "Failed to close the action statistics", e));
+        }
     }
 
     /**
@@ -81,4 +231,93 @@ public class Activator extends AbstractUIPlugin {
     public Collector getCollector() {
         return collector;
     }
+
+    /**
+     * Counts the action invocation. The counts are kept between the
+     * sessions. They are saved in background shortly after they change,
+     * and when the plugin is stopped.
+     * @param actionId the action id. Not <code>null</code>.
+     * @param halfLife the number of days, after which the counts are halved.
+     * 0 if the counts don't decay.
+     * @return the action count including this invocation.
+     */
+    public int countActionUsage(final String actionId, final int halfLife) {
+        final ActionUsageCounter counter = getActionUsageCounter(halfLife);
+        final long now = System.currentTimeMillis();
+        final int count;
+        synchronized (counter) {
+            counter.setHalfLife(halfLife * MILLIS_PER_DAY, now);
+            count = counter.increment(actionId, now);
+        }
+        if (actionUsageSaveJob.getState() == Job.NONE) {
+            actionUsageSaveJob.schedule(ACTION_USAGE_SAVE_DELAY);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the action invocation within the last days. The counts
+     * start with the invocations kept by the action statistics.
+     * @param actionId the action id. Not <code>null</code>.
+     * @param window the number of days to count the invocations in.
+     * Not greater than
+     * {@link com.mousefeed.eclipse.preferences.PreferenceConstants#CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX}.
+     * 0 for the longest window.
+     * @return the number of the action invocations within the window,
+     * including this one.
+     */
+    public int countWindowedActionUsage(final String actionId,
+            final int window) {
+        final int days = window == 0
+                ? CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX : window;
+        synchronized (windowedActionCounter) {
+            return windowedActionCounter.increment(actionId,
+                    System.currentTimeMillis(), days);
+        }
+    }
+
+    /**
+     * The action usage counter, loaded on the first call.
+     * Access to the counter is synchronized on the counter.
+     * @param halfLife the number of days, after which the counts are halved.
+     * 0 if the counts don't decay.
+     * @return the action usage counter. Not <code>null</code>.
+     */
+    private synchronized ActionUsageCounter getActionUsageCounter(
+            final int halfLife) {
+        if (actionUsageCounter == null) {
+            actionUsageCounter = new ActionUsageCounter(
+                    MAX_COUNTED_ACTIONS, halfLife * MILLIS_PER_DAY);
+            getActionUsageCounterFile().load(actionUsageCounter);
+        }
+        return actionUsageCounter;
+    }
+
+    /**
+     * Writes the action usage counts, if they were used.
+     * The counts are copied, so the file is written without blocking the
+     * counting.
+     */
+    private void saveActionUsage() {
+        final ActionUsageCounter counter;
+        synchronized (this) {
+            counter = actionUsageCounter;
+        }
+        if (counter != null) {
+            final ActionUsageCounter snapshot;
+            synchronized (counter) {
+                snapshot = new ActionUsageCounter(counter);
+            }
+            getActionUsageCounterFile().save(snapshot);
+        }
+    }
+
+    /**
+     * @return the file keeping the action usage counts.
+     * Not <code>null</code>.
+     */
+    private ActionUsageCounterFile getActionUsageCounterFile() {
+        return new ActionUsageCounterFile(
+                getStateLocation().append(ACTION_USAGE_FILE).toFile());
+    }
 }
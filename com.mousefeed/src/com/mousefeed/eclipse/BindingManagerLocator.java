@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.internal.keys.BindingService;
+import org.eclipse.ui.keys.IBindingService;
+
+/**
+ * Finds the binding manager behind the workbench binding service.
+ * In Eclipse 4 <code>BindingService#getPartialMatches()</code> doesn't call
+ * the binding manager any more, leading to an
+ * <code>ArrayIndexOutOfBoundsException</code>, so MouseFeed calls the
+ * binding manager directly.
+ *
+ * @author Sigasi
+ */
+@SuppressWarnings("restriction")
+final class BindingManagerLocator {
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private BindingManagerLocator() {
+    }
+
+    /**
+     * The workbench binding manager.
+     * @return the binding manager. <code>null</code> if the workbench
+     * binding service does not provide it.
+     */
+    public static BindingManager getBindingManager() {
+        final IBindingService bindingService = (IBindingService) PlatformUI
+                .getWorkbench().getAdapter(IBindingService.class);
+        return bindingService instanceof BindingService
+                ? ((BindingService) bindingService).getBindingManager()
+                : null;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+/**
+ * Notifies the pop-ups about any user action, such as a click or a key press,
+ * so they can close themselves.
+ * A single set of display filters is installed once per display and
+ * multiplexes the events to the registered listeners. While nothing is
+ * registered an event costs one check.
+ * Must be called from the display thread.
+ *
+ * @author Sigasi
+ */
+final class CloseOnActionDispatcher implements Listener {
+    /**
+     * The key of the display data storing the dispatcher.
+     */
+    private static final String KEY = CloseOnActionDispatcher.class.getName();
+
+    /**
+     * The user action events.
+     */
+    private static final int[] EVENT_TYPES =
+            {SWT.MouseDown, SWT.Selection, SWT.KeyDown};
+
+    /**
+     * The listeners to notify.
+     */
+    private final List<Listener> listeners = new ArrayList<Listener>();
+
+    /**
+     * The time from which the listener with the same index is notified,
+     * as returned by {@link System#currentTimeMillis()}.
+     */
+    private final List<Long> activeFrom = new ArrayList<Long>();
+
+    /**
+     * Creates new dispatcher. Use {@link #getInstance(Display)}.
+     */
+    private CloseOnActionDispatcher() {
+    }
+
+    /**
+     * The dispatcher of the display. Creates it and installs its filters when
+     * called the first time for the display.
+     * @param display the display. Not <code>null</code>, not disposed.
+     * @return the dispatcher. Never <code>null</code>.
+     */
+    public static CloseOnActionDispatcher getInstance(final Display display) {
+        notNull(display);
+        final Object data = display.getData(KEY);
+        if (data instanceof CloseOnActionDispatcher) {
+            return (CloseOnActionDispatcher) data;
+        }
+        final CloseOnActionDispatcher dispatcher =
+                new CloseOnActionDispatcher();
+        for (int type : EVENT_TYPES) {
+            display.addFilter(type, dispatcher);
+        }
+        display.setData(KEY, dispatcher);
+        return dispatcher;
+    }
+
+    /**
+     * Starts notifying the listener about the user actions.
+     * Replaces the earlier registration of the same listener.
+     * @param listener the listener. Not <code>null</code>.
+     * @param delay the time to skip the events for, in milliseconds.
+     * Lets skip the events caused by the current user action. Not negative.
+     */
+    public void register(final Listener listener, final long delay) {
+        notNull(listener);
+        isTrue(delay >= 0);
+        unregister(listener);
+        listeners.add(listener);
+        activeFrom.add(Long.valueOf(System.currentTimeMillis() + delay));
+    }
+
+    /**
+     * Stops notifying the listener. Does nothing if the listener is not
+     * registered.
+     * @param listener the listener. Not <code>null</code>.
+     */
+    public void unregister(final Listener listener) {
+        notNull(listener);
+        final int i = listeners.indexOf(listener);
+        if (i >= 0) {
+            listeners.remove(i);
+            activeFrom.remove(i);
+        }
+    }
+
+    /**
+     * Notifies the active listeners.
+     * @param event the user action event. Not <code>null</code>.
+     */
+    public void handleEvent(final Event event) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final List<Listener> active = new ArrayList<Listener>(listeners.size());
+        for (int i = 0; i < listeners.size(); i++) {
+            if (now >= activeFrom.get(i).longValue()) {
+                active.add(listeners.get(i));
+            }
+        }
+        // the listeners can unregister themselves
+        for (Listener listener : active) {
+            listener.handleEvent(event);
+        }
+    }
+}
@@ -18,8 +18,6 @@
  */
 package com.mousefeed.eclipse;
 
-import static org.apache.commons.lang.Validate.notNull;
-import java.lang.reflect.Field;
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.ui.menus.CommandContributionItem;
@@ -60,34 +58,7 @@ public class CommandContributionItemCommandLocator {
      */
     private ParameterizedCommand getItemParCommand(
             final CommandContributionItem item) {
-        final Field commandField = getCommandField();
-        try {
-            commandField.setAccessible(true);
-            return (ParameterizedCommand) commandField.get(item);
-        } catch (final SecurityException e) {
-            throw new RuntimeException(e);
-        } catch (final IllegalArgumentException e) {
-            throw new RuntimeException(e);
-        } catch (final IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    /**
-     * The command field of the command contribution item class.
-     * @return the command field. Never <code>null</code>.
-     */
-    private Field getCommandField() {
-        try {
-            final Field commandField =
-                    CommandContributionItem.class.getDeclaredField(
-                            COMMAND_FIELD);
-            notNull(commandField);
-            return commandField;
-        } catch (final SecurityException e) {
-            throw new RuntimeException(e);
-        } catch (final NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        }
+        return (ParameterizedCommand) ReflectiveAccessorRegistry.getInstance()
+                .readField(item, COMMAND_FIELD);
     }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.CommandEvent;
+import org.eclipse.core.commands.ICommandListener;
+import org.eclipse.core.commands.IParameter;
+import org.eclipse.core.commands.ParameterValuesException;
+import org.eclipse.core.commands.Parameterization;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.commands.common.NotDefinedException;
+
+/**
+ * Caches whether a keyboard shortcut can be configured for a command.
+ * Only the commands with at least one parameter combination are listed on
+ * the Keys preference page. Instead of enumerating all the combinations
+ * with {@link ParameterizedCommand#generateCombinations(Command)}, builds
+ * the first one only. The result is kept until the command definition or
+ * its parameters change.
+ * Must be used from the UI thread only.
+ *
+ * @author Sigasi
+ */
+class ConfigurableCommandCache {
+    /**
+     * The singleton instance.
+     */
+    private static final ConfigurableCommandCache INSTANCE =
+            new ConfigurableCommandCache();
+
+    /**
+     * The representative parameterized command by command id.
+     * <code>null</code> for the commands without parameter combinations.
+     */
+    private final Map<String, ParameterizedCommand> cache =
+            new HashMap<String, ParameterizedCommand>();
+
+    /**
+     * Discards the cached data of a command when its definition changes.
+     */
+    private final ICommandListener commandListener = new ICommandListener() {
+        public void commandChanged(final CommandEvent event) {
+            if (event.isDefinedChanged() || event.isParametersChanged()) {
+                cache.remove(event.getCommand().getId());
+            }
+        }
+    };
+
+    /**
+     * Creates new cache.
+     * Because this class is a singleton, the constructor normally should not be
+     * used. It is exposed for testing purposes only.
+     */
+    ConfigurableCommandCache() {
+    }
+
+    /**
+     * The singleton instance.
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static ConfigurableCommandCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Checks if for the command a keyboard shortcut can be configured.
+     * @param command the command. Not <code>null</code>.
+     * @return <code>true</code> if the command has at least one parameter
+     * combination.
+     */
+    public boolean isConfigurable(final Command command) {
+        return getParameterizedCommand(command) != null;
+    }
+
+    /**
+     * A parameterized command to show the command on the Keys preference
+     * page.
+     * @param command the command. Not <code>null</code>.
+     * @return the first parameter combination of the command.
+     * <code>null</code> if the command has no parameter combinations.
+     */
+    public ParameterizedCommand getParameterizedCommand(
+            final Command command) {
+        notNull(command);
+        final String id = command.getId();
+        if (cache.containsKey(id)) {
+            return cache.get(id);
+        }
+        final ParameterizedCommand result = createFirstCombination(command);
+        // the same listener is registered only once
+        command.addCommandListener(commandListener);
+        cache.put(id, result);
+        return result;
+    }
+
+    /**
+     * Creates the parameterized command, which is the first one
+     * {@link ParameterizedCommand#generateCombinations(Command)} would return.
+     * @param command the command. Assumed not <code>null</code>.
+     * @return the parameterized command. <code>null</code> if the command
+     * has no parameter combinations.
+     */
+    private ParameterizedCommand createFirstCombination(
+            final Command command) {
+        final IParameter[] parameters;
+        try {
+            parameters = command.getParameters();
+        } catch (final NotDefinedException e) {
+            // It is safe to just ignore undefined commands.
+            return null;
+        }
+        if (parameters == null || parameters.length == 0) {
+            return new ParameterizedCommand(command, null);
+        }
+        final List<Parameterization> combination =
+                getFirstCombination(parameters, 0);
+        return combination == null ? null : new ParameterizedCommand(command,
+                combination.isEmpty() ? null : combination.toArray(
+                        new Parameterization[combination.size()]));
+    }
+
+    /**
+     * Generates the first combination of the parameter values.
+     * Follows the rules of
+     * {@link ParameterizedCommand#generateCombinations(Command)}: an optional
+     * parameter is omitted, a required parameter takes its first value,
+     * a parameter, which values can't be computed, is skipped.
+     * @param parameters the command parameters. Assumed not <code>null</code>.
+     * @param start the index of the first parameter to generate the
+     * combination for.
+     * @return the parameterizations of the parameters starting with
+     * <code>start</code>. <code>null</code> if there are no combinations.
+     */
+    // RETURNCOUNT:OFF
+    private List<Parameterization> getFirstCombination(
+            final IParameter[] parameters, final int start) {
+        final boolean last = start + 1 >= parameters.length;
+        final IParameter parameter = parameters[start];
+        final Map<?, ?> values;
+        try {
+            values = parameter.getValues().getParameterValues();
+        } catch (final ParameterValuesException e) {
+            if (last) {
+                return start == 0 && parameter.isOptional()
+                        ? new ArrayList<Parameterization>()
+                        : null;
+            }
+            return getFirstCombination(parameters, start + 1);
+        }
+        if (!parameter.isOptional() && values.isEmpty()) {
+            return null;
+        }
+
+        final List<Parameterization> tail =
+                last ? null : getFirstCombination(parameters, start + 1);
+        final List<Parameterization> combination = tail == null
+                ? new ArrayList<Parameterization>()
+                : tail;
+        if (!parameter.isOptional()) {
+            combination.add(0, new Parameterization(parameter,
+                    (String) values.values().iterator().next()));
+        }
+        return combination;
+    }
+    // RETURNCOUNT:ON
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+import static org.apache.commons.lang.time.DateUtils.MILLIS_PER_SECOND;
+
+import com.mousefeed.eclipse.NagScheduler.Nag;
+import com.mousefeed.eclipse.preferences.FeedbackSettings;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import java.util.List;
+import org.eclipse.core.commands.Command;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.ui.commands.ICommandService;
+
+/**
+ * Gives the user feedback on the action invocations.
+ * Canceling an action and deciding whether a notification is shown are done
+ * synchronously, in the selection event filter, so the caller knows which
+ * feedback was given. The popups are shown later, from the display event
+ * loop, so creating them does not delay the action the user clicked.
+ * The popup shell is created in advance and reused.
+ * The notifications are passed through {@link NagScheduler}, so repeated
+ * clicks don't show the same notification again and the notifications
+ * coming together are shown in a single popup. The shortcut suggestions
+ * waiting for the reminders are shown after the reminders popup.
+ *
+ * @author Sigasi
+ */
+class FeedbackDispatcher {
+    /**
+     * For how long the notifications are collected before they are shown
+     * together, in milliseconds.
+     */
+    private static final int COALESCE_DELAY = 100;
+
+    /**
+     * The display to show the popups on.
+     */
+    private final Display display;
+
+    /**
+     * The workbench command service.
+     */
+    private final ICommandService commandService;
+
+    /**
+     * Decides which notifications to show.
+     * Is accessed from the display thread only.
+     */
+    private final NagScheduler scheduler = new NagScheduler();
+
+    /**
+     * Whether showing the pending notifications is scheduled.
+     * Is accessed from the display thread only.
+     */
+    private boolean flushScheduled;
+
+    /**
+     * Shows the pending notifications.
+     */
+    private final Runnable flush = new Runnable() {
+        public void run() {
+            flushScheduled = false;
+            if (display.isDisposed()) {
+                return;
+            }
+            final FeedbackSettings settings =
+                    PreferenceAccessor.getInstance().getFeedbackSettings();
+            final List<Nag> nags = scheduler.drain(System.currentTimeMillis(),
+                    getRepeatDelay(settings), settings.getNagMaxStacked());
+            if (!nags.isEmpty()) {
+                NagPopUpManager.getPopUp(display).showNags(nags);
+            }
+            if (scheduler.hasPending()) {
+                scheduleFlush(NagPopUp.CLOSE_TIMEOUT);
+            }
+        }
+    };
+
+    /**
+     * Creates new dispatcher.
+     * @param display the display to show the popups on.
+     * Not <code>null</code>.
+     * @param commandService the workbench command service.
+     * Not <code>null</code>.
+     */
+    public FeedbackDispatcher(final Display display,
+            final ICommandService commandService) {
+        notNull(display);
+        notNull(commandService);
+        this.display = display;
+        this.commandService = commandService;
+        NagPopUpManager.prewarm(display);
+    }
+
+    /**
+     * Reminds that the action has a keyboard shortcut.
+     * Must be called from the display thread.
+     * @param actionName the action label. Not blank.
+     * @param actionId the action id. Can be <code>null</code>.
+     * @param accelerator the action keyboard shortcut. Not blank.
+     * @return <code>true</code> if the reminder will be shown,
+     * <code>false</code> if the same reminder was shown recently.
+     */
+    public boolean remind(final String actionName, final String actionId,
+            final String accelerator) {
+        return offer(Nag.reminder(actionName, actionId, accelerator, false));
+    }
+
+    /**
+     * Cancels the action and tells that its keyboard shortcut must be used.
+     * The notification is shown on every canceled invocation.
+     * Must be called from the display thread.
+     * @param actionName the action label. Not blank.
+     * @param actionId the action id. Can be <code>null</code>.
+     * @param accelerator the action keyboard shortcut. Not blank.
+     * @param event the event invoking the action. Is canceled before this
+     * method returns. Not <code>null</code>.
+     */
+    public void enforce(final String actionName, final String actionId,
+            final String accelerator, final Event event) {
+        cancel(event);
+        offer(Nag.reminder(actionName, actionId, accelerator, true));
+    }
+
+    /**
+     * Suggests to configure a keyboard shortcut for the action, if the action
+     * can have a keyboard shortcut.
+     * Must be called from the display thread.
+     * @param actionName the action label. Not blank.
+     * @param actionId the action id. Not blank.
+     * @return <code>true</code> if the suggestion will be shown,
+     * <code>false</code> if a keyboard shortcut can't be configured for the
+     * action or the suggestion was shown recently.
+     */
+    public boolean suggestShortcut(final String actionName,
+            final String actionId) {
+        return isConfigurableAction(actionId)
+                && offer(Nag.shortcutSuggestion(actionName, actionId));
+    }
+
+    /**
+     * Checks if for the action a keyboard shortcut can be configured.
+     * The result is cached by {@link ConfigurableCommandCache}.
+     * 
+     * @param actionId
+     *            the action id. Not <code>null</code>.
+     * @return true, if the action has at least one ParameterizedCommand
+     *         (only those are listed in the keys preference page), false else.
+     */
+    boolean isConfigurableAction(final String actionId) {
+        final Command command = commandService.getCommand(actionId);
+        return command != null
+                && ConfigurableCommandCache.getInstance().isConfigurable(command);
+    }
+
+    /**
+     * Passes the notification to {@link #scheduler} and schedules showing
+     * the pending notifications.
+     * Is called from the display thread.
+     * @param nag the notification. Assumed not <code>null</code>.
+     * @return <code>true</code> if the notification will be shown.
+     */
+    private boolean offer(final Nag nag) {
+        final FeedbackSettings settings =
+                PreferenceAccessor.getInstance().getFeedbackSettings();
+        final boolean offered = !display.isDisposed() && scheduler.offer(nag,
+                System.currentTimeMillis(), getRepeatDelay(settings));
+        if (offered) {
+            scheduleFlush(COALESCE_DELAY);
+        }
+        return offered;
+    }
+
+    /**
+     * Schedules showing the pending notifications, unless it is
+     * already scheduled.
+     * @param delay the delay in milliseconds.
+     */
+    private void scheduleFlush(final int delay) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            display.timerExec(delay, flush);
+        }
+    }
+
+    /**
+     * The notification repeat delay.
+     * @param settings the preferences. Assumed not <code>null</code>.
+     * @return the delay in milliseconds.
+     */
+    private long getRepeatDelay(final FeedbackSettings settings) {
+        return settings.getNagRepeatDelay() * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Stops further processing of the specified event.
+     * 
+     * @param event
+     *            the event to disable. Assumed not <code>null</code>.
+     */
+    private void cancel(final Event event) {
+        event.type = SWT.None;
+        event.doit = false;
+    }
+}
@@ -23,24 +23,18 @@ import static org.apache.commons.lang.Validate.notNull;
 
 import com.mousefeed.client.OnWrongInvocationMode;
 import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.ActionOutcome;
 import com.mousefeed.client.collector.Collector;
+import com.mousefeed.eclipse.preferences.FeedbackSettings;
 import com.mousefeed.eclipse.preferences.PreferenceAccessor;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import org.apache.commons.lang.StringUtils;
-import org.eclipse.core.commands.Command;
-import org.eclipse.core.commands.ParameterizedCommand;
-import org.eclipse.core.commands.common.NotDefinedException;
 import org.eclipse.e4.ui.workbench.renderers.swt.HandledContributionItem;
 import org.eclipse.jface.action.ActionContributionItem;
 import org.eclipse.jface.action.IContributionItem;
 import org.eclipse.jface.action.SubContributionItem;
-import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Item;
 import org.eclipse.swt.widgets.Listener;
-import org.eclipse.swt.widgets.MenuItem;
-import org.eclipse.swt.widgets.ToolItem;
 import org.eclipse.swt.widgets.Widget;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.PlatformUI;
@@ -82,6 +76,13 @@ public class GlobalSelectionListener implements Listener {
      */
     private final HandledActionDescGenerator handledActionDescGenerator = new HandledActionDescGenerator();
 
+    /**
+     * Action descriptions already generated for contribution items.
+     */
+    private final ActionDescCache actionDescCache = new ActionDescCache(
+            BindingManagerLocator.getBindingManager(), getWorkbench()
+                    .getActivitySupport().getActivityManager());
+
     /**
      * Collects user activity data.
      */
@@ -94,9 +95,24 @@ public class GlobalSelectionListener implements Listener {
             .getService(ICommandService.class);
 
     /**
-     * Counts the number of times an action or command is invoked.
+     * Shows the feedback popups.
+     */
+    private final FeedbackDispatcher feedbackDispatcher = new FeedbackDispatcher(
+            getWorkbench().getDisplay(), commandService);
+
+    /**
+     * Refreshes the configure action invocation menu item, which shows the
+     * last action label.
+     */
+    private final LastActionElementsRefresher configureActionRefresher =
+            new LastActionElementsRefresher(getWorkbench().getDisplay(),
+                    commandService, CONFIGURE_ACTION_INVOCATION_DEF, collector);
+
+    /**
+     * Reports the time the listener adds to the action invocation.
      */
-    private final Map<String, Integer> actionUsageMonitor = new HashMap<String, Integer>();
+    private final LatencyTrace latencyTrace = new LatencyTrace(
+            "MouseFeed selection handling");
 
     /**
      * Default constructor does nothing.
@@ -105,7 +121,9 @@ public class GlobalSelectionListener implements Listener {
     }
 
     /**
-     * Processes an event.
+     * Processes an event. Is normally called by
+     * {@link ActionSelectionFilter}, which drops the events of the widgets
+     * other than menu and tool bar items.
      * 
      * @param event
      *            the event. Not <code>null</code>.
@@ -113,13 +131,20 @@ public class GlobalSelectionListener implements Listener {
     @Override
     public void handleEvent(final Event event) {
         final Widget widget = event.widget;
-        if (widget instanceof ToolItem || widget instanceof MenuItem) {
-            final Object data = widget.getData();
-            if (data instanceof IContributionItem) {
-                processContributionItem((IContributionItem) data, event);
-            }
-        } else {
+        if (!ActionSelectionFilter.isActionItem(widget)) {
             // do not handle these types of actions
+            return;
+        }
+        final Object data = widget.getData();
+        if (!(data instanceof IContributionItem)) {
+            return;
+        }
+        if (latencyTrace.isEnabled()) {
+            final long start = System.nanoTime();
+            processContributionItem((IContributionItem) data, event);
+            latencyTrace.record(System.nanoTime() - start);
+        } else {
+            processContributionItem((IContributionItem) data, event);
         }
     }
 
@@ -128,21 +153,47 @@ public class GlobalSelectionListener implements Listener {
         if (contributionItem instanceof SubContributionItem) {
             final SubContributionItem subCI = (SubContributionItem) contributionItem;
             processContributionItem(subCI.getInnerItem(), event);
-        } else if (contributionItem instanceof ActionContributionItem) {
+            return;
+        }
+        final String itemText = ((Item) event.widget).getText();
+        AbstractActionDesc actionDesc =
+                actionDescCache.get(contributionItem, itemText);
+        if (actionDesc == null) {
+            actionDesc = generateActionDesc(contributionItem);
+            if (actionDesc == null) {
+                return;
+            }
+            actionDescCache.put(contributionItem, itemText, actionDesc,
+                    contributionItem instanceof ActionContributionItem
+                            ? actionActionDescGenerator.getBindingCommand()
+                            : null);
+        }
+        processActionDesc(actionDesc, event);
+    }
+
+    /**
+     * Generates the action description for the contribution item.
+     * 
+     * @param contributionItem
+     *            the contribution item. Assumed not <code>null</code>.
+     * @return the action description. <code>null</code> if the contribution
+     *         item is not an action contribution item or the action can't be
+     *         found.
+     */
+    private AbstractActionDesc generateActionDesc(
+            final IContributionItem contributionItem) {
+        if (contributionItem instanceof ActionContributionItem) {
             final ActionContributionItem item = (ActionContributionItem) contributionItem;
-            final AbstractActionDesc actionDesc = actionActionDescGenerator
-                    .generate(item.getAction());
-            processActionDesc(actionDesc, event);
+            return actionActionDescGenerator.generate(item.getAction());
         } else if (contributionItem instanceof CommandContributionItem) {
-            final AbstractActionDesc actionDesc = commandActionDescGenerator
+            return commandActionDescGenerator
                     .generate((CommandContributionItem) contributionItem);
-            processActionDesc(actionDesc, event);
         } else if (contributionItem instanceof HandledContributionItem) {
-            final AbstractActionDesc actionDesc = handledActionDescGenerator
+            return handledActionDescGenerator
                     .generate((HandledContributionItem) contributionItem);
-            processActionDesc(actionDesc, event);
         } else {
             // no action contribution item on the widget data
+            return null;
         }
     }
 
@@ -161,9 +212,9 @@ public class GlobalSelectionListener implements Listener {
         if (CONFIGURE_ACTION_INVOCATION_DEF.equals(actionDesc.getId())) {
             return;
         }
-        giveActionFeedback(actionDesc, event);
-        logUserAction(actionDesc);
-        commandService.refreshElements(CONFIGURE_ACTION_INVOCATION_DEF, null);
+        final ActionOutcome outcome = giveActionFeedback(actionDesc, event);
+        logUserAction(actionDesc, outcome);
+        configureActionRefresher.lastActionChanged();
     }
 
     /**
@@ -178,84 +229,105 @@ public class GlobalSelectionListener implements Listener {
      * 
      * @param actionDesc
      *            the action data to send. Assumed not <code>null</code>.
+     * @param outcome
+     *            the feedback given on the action. Assumed not
+     *            <code>null</code>.
      */
-    private void logUserAction(final AbstractActionDesc actionDesc) {
-        collector.onAction(actionDesc);
+    private void logUserAction(final AbstractActionDesc actionDesc,
+            final ActionOutcome outcome) {
+        collector.onAction(actionDesc, outcome);
     }
 
     /**
      * Depending on the settings reports to the user that action can be called
      * by the action accelerator, cancels the action.
+     * The action is canceled right away, the popups are shown later.
      * 
      * @param actionDesc
      *            the populated action description. Must have a keyboard
      *            shortcut defined. Not <code>null</code>.
+     * @return the feedback given. Never <code>null</code>.
      */
-    private void giveActionFeedback(final AbstractActionDesc actionDesc,
-            final Event event) {
+    private ActionOutcome giveActionFeedback(
+            final AbstractActionDesc actionDesc, final Event event) {
         notNull(actionDesc);
         isTrue(StringUtils.isNotBlank(actionDesc.getLabel()));
 
-        if (!preferences.isInvocationControlEnabled()) {
-            return;
+        final FeedbackSettings settings = preferences.getFeedbackSettings();
+        if (!settings.isInvocationControlEnabled()) {
+            return ActionOutcome.NONE;
         }
         final String id = actionDesc.getId();
         if (!actionDesc.hasAccelerator()) {
-            Integer currentCount = actionUsageMonitor.get(id);
-            if (currentCount == null) {
-                currentCount = Integer.valueOf(0);
-            }
-            currentCount = currentCount + 1;
-            actionUsageMonitor.put(id, currentCount);
-            if (isConfigureKeyboardShortcutEnabled(currentCount.intValue())
-                    && isConfigurableAction(actionDesc)) {
-                new NagPopUp(actionDesc.getLabel(), actionDesc.getId()).open();
-            }
-            return;
+            return suggestShortcutIfOftenUsed(actionDesc, settings);
         }
 
-        switch (getOnWrongInvocationMode(id)) {
+        final ActionOutcome outcome;
+        switch (getOnWrongInvocationMode(id, settings)) {
         case DO_NOTHING:
             // go on
+            outcome = ActionOutcome.NONE;
             break;
         case REMIND:
-            new NagPopUp(actionDesc.getLabel(), actionDesc.getAccelerator(),
-                    false).open();
+            outcome = feedbackDispatcher.remind(actionDesc.getLabel(), id,
+                    actionDesc.getAccelerator())
+                    ? ActionOutcome.REMINDED
+                    : ActionOutcome.NONE;
             break;
         case ENFORCE:
-            cancelEvent(event);
-            new NagPopUp(actionDesc.getLabel(), actionDesc.getAccelerator()
-                    + "", true).open();
+            feedbackDispatcher.enforce(actionDesc.getLabel(), id,
+                    actionDesc.getAccelerator(), event);
+            outcome = ActionOutcome.CANCELLED;
             break;
         default:
             throw new AssertionError();
         }
+        return outcome;
     }
 
     /**
-     * Checks if for the current action a keyboard shortcut can be configured.
+     * Counts the invocation of an action without a keyboard shortcut and
+     * suggests to configure a shortcut if the action is used often.
      * 
      * @param actionDesc
-     *            ActionDesc for the current action. Not null.
-     * @return true, if the current action has at least one ParameterizedCommand
-     *         (only those are listed in the keys preference page), false else.
+     *            the action description. Assumed not <code>null</code>.
+     * @param settings
+     *            the preferences. Assumed not <code>null</code>.
+     * @return the feedback given. Never <code>null</code>.
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    protected boolean isConfigurableAction(final AbstractActionDesc actionDesc) {
-        final String actionId = actionDesc.getId();
+    private ActionOutcome suggestShortcutIfOftenUsed(
+            final AbstractActionDesc actionDesc,
+            final FeedbackSettings settings) {
+        final int currentCount = countInvocation(actionDesc.getId(), settings);
+        return isConfigureKeyboardShortcutEnabled(settings, currentCount)
+                && feedbackDispatcher.suggestShortcut(actionDesc.getLabel(),
+                        actionDesc.getId())
+                ? ActionOutcome.SHORTCUT_SUGGESTED
+                : ActionOutcome.NONE;
+    }
 
-        final Command command = commandService.getCommand(actionId);
-        if (command != null) {
-            final HashSet allParameterizedCommands = new HashSet();
-            try {
-                allParameterizedCommands.addAll(ParameterizedCommand
-                        .generateCombinations(command));
-            } catch (final NotDefinedException e) {
-                // It is safe to just ignore undefined commands.
-            }
-            return !allParameterizedCommands.isEmpty();
-        }
-        return false;
+    /**
+     * Counts the invocation of an action without a keyboard shortcut.
+     * Both the count of all the invocations and the count within the last
+     * days are always updated, so they are current when the window setting
+     * changes.
+     * 
+     * @param actionId
+     *            the action id. Assumed not <code>null</code>.
+     * @param settings
+     *            the preferences. Assumed not <code>null</code>.
+     * @return the number of the action invocations to compare with the
+     *         threshold.
+     */
+    private int countInvocation(final String actionId,
+            final FeedbackSettings settings) {
+        final Activator activator = Activator.getDefault();
+        final int usageCount = activator.countActionUsage(
+                actionId, settings.getActionUsageHalfLife());
+        final int window = settings.getConfigureKeyboardShortcutWindow();
+        final int windowCount =
+                activator.countWindowedActionUsage(actionId, window);
+        return window == 0 ? usageCount : windowCount;
     }
 
     /**
@@ -268,11 +340,26 @@ public class GlobalSelectionListener implements Listener {
      *         threshold property.
      */
     public boolean isConfigureKeyboardShortcutEnabled(final int currentCount) {
-        final boolean isConfigureKeyboardShortcutEnabled = preferences
-                .isConfigureKeyboardShortcutEnabled();
-        final boolean isCounterAboveThreshold = currentCount > preferences
-                .getConfigureKeyboardShortcutThreshold();
-        return isConfigureKeyboardShortcutEnabled && isCounterAboveThreshold;
+        return isConfigureKeyboardShortcutEnabled(
+                preferences.getFeedbackSettings(), currentCount);
+    }
+
+    /**
+     * Checks, if keyboard shortcut configuration should be activated.
+     * 
+     * @param settings
+     *            the preferences to check. Assumed not <code>null</code>.
+     * @param currentCount
+     *            current counter for an action invocation
+     * @return true, if the configure keyboard shortcut preference is enabled
+     *         and currentCount exceeds the value of the action invocation
+     *         threshold property.
+     */
+    private boolean isConfigureKeyboardShortcutEnabled(
+            final FeedbackSettings settings, final int currentCount) {
+        return settings.isConfigureKeyboardShortcutEnabled()
+                && currentCount > settings
+                        .getConfigureKeyboardShortcutThreshold();
     }
 
     /**
@@ -281,22 +368,14 @@ public class GlobalSelectionListener implements Listener {
      * 
      * @param id
      *            the action id. Assumed not <code>null</code>.
+     * @param settings
+     *            the global preferences. Assumed not <code>null</code>.
      * @return the mode. Not <code>null</code>.
      */
-    private OnWrongInvocationMode getOnWrongInvocationMode(final String id) {
+    private OnWrongInvocationMode getOnWrongInvocationMode(final String id,
+            final FeedbackSettings settings) {
         final OnWrongInvocationMode mode = preferences
                 .getOnWrongInvocationMode(id);
-        return mode == null ? preferences.getOnWrongInvocationMode() : mode;
-    }
-
-    /**
-     * Stops further processing of the specified event.
-     * 
-     * @param event
-     *            the event to disable. Assumed not <code>null</code>.
-     */
-    private void cancelEvent(final Event event) {
-        event.type = SWT.None;
-        event.doit = false;
+        return mode == null ? settings.getOnWrongInvocationMode() : mode;
     }
 }
@@ -18,9 +18,6 @@
  */
 package com.mousefeed.eclipse;
 
-import static org.apache.commons.lang.Validate.notNull;
-
-import java.lang.reflect.Field;
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.e4.ui.model.application.ui.menu.MHandledItem;
@@ -38,6 +35,11 @@ public class HandledContributionItemCommandLocator {
      * object.
      */
     private static final String MODEL_FIELD = "model";
+
+    /**
+     * Name of the field storing model in the superclass of
+     * {@link HandledContributionItem} since Eclipse 4.6.
+     */
     private static final String MODELITEM_FIELD = "modelItem";
 
     /**
@@ -69,44 +71,10 @@ public class HandledContributionItemCommandLocator {
     private ParameterizedCommand getItemParCommand(
             final HandledContributionItem item) {
         // the ParameterizedCommand is stored in the field
-        // HandledContributionItem.model.wbCommand
-        final Field modelField = getModelField(item);
-        try {
-            modelField.setAccessible(true);
-            final MHandledItem mItem = (MHandledItem) modelField.get(item);
-            return mItem.getWbCommand();
-        } catch (final SecurityException e) {
-            throw new RuntimeException(e);
-        } catch (final IllegalArgumentException e) {
-            throw new RuntimeException(e);
-        } catch (final IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    /**
-     * The model field of the handled contribution item class.
-     * 
-     * @return the model field. Never <code>null</code>.
-     */
-    private Field getModelField(final HandledContributionItem item) {
-        try {
-            final Field modelField = item.getClass().getDeclaredField(MODEL_FIELD); //Eclipse 4.2-4.5 get model field in HandledContributionItem
-            notNull(modelField);
-            return modelField;
-        } catch (final SecurityException e) {
-            throw new RuntimeException(e);
-        } catch (final NoSuchFieldException e) {
-            try {
-                final Field modelItemField = item.getClass().getSuperclass() //Eclipse 4.6 get modelItem field in AbstractContributionItem
-                        .getDeclaredField(MODELITEM_FIELD);
-                notNull(modelItemField);
-                return modelItemField;
-            } catch (final SecurityException ee) {
-                throw new RuntimeException(ee);
-            } catch (final NoSuchFieldException ee) {
-                throw new RuntimeException(ee);
-            }
-        }
+        // HandledContributionItem.model.wbCommand (Eclipse 4.2-4.5) or
+        // AbstractContributionItem.modelItem.wbCommand (Eclipse 4.6)
+        final MHandledItem mItem = (MHandledItem) ReflectiveAccessorRegistry
+                .getInstance().readField(item, MODEL_FIELD, MODELITEM_FIELD);
+        return mItem == null ? null : mItem.getWbCommand();
     }
 }
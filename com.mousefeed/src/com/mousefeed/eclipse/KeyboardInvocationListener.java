@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.Collector;
+import org.eclipse.core.commands.Command;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.commands.IExecutionListener;
+import org.eclipse.core.commands.NotHandledException;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.ui.commands.ICommandService;
+import org.eclipse.ui.keys.IBindingService;
+
+/**
+ * Reports the commands invoked with a keyboard shortcut to the collector,
+ * so the statistics count the keyboard invocations next to the mouse ones.
+ * A command is considered invoked with a keyboard if its execution is
+ * triggered by a key press.
+ * Must be used from the display thread.
+ *
+ * @author Sigasi
+ */
+class KeyboardInvocationListener implements IExecutionListener {
+    /**
+     * The workbench command service.
+     */
+    private final ICommandService commandService;
+
+    /**
+     * Provides the command shortcuts.
+     */
+    private final IBindingService bindingService;
+
+    /**
+     * Collects the keyboard invocations.
+     */
+    private final Collector collector;
+
+    /**
+     * Creates new listener.
+     * @param commandService the workbench command service.
+     * Not <code>null</code>.
+     * @param bindingService the workbench binding service.
+     * Not <code>null</code>.
+     * @param collector collects the keyboard invocations.
+     * Not <code>null</code>.
+     */
+    public KeyboardInvocationListener(final ICommandService commandService,
+            final IBindingService bindingService, final Collector collector) {
+        notNull(commandService);
+        notNull(bindingService);
+        notNull(collector);
+        this.commandService = commandService;
+        this.bindingService = bindingService;
+        this.collector = collector;
+    }
+
+    /**
+     * Reports the command to the collector if a key press triggered it.
+     * {@inheritDoc}
+     */
+    public void preExecute(final String commandId,
+            final ExecutionEvent event) {
+        if (commandId == null || !isKeyTriggered(event)) {
+            return;
+        }
+        final ActionDescImpl actionDesc = new ActionDescImpl();
+        actionDesc.setLabel(getCommandName(commandId));
+        actionDesc.setDef(commandId);
+        actionDesc.setAccelerator(
+                bindingService.getBestActiveBindingFormattedFor(commandId));
+        collector.onKeyboardAction(actionDesc);
+    }
+
+    /** {@inheritDoc} */
+    public void notHandled(final String commandId,
+            final NotHandledException exception) {
+    }
+
+    /** {@inheritDoc} */
+    public void postExecuteFailure(final String commandId,
+            final ExecutionException exception) {
+    }
+
+    /** {@inheritDoc} */
+    public void postExecuteSuccess(final String commandId,
+            final Object returnValue) {
+    }
+
+    /**
+     * @param event the command execution event. Can be <code>null</code>.
+     * @return whether the execution was triggered by a key press.
+     */
+    private boolean isKeyTriggered(final ExecutionEvent event) {
+        return event != null && event.getTrigger() instanceof Event
+                && ((Event) event.getTrigger()).type == SWT.KeyDown;
+    }
+
+    /**
+     * The command name to label the invocation with.
+     * @param commandId the command id. Assumed not <code>null</code>.
+     * @return the command name. The command id if the command is not
+     * defined.
+     */
+    private String getCommandName(final String commandId) {
+        final Command command = commandService.getCommand(commandId);
+        try {
+            return command.getName();
+        } catch (final NotDefinedException e) {
+            return commandId;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.collector.AbstractActionDesc;
+import com.mousefeed.client.collector.Collector;
+import org.apache.commons.lang.ObjectUtils;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.commands.ICommandService;
+
+/**
+ * Refreshes the UI elements of a command, which label shows the last
+ * invoked action.
+ * The refreshes requested while the display is busy are merged into one,
+ * which runs when the display processes its events. The elements are not
+ * refreshed when the label of the last action did not change.
+ * Must be used from the display thread.
+ *
+ * @author Sigasi
+ */
+class LastActionElementsRefresher {
+    /**
+     * The display to refresh the elements on.
+     */
+    private final Display display;
+
+    /**
+     * The workbench command service.
+     */
+    private final ICommandService commandService;
+
+    /**
+     * The id of the command to refresh the elements of.
+     */
+    private final String commandId;
+
+    /**
+     * Provides the last action.
+     */
+    private final Collector collector;
+
+    /**
+     * The last action label the elements were refreshed with.
+     * <code>null</code> if the elements were not refreshed yet or there was
+     * no last action.
+     */
+    private String refreshedLabel;
+
+    /**
+     * Whether {@link #refresh} is scheduled.
+     */
+    private boolean refreshScheduled;
+
+    /**
+     * Refreshes the elements if the last action label changed.
+     */
+    private final Runnable refresh = new Runnable() {
+        public void run() {
+            refreshScheduled = false;
+            final String label = getLastActionLabel();
+            if (!display.isDisposed()
+                    && !ObjectUtils.equals(label, refreshedLabel)) {
+                refreshedLabel = label;
+                commandService.refreshElements(commandId, null);
+            }
+        }
+    };
+
+    /**
+     * Creates new refresher.
+     * @param display the display to refresh the elements on.
+     * Not <code>null</code>.
+     * @param commandService the workbench command service.
+     * Not <code>null</code>.
+     * @param commandId the id of the command to refresh the elements of.
+     * Not <code>null</code>.
+     * @param collector provides the last action. Not <code>null</code>.
+     */
+    public LastActionElementsRefresher(final Display display,
+            final ICommandService commandService, final String commandId,
+            final Collector collector) {
+        notNull(display);
+        notNull(commandService);
+        notNull(commandId);
+        notNull(collector);
+        this.display = display;
+        this.commandService = commandService;
+        this.commandId = commandId;
+        this.collector = collector;
+    }
+
+    /**
+     * Requests refreshing the elements after the last action changed.
+     * Does nothing if a refresh is already scheduled or the elements show
+     * the label of the new last action already.
+     */
+    public void lastActionChanged() {
+        if (refreshScheduled || display.isDisposed()
+                || ObjectUtils.equals(getLastActionLabel(), refreshedLabel)) {
+            return;
+        }
+        refreshScheduled = true;
+        display.asyncExec(refresh);
+    }
+
+    /**
+     * The label of the last action.
+     * @return the label. <code>null</code> if there is no last action.
+     */
+    private String getLastActionLabel() {
+        final AbstractActionDesc lastAction = collector.getLastAction();
+        return lastAction == null ? null : lastAction.getLabel();
+    }
+}
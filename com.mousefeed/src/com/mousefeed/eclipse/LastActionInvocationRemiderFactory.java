@@ -19,6 +19,9 @@
 package com.mousefeed.eclipse;
 
 import com.mousefeed.client.Messages;
+import org.eclipse.jface.bindings.BindingManager;
+import org.eclipse.jface.bindings.BindingManagerEvent;
+import org.eclipse.jface.bindings.IBindingManagerListener;
 import org.eclipse.jface.bindings.TriggerSequence;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.PlatformUI;
@@ -26,6 +29,7 @@ import org.eclipse.ui.keys.IBindingService;
 
 /**
  * Generates text for the reminder to configure the last action invocation.
+ * The text is cached until the active bindings or the active scheme change.
  *
  * @author Andriy Palamarchuk
  */
@@ -42,6 +46,30 @@ public class LastActionInvocationRemiderFactory {
     private static final Messages MESSAGES = new Messages(
             LastActionInvocationRemiderFactory.class);
 
+    /**
+     * The cached reminder text. <code>null</code> if it must be generated.
+     */
+    private String text;
+
+    /**
+     * Whether {@link #bindingManagerListener} is registered, so
+     * {@link #text} can be cached.
+     */
+    private boolean listening;
+
+    /**
+     * Discards the cached text when the active bindings or scheme change.
+     */
+    private final IBindingManagerListener bindingManagerListener =
+            new IBindingManagerListener() {
+        public void bindingManagerChanged(final BindingManagerEvent event) {
+            if (event.isActiveBindingsChanged()
+                    || event.isActiveSchemeChanged()) {
+                text = null;
+            }
+        }
+    };
+
     /**
      * Default constructor does nothing.
      */
@@ -50,9 +78,40 @@ public class LastActionInvocationRemiderFactory {
     
     /**
      * The reminder text.
+     * Must be called from the UI thread.
      * @return the reminder text. Not <code>null</code>.
      */
     public String getText() {
+        if (text != null) {
+            return text;
+        }
+        final String newText = generateText();
+        if (listening || startListening()) {
+            text = newText;
+        }
+        return newText;
+    }
+
+    /**
+     * Starts tracking the binding changes.
+     * @return <code>false</code> if the binding changes can't be tracked,
+     * so the text must not be cached.
+     */
+    private boolean startListening() {
+        final BindingManager bindingManager =
+                BindingManagerLocator.getBindingManager();
+        if (bindingManager != null) {
+            bindingManager.addBindingManagerListener(bindingManagerListener);
+            listening = true;
+        }
+        return listening;
+    }
+
+    /**
+     * Generates the reminder text.
+     * @return the reminder text. Not <code>null</code>.
+     */
+    private String generateText() {
         final TriggerSequence[] bindings =
             getBindingService().getActiveBindingsFor(
                     CONFIGURE_ACTION_INVOCATION_ACTION_ID);
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import org.eclipse.osgi.service.debug.DebugOptions;
+import org.eclipse.osgi.service.debug.DebugTrace;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Reports how long the handling of an event takes.
+ * Is enabled by the tracing option {@value #LATENCY_OPTION}.
+ * Writes the count, the average and the maximal time of the handled events
+ * to the platform debug trace each {@value #REPORT_INTERVAL} events.
+ *
+ * @author Sigasi
+ */
+class LatencyTrace {
+    /**
+     * The path of the tracing option enabling the latency reports,
+     * relative to the plugin id.
+     */
+    static final String LATENCY_OPTION_PATH = "/debug/latency";
+
+    /**
+     * The tracing option enabling the latency reports.
+     */
+    static final String LATENCY_OPTION =
+            Activator.PLUGIN_ID + LATENCY_OPTION_PATH;
+
+    /**
+     * The number of events to report the statistics after.
+     */
+    private static final int REPORT_INTERVAL = 100;
+
+    /**
+     * The number of nanoseconds in a microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    /**
+     * The name of the measured handling.
+     */
+    private final String name;
+
+    /**
+     * Writes the reports. <code>null</code> if the trace is disabled.
+     */
+    private final DebugTrace debugTrace;
+
+    /**
+     * The number of the measured events since the last report.
+     */
+    private int count;
+
+    /**
+     * The total time of the measured events since the last report,
+     * in nanoseconds.
+     */
+    private long total;
+
+    /**
+     * The maximal time of the measured events since the last report,
+     * in nanoseconds.
+     */
+    private long max;
+
+    /**
+     * Creates new trace.
+     * @param name the name of the measured handling. Not <code>null</code>.
+     */
+    public LatencyTrace(final String name) {
+        notNull(name);
+        this.name = name;
+        this.debugTrace = createDebugTrace();
+    }
+
+    /**
+     * @return whether the trace is enabled.
+     * If not, the caller should not measure the time.
+     */
+    public boolean isEnabled() {
+        return debugTrace != null;
+    }
+
+    /**
+     * Records the handling time of an event.
+     * @param nanos the time in nanoseconds.
+     */
+    public void record(final long nanos) {
+        if (debugTrace == null) {
+            return;
+        }
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+        if (count == REPORT_INTERVAL) {
+            debugTrace.trace(LATENCY_OPTION_PATH, name + ": " + count
+                    + " events, average " + total / count / NANOS_PER_MICRO
+                    + " us, max " + max / NANOS_PER_MICRO + " us");
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+    }
+
+    /**
+     * Creates the debug trace of the plugin if the tracing option is enabled.
+     * @return the debug trace. <code>null</code> if the tracing option is
+     * not enabled or the debug options service is not available.
+     */
+    private static DebugTrace createDebugTrace() {
+        final Activator activator = Activator.getDefault();
+        if (activator == null || !activator.isDebugging()) {
+            return null;
+        }
+        final BundleContext context = activator.getBundle().getBundleContext();
+        final ServiceReference<DebugOptions> reference =
+                context.getServiceReference(DebugOptions.class);
+        final DebugOptions options =
+                reference == null ? null : context.getService(reference);
+        return options != null && options.getBooleanOption(LATENCY_OPTION, false)
+                ? options.newDebugTrace(Activator.PLUGIN_ID)
+                : null;
+    }
+}
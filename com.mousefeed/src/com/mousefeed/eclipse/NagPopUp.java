@@ -18,31 +18,35 @@
  */
 package com.mousefeed.eclipse;
 
-import static com.mousefeed.eclipse.Layout.WHOLE_SIZE;
 import static com.mousefeed.eclipse.Layout.WINDOW_MARGIN;
 import static org.apache.commons.lang.Validate.isTrue;
 import static org.apache.commons.lang.Validate.notNull;
 import static org.apache.commons.lang.time.DateUtils.MILLIS_PER_SECOND;
 
 import com.mousefeed.client.Messages;
-import java.util.HashSet;
-import org.apache.commons.lang.StringUtils;
+import com.mousefeed.eclipse.NagScheduler.Nag;
+import com.mousefeed.eclipse.preferences.PreferenceAccessor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.ParameterizedCommand;
-import org.eclipse.core.commands.common.NotDefinedException;
 import org.eclipse.jface.dialogs.PopupDialog;
 import org.eclipse.jface.preference.PreferenceDialog;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.FocusAdapter;
 import org.eclipse.swt.events.FocusEvent;
+import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.Point;
-import org.eclipse.swt.layout.FormAttachment;
-import org.eclipse.swt.layout.FormData;
-import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
@@ -58,9 +62,12 @@ import org.eclipse.ui.dialogs.PreferencesUtil;
 //COUPLING:OFF - just uses a lot of other classes. It's Ok.
 /**
  * Pop-up dialog, which notifies a user about wrong mouse/accelerator usage. 
+ * The pop-up is created once and reused for all the notifications.
+ * Closing it only hides the shell.
  *
  * @author Andriy Palamarchuk
  * @author Robert Wloch
+ * @see NagPopUpManager
  */
 public class NagPopUp extends PopupDialog {
     /**
@@ -97,6 +104,11 @@ public class NagPopUp extends PopupDialog {
         }
     }
 
+    /**
+     * Time after which the pop up will automatically close itself.
+     */
+    static final int CLOSE_TIMEOUT = 4 * (int) MILLIS_PER_SECOND;
+
     /**
      * ID of keys preference page.
      */
@@ -107,16 +119,6 @@ public class NagPopUp extends PopupDialog {
      */
     private static final int DISTANCE_TO_CURSOR = 50;
 
-    /**
-     * Number of times to increase font size in.
-     */
-    private static final int FONT_INCREASE_MULT = 2;
-    
-    /**
-     * Time after which the pop up will automatically close itself.
-     */
-    private static final int CLOSE_TIMEOUT = 4 * (int) MILLIS_PER_SECOND;
-    
     /**
      * Timeout, after which listener closes the dialog on any user action.
      * Is necessary to skip events caused by the current user action.
@@ -135,40 +137,69 @@ public class NagPopUp extends PopupDialog {
             new LastActionInvocationRemiderFactory();
 
     /**
-     * @see NagPopUp#NagPopUp(String, String, boolean)
+     * The notifications the popup currently shows.
+     * @see #showNags(List)
      */
-    private final String actionName;
+    private List<Nag> nags = Collections.emptyList();
 
     /**
-     * @see NagPopUp#NagPopUp(String, String)
-     */
-    private final String actionId;
-    
-    /**
-     * @see NagPopUp#NagPopUp(String, String, boolean)
+     * The id of the action to configure a shortcut for.
+     * <code>null</code> if the popup reminds about accelerators.
+     * @see #showShortcutSuggestion(String, String)
      */
-    private final String accelerator;
+    private String actionId;
     
     /**
-     * Indicates whether MouseFeed canceled the action the popup notifies about.
+     * Indicates whether MouseFeed canceled an action the popup notifies about.
      */
-    private final boolean actionCancelled;
+    private boolean actionCancelled;
 
     /**
      * Is <code>true</code> when the dialog is already open, but not closed yet.
      */
     private boolean open;
+
+    /**
+     * Increases each time the popup is shown. Lets the timers scheduled for
+     * an earlier notification to skip the current one.
+     */
+    private int showCount;
     
     /**
      * The notification text.
      */
     private StyledText actionDescriptionText;
 
+    /**
+     * The default foreground color of {@link #actionDescriptionText}.
+     */
+    private Color actionDescriptionForeground;
+
     /**
      * The notification link.
      */
-    @SuppressWarnings("unused")
     private Link actionLink;
+
+    /**
+     * The regular font data, which {@link #bigFont} is scaled from.
+     */
+    private FontData[] baseFontData;
+
+    /**
+     * Shares {@link #bigFont}.
+     */
+    private ScaledFontRegistry fontRegistry;
+
+    /**
+     * The font of the notification controls.
+     * Is shared through {@link #fontRegistry}.
+     */
+    private Font bigFont;
+
+    /**
+     * The scale {@link #bigFont} was created with, in percent.
+     */
+    private int bigFontScale;
     
     /**
      * Closes the dialog on any outside action, such as click, key press, etc.
@@ -179,80 +210,96 @@ public class NagPopUp extends PopupDialog {
         }
     };
 
-
     /**
-     * Creates a pop-up with notification for the specified accelerator
-     * and action.
-     *
-     * @param actionName the action label. Not blank.
-     * @param accelerator the string describing the accelerator. Not blank.
-     * @param actionCancelled indicates whether MouseFeed canceled the action
-     * the popup notifies about. 
+     * Creates a pop-up. Call {@link #create()} to build the hidden shell in
+     * advance, before the pop-up is shown the first time.
      */
-    public NagPopUp(
-            final String actionName, final String accelerator, final boolean actionCancelled) {
+    public NagPopUp() {
         super((Shell) null, PopupDialog.HOVER_SHELLSTYLE,
                 false, false, false, false, false,
-                getTitleText(actionCancelled),
+                getTitleText(false),
                 getActionConfigurationReminder());
-        isTrue(StringUtils.isNotBlank(actionName));
-        isTrue(StringUtils.isNotBlank(accelerator));
+    }
 
-        this.actionName = actionName;
-        this.accelerator = accelerator;
-        this.actionCancelled = actionCancelled;
-        this.actionId = null;
+    /**
+     * Shows the notification for the specified accelerator and action.
+     *
+     * @param name the action label. Not blank.
+     * @param actionAccelerator the string describing the accelerator.
+     * Not blank.
+     * @param cancelled indicates whether MouseFeed canceled the action
+     * the popup notifies about. 
+     */
+    public void showReminder(final String name,
+            final String actionAccelerator, final boolean cancelled) {
+        showNags(Collections.singletonList(
+                Nag.reminder(name, null, actionAccelerator, cancelled)));
     }
 
     /**
-     * Creates a pop-up with suggestion to open the Keys preference page to
-     * configure a keyboard shortcut for an action.
+     * Shows the suggestion to open the Keys preference page to configure a
+     * keyboard shortcut for an action.
      *
-     * @param actionName the action label. Not blank.
-     * @param actionId the contribution id. Not blank.
+     * @param name the action label. Not blank.
+     * @param id the contribution id. Not blank.
      */
-    public NagPopUp(
-            final String actionName, final String actionId) {
-        super((Shell) null, PopupDialog.HOVER_SHELLSTYLE,
-                false, false, false, false, false,
-                getTitleText(false),
-                getActionConfigurationReminder());
-        isTrue(StringUtils.isNotBlank(actionName));
-        isTrue(StringUtils.isNotBlank(actionId));
+    public void showShortcutSuggestion(final String name, final String id) {
+        showNags(Collections.singletonList(Nag.shortcutSuggestion(name, id)));
+    }
 
-        this.actionName = actionName;
-        this.actionId = actionId;
-        this.actionCancelled = false;
-        this.accelerator = null;
+    /**
+     * Shows the notifications in a single pop-up.
+     * The reminders are shown one per line. A shortcut suggestion is shown
+     * only if it is the only notification.
+     *
+     * @param newNags the notifications. Not empty.
+     */
+    void showNags(final List<Nag> newNags) {
+        notNull(newNags);
+        isTrue(!newNags.isEmpty());
+
+        nags = new ArrayList<Nag>(newNags);
+        final Nag first = nags.get(0);
+        actionId = first.isShortcutSuggestion() ? first.getActionId() : null;
+        actionCancelled = false;
+        for (Nag nag : nags) {
+            actionCancelled |= nag.isCancelled();
+        }
+        show();
     }
 
     /**
-     * Creates a control for showing the info.
+     * Creates the controls for both kinds of the notifications. Only one of
+     * them is visible at a time.
      * {@inheritDoc}
      */
     @Override
     protected Control createDialogArea(final Composite parent) {
         final Composite composite = new Composite(parent, SWT.NO_FOCUS);
-        composite.setLayout(new FormLayout());
+        final GridLayout layout = new GridLayout();
+        layout.marginWidth = WINDOW_MARGIN;
+        layout.marginHeight = WINDOW_MARGIN;
+        composite.setLayout(layout);
         
-        if (isLinkPopup()) {
-            final String linkText = MESSAGES.get("message.configureShortcut", actionName);
-            actionLink = createLink(composite, linkText);
-        } else {
-            actionDescriptionText = createActionDescriptionText(composite);
-        }
-
-        composite.pack(true);
-
+        actionDescriptionText = createActionDescriptionText(composite);
+        actionLink = createLink(composite, "");
+
+        baseFontData = composite.getFont().getFontData();
+        updateBigFont();
+        composite.addDisposeListener(new DisposeListener() {
+            public void widgetDisposed(final DisposeEvent e) {
+                releaseBigFont();
+            }
+        });
         return composite;
     }
 
     /**
-     * Reusable check for actionId not null and accelerator being null.
-     * @return true if actionId != null && accelerator == null
+     * Reusable check whether the popup suggests to configure a shortcut.
+     * @return true if actionId != null
      */
     protected boolean isLinkPopup() {
-        return actionId != null && accelerator == null;
+        return actionId != null;
     }
     
     /**
@@ -263,17 +310,7 @@ public class NagPopUp extends PopupDialog {
     private StyledText createActionDescriptionText(final Composite parent) {
         notNull(parent);
         final StyledText text = new StyledText(parent, SWT.READ_ONLY);
-        configureFormData(text);
-        text.setText(accelerator + " (" + actionName + ")");
-        if (actionCancelled) {
-            final StyleRange style = new StyleRange();
-            style.start = 0;
-            style.length = text.getText().length();
-            style.strikeout = true;
-            text.setStyleRange(style);
-        }
-
-        configureBigFont(text);
+        configureLayoutData(text);
 
         // since SWT.NO_FOCUS is only a hint...
         text.addFocusListener(new FocusAdapter() {
@@ -298,8 +335,7 @@ public class NagPopUp extends PopupDialog {
         link.setFont(parent.getFont());
         link.setText("<A>" + text + "</A>");  //$NON-NLS-1$//$NON-NLS-2$
         
-        configureFormData(link);
-        configureBigFont(link);
+        configureLayoutData(link);
 
         link.addFocusListener(new FocusAdapter() {
             @Override
@@ -310,34 +346,82 @@ public class NagPopUp extends PopupDialog {
 
         return link;
     }
+
+    /**
+     * Updates the controls for the current notification.
+     */
+    private void updateControls() {
+        final boolean linkPopup = isLinkPopup();
+        updateBigFont();
+        setTitleText(getTitleText(actionCancelled));
+        setInfoText(getActionConfigurationReminder());
+        if (linkPopup) {
+            actionLink.setText("<A>"  //$NON-NLS-1$
+                    + MESSAGES.get("message.configureShortcut",
+                            nags.get(0).getActionName())
+                    + "</A>");  //$NON-NLS-1$
+        } else {
+            updateActionDescriptionText();
+            actionDescriptionText.setForeground(actionCancelled
+                    ? getDisplay().getSystemColor(SWT.COLOR_RED)
+                    : actionDescriptionForeground);
+        }
+        setVisible(actionLink, linkPopup);
+        setVisible(actionDescriptionText, !linkPopup);
+        actionLink.getParent().layout(true);
+    }
+
+    /**
+     * Shows the reminders in {@link #actionDescriptionText}, one per line.
+     * Strikes out the canceled ones.
+     */
+    private void updateActionDescriptionText() {
+        final StringBuilder text = new StringBuilder();
+        final StyleRange[] styles = new StyleRange[nags.size()];
+        for (int i = 0; i < nags.size(); i++) {
+            final Nag nag = nags.get(i);
+            if (i > 0) {
+                text.append(actionDescriptionText.getLineDelimiter());
+            }
+            final StyleRange style = new StyleRange();
+            style.start = text.length();
+            text.append(nag.getAccelerator())
+                    .append(" (").append(nag.getActionName()).append(')');
+            style.length = text.length() - style.start;
+            style.strikeout = nag.isCancelled();
+            styles[i] = style;
+        }
+        actionDescriptionText.setText(text.toString());
+        actionDescriptionText.setStyleRanges(styles);
+    }
+
+    /**
+     * Shows the control and includes it into the layout or hides it and
+     * excludes it.
+     * @param c the control. Assumed not <code>null</code>.
+     * @param visible whether to show the control.
+     */
+    private void setVisible(final Control c, final boolean visible) {
+        ((GridData) c.getLayoutData()).exclude = !visible;
+        c.setVisible(visible);
+    }
     
     /**
      * Handle link activation.
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     final void doLinkActivated() {
-        Object data = null;
-        
         final IWorkbench workbench = Activator.getDefault().getWorkbench();
         final ICommandService commandService = (ICommandService) workbench.getService(ICommandService.class);
         
         final Command command = commandService.getCommand(actionId);
         if (command != null) {
-            final HashSet allParameterizedCommands = new HashSet();
-            try {
-                allParameterizedCommands.addAll(ParameterizedCommand
-                        .generateCombinations(command));
-            } catch (final NotDefinedException e) {
-                // It is safe to just ignore undefined commands.
-            }
-            if (!allParameterizedCommands.isEmpty()) {
-                data = allParameterizedCommands.iterator().next();
-                
+            final ParameterizedCommand data = ConfigurableCommandCache
+                    .getInstance().getParameterizedCommand(command);
+            if (data != null) {
                 // only commands can be bound to keyboard shortcuts
                 openWorkspacePreferences(data);
             }
         }
-
     }
 
     /**
@@ -352,7 +436,7 @@ public class NagPopUp extends PopupDialog {
     }
     
     /**
-     * Set the text color here, not in {@link #createDialogArea(Composite)},
+     * Remembers the text color here, not in {@link #createDialogArea(Composite)},
      * because it is redefined after that method is called.
      * @param parent the control parent. Not <code>null</code>.
      * @return the super value.
@@ -360,38 +444,81 @@ public class NagPopUp extends PopupDialog {
     @Override
     protected Control createContents(final Composite parent) {
         final Control control = super.createContents(parent);
-        if (actionCancelled) {
-            actionDescriptionText.setForeground(
-                    getDisplay().getSystemColor(SWT.COLOR_RED));
-        }
+        actionDescriptionForeground = actionDescriptionText.getForeground();
         return control;
     }
     
     /**
      * Configures sizes and margins for this. 
-     * @param c the control to set the form data for. Not <code>null</code>.
-     */
-    private void configureFormData(final Control c) {
-        final FormData formData = new FormData();
-        formData.left = new FormAttachment(WINDOW_MARGIN);
-        formData.right = new FormAttachment(WHOLE_SIZE, -WINDOW_MARGIN);
-        formData.top = new FormAttachment(WINDOW_MARGIN);
-        formData.bottom = new FormAttachment(WHOLE_SIZE, -WINDOW_MARGIN);
-        c.setLayoutData(formData);
+     * @param c the control to set the layout data for. Not <code>null</code>.
+     */
+    private void configureLayoutData(final Control c) {
+        c.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, true));
+    }
+
+    /**
+     * Applies the big font of the size configured in the preferences to the
+     * notification controls. Does nothing if the size did not change.
+     */
+    private void updateBigFont() {
+        final int scale = PreferenceAccessor.getInstance().getPopupFontScale();
+        if (bigFont != null && scale == bigFontScale) {
+            return;
+        }
+        if (fontRegistry == null) {
+            fontRegistry = ScaledFontRegistry.getInstance(getDisplay());
+        }
+        final Font oldFont = bigFont;
+        bigFont = fontRegistry.acquire(baseFontData, scale);
+        bigFontScale = scale;
+        actionDescriptionText.setFont(bigFont);
+        actionLink.setFont(bigFont);
+        if (oldFont != null) {
+            fontRegistry.release(oldFont);
+        }
+    }
+
+    /**
+     * Returns {@link #bigFont} to the registry.
+     */
+    private void releaseBigFont() {
+        if (bigFont != null) {
+            fontRegistry.release(bigFont);
+            bigFont = null;
+        }
     }
 
     /**
-     * Configures big font for this. 
-     * @param c the control to increase font for. Not <code>null</code>.
+     * Creates the hidden shell for the active shell in advance, unless it is
+     * already created.
+     * @see NagPopUpManager#prewarm(Display)
      */
-    private void configureBigFont(final Control c) {
-        final FontData[] fontData = c.getFont().getFontData();
-        for (int i = 0; i < fontData.length; i++) {
-            fontData[i].setHeight(fontData[i].getHeight() * FONT_INCREASE_MULT);
+    void prewarm() {
+        setParentShell(getDisplay().getActiveShell());
+        final Shell shell = getShell();
+        if (shell == null || shell.isDisposed()) {
+            create();
+        }
+    }
+
+    /**
+     * Shows the current notification over the active shell. Reuses the
+     * shell if it is already created for the active shell.
+     */
+    private void show() {
+        final Shell activeShell = getDisplay().getActiveShell();
+        setParentShell(activeShell);
+        final Shell shell = getShell();
+        if (shell != null && !shell.isDisposed()
+                && shell != activeShell && shell.getParent() != activeShell) {
+            // created for another window, e.g. a closed dialog
+            super.close();
         }
-        final Font newFont = new Font(getDisplay(), fontData);
-        c.setFont(newFont);
-        c.addDisposeListener(new DestroyFontDisposeListener(newFont));
+        if (getShell() == null || getShell().isDisposed()) {
+            create();
+        }
+        updateControls();
+        open();
     }
 
     /**
@@ -401,59 +528,72 @@ public class NagPopUp extends PopupDialog {
     @Override
     public int open() {
         open = true;
-        setParentShell(getDisplay().getActiveShell());
+        showCount++;
+        final int shown = showCount;
         if (actionCancelled) {
             getDisplay().beep();
         }
         getDisplay().timerExec(CLOSE_TIMEOUT,
                 new Runnable() {
                     public void run() {
-                        NagPopUp.this.close();
+                        if (showCount == shown) {
+                            NagPopUp.this.close();
+                        }
                     }
                 });
         addCloseOnActionListeners();
         return super.open();
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Hides the pop-up, so it can be shown again.
+     * Does nothing if the pop-up is already closed, e.g. when the close
+     * timer fires after the user closed it.
+     * {@inheritDoc}
+     */
     @Override
     public boolean close() {
+        if (!open) {
+            return true;
+        }
         open = false;
         removeCloseOnActionListeners();
-        return super.close();
+        final Shell shell = getShell();
+        if (shell != null && !shell.isDisposed()) {
+            shell.setVisible(false);
+        }
+        return true;
     }
 
     /**
-     * Adds listeners to close the dialog on any user action.
+     * Disposes the pop-up. It can't be shown after that.
+     * Is called when the display is disposed, so the close-on-action
+     * listeners are discarded with it.
+     */
+    public void dispose() {
+        open = false;
+        super.close();
+    }
+
+    /**
+     * Starts closing the dialog on any user action.
      * @see #closeOnActionListener
      * @see #CLOSE_LISTENER_TIMEOUT
      */
     private void addCloseOnActionListeners() {
-        getDisplay().timerExec(CLOSE_LISTENER_TIMEOUT,
-                new Runnable() {
-                    public void run() {
-                        if (!open) {
-                            return;
-                        }
-                        final Listener l = closeOnActionListener;
-                        getDisplay().addFilter(SWT.MouseDown, l);
-                        getDisplay().addFilter(SWT.Selection, l);
-                        getDisplay().addFilter(SWT.KeyDown, l);
-                    }
-                });
+        CloseOnActionDispatcher.getInstance(getDisplay())
+                .register(closeOnActionListener, CLOSE_LISTENER_TIMEOUT);
     }
 
     /**
-     * Removes listeners to close the dialog on any user action.
+     * Stops closing the dialog on user actions.
      * @see #closeOnActionListener
      */
     private void removeCloseOnActionListeners() {
         // use workbench display, because can be called more than once,
         // including when this shell and the parent shell are already discarded
-        final Display d = PlatformUI.getWorkbench().getDisplay();
-        d.removeFilter(SWT.MouseDown, closeOnActionListener);
-        d.removeFilter(SWT.Selection, closeOnActionListener);
-        d.removeFilter(SWT.KeyDown, closeOnActionListener);
+        CloseOnActionDispatcher.getInstance(getDisplay())
+                .unregister(closeOnActionListener);
     }
 
     /**
@@ -463,6 +603,20 @@ public class NagPopUp extends PopupDialog {
         return PlatformUI.getWorkbench().getDisplay();
     }
 
+    /**
+     * Sizes the reused shell for the current notification and places it
+     * close to the mouse pointer.
+     * {@inheritDoc}
+     */
+    @Override
+    protected void adjustBounds() {
+        final Shell shell = getShell();
+        final Point size = shell.computeSize(SWT.DEFAULT, SWT.DEFAULT, true);
+        final Point p = getInitialLocation(size);
+        shell.setBounds(getConstrainedShellBounds(
+                new Rectangle(p.x, p.y, size.x, size.y)));
+    }
+
     /** {@inheritDoc} */
     @Override
     protected Point getInitialLocation(final Point initialSize) {
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Provides the {@link NagPopUp} of a display.
+ * The pop-up is created once per display, is reused for all the
+ * notifications and is disposed with the display.
+ * Must be called from the display thread.
+ *
+ * @author Sigasi
+ */
+final class NagPopUpManager {
+    /**
+     * The key of the display data storing the pop-up.
+     */
+    private static final String KEY = NagPopUp.class.getName();
+
+    /**
+     * Not instantiated.
+     */
+    private NagPopUpManager() {
+    }
+
+    /**
+     * The pop-up of the display. Creates the pop-up if it does not exist yet.
+     * @param display the display. Not <code>null</code>, not disposed.
+     * @return the pop-up. Never <code>null</code>.
+     */
+    public static NagPopUp getPopUp(final Display display) {
+        notNull(display);
+        final Object data = display.getData(KEY);
+        if (data instanceof NagPopUp) {
+            return (NagPopUp) data;
+        }
+        final NagPopUp popUp = new NagPopUp();
+        display.setData(KEY, popUp);
+        display.disposeExec(new Runnable() {
+            public void run() {
+                popUp.dispose();
+            }
+        });
+        return popUp;
+    }
+
+    /**
+     * Creates the hidden pop-up shell for the active shell when the display
+     * processes its events, so showing the first notification does not have
+     * to create it.
+     * Can be called from any thread.
+     * @param display the display. Not <code>null</code>.
+     */
+    public static void prewarm(final Display display) {
+        notNull(display);
+        if (display.isDisposed()) {
+            return;
+        }
+        display.asyncExec(new Runnable() {
+            public void run() {
+                if (!display.isDisposed()) {
+                    getPopUp(display).prewarm();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Decides which action notifications are shown.
+ * Does not show a notification, which was shown for the same action
+ * recently, and merges the notifications coming together, so a burst of
+ * clicks shows a single pop-up.
+ * A notification about a canceled action is always shown, so the user
+ * knows why the click had no effect.
+ * Is not thread-safe. Is used from the display thread.
+ *
+ * @author Sigasi
+ */
+class NagScheduler {
+    /**
+     * An action notification.
+     */
+    static final class Nag {
+        /**
+         * @see #getActionName()
+         */
+        private final String actionName;
+
+        /**
+         * @see #getAccelerator()
+         */
+        private final String accelerator;
+
+        /**
+         * @see #isCancelled()
+         */
+        private final boolean cancelled;
+
+        /**
+         * @see #getActionId()
+         */
+        private final String actionId;
+
+        /**
+         * Creates new notification.
+         * @param actionName the action label. Not blank.
+         * @param accelerator the action keyboard shortcut.
+         * @param cancelled whether the action was canceled.
+         * @param actionId the action id.
+         */
+        private Nag(final String actionName, final String accelerator,
+                final boolean cancelled, final String actionId) {
+            isTrue(StringUtils.isNotBlank(actionName));
+            this.actionName = actionName;
+            this.accelerator = accelerator;
+            this.cancelled = cancelled;
+            this.actionId = actionId;
+        }
+
+        /**
+         * Creates a reminder of the action keyboard shortcut.
+         * @param actionName the action label. Not blank.
+         * @param actionId the action id. <code>null</code> if the action
+         * has no id.
+         * @param accelerator the action keyboard shortcut. Not blank.
+         * @param cancelled whether the action was canceled.
+         * @return the notification. Never <code>null</code>.
+         */
+        public static Nag reminder(final String actionName,
+                final String actionId, final String accelerator,
+                final boolean cancelled) {
+            isTrue(StringUtils.isNotBlank(accelerator));
+            return new Nag(actionName, accelerator, cancelled, actionId);
+        }
+
+        /**
+         * Creates a suggestion to configure a keyboard shortcut for the
+         * action.
+         * @param actionName the action label. Not blank.
+         * @param actionId the action id. Not blank.
+         * @return the notification. Never <code>null</code>.
+         */
+        public static Nag shortcutSuggestion(final String actionName,
+                final String actionId) {
+            isTrue(StringUtils.isNotBlank(actionId));
+            return new Nag(actionName, null, false, actionId);
+        }
+
+        /**
+         * @return the action label. Never blank.
+         */
+        public String getActionName() {
+            return actionName;
+        }
+
+        /**
+         * @return the action keyboard shortcut. <code>null</code> for
+         * a shortcut suggestion.
+         */
+        public String getAccelerator() {
+            return accelerator;
+        }
+
+        /**
+         * @return whether the action was canceled.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return the action id. Not blank for a shortcut suggestion.
+         * Can be <code>null</code> for a reminder.
+         */
+        public String getActionId() {
+            return actionId;
+        }
+
+        /**
+         * @return <code>true</code> if this is a suggestion to configure
+         * a keyboard shortcut.
+         */
+        public boolean isShortcutSuggestion() {
+            return accelerator == null;
+        }
+
+        /**
+         * The notifications with the same key are considered identical.
+         * These are the notifications of the same kind about the same action.
+         * The action label is used for the actions without an id.
+         * @return the key. Never <code>null</code>.
+         */
+        String getKey() {
+            final char kind;
+            if (isShortcutSuggestion()) {
+                kind = 'S';
+            } else {
+                kind = cancelled ? 'E' : 'R';
+            }
+            return kind + (actionId == null ? '\t' + actionName : actionId);
+        }
+    }
+
+    /**
+     * When the notification was shown the last time by its key.
+     */
+    private final Map<String, Long> lastShown = new HashMap<String, Long>();
+
+    /**
+     * The notifications to show, in the order of arrival, by key.
+     */
+    private final Map<String, Nag> pending = new LinkedHashMap<String, Nag>();
+
+    /**
+     * Adds the notification to the ones to show, unless the same
+     * notification was shown recently. A notification about a canceled
+     * action is always added.
+     * Replaces the same pending notification.
+     * @param nag the notification. Not <code>null</code>.
+     * @param now the current time in milliseconds.
+     * @param repeatDelay for how long a notification is not shown again,
+     * in milliseconds. Not negative.
+     * @return <code>true</code> if the notification was added.
+     */
+    public boolean offer(final Nag nag, final long now,
+            final long repeatDelay) {
+        notNull(nag);
+        isTrue(repeatDelay >= 0);
+        final String key = nag.getKey();
+        final Long shown = lastShown.get(key);
+        if (!nag.isCancelled() && shown != null
+                && now - shown.longValue() < repeatDelay) {
+            return false;
+        }
+        // keeps the arrival order of the latest notification
+        pending.remove(key);
+        pending.put(key, nag);
+        return true;
+    }
+
+    /**
+     * @return whether there are notifications to show.
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Takes the notifications to show in a single pop-up.
+     * These are the latest reminders, or the latest shortcut suggestion if
+     * there are no reminders. If the reminders don't fit into the pop-up,
+     * the oldest reminders about not cancelled actions are dropped and
+     * considered shown. The reminders about cancelled actions are never
+     * dropped: the oldest ones, which don't fit, stay pending for the next
+     * pop-up. The shortcut suggestions stay pending while there are reminders
+     * to show.
+     * @param now the current time in milliseconds.
+     * @param repeatDelay for how long a notification is not shown again,
+     * in milliseconds. Not negative.
+     * @param max how many reminders to take at most. Positive.
+     * @return the notifications to show. Empty if there is nothing to show.
+     * Never <code>null</code>.
+     */
+    public List<Nag> drain(final long now, final long repeatDelay,
+            final int max) {
+        isTrue(repeatDelay >= 0);
+        isTrue(max > 0);
+        forgetShownBefore(now - repeatDelay);
+
+        final List<Nag> reminders = new ArrayList<Nag>();
+        Nag suggestion = null;
+        for (Nag nag : pending.values()) {
+            if (nag.isShortcutSuggestion()) {
+                suggestion = nag;
+            } else {
+                reminders.add(nag);
+            }
+        }
+
+        if (reminders.isEmpty() && suggestion != null) {
+            for (Nag nag : pending.values()) {
+                markShown(nag, now);
+            }
+            pending.clear();
+            reminders.add(suggestion);
+            return reminders;
+        }
+        int excess = reminders.size() - max;
+        final List<Nag> kept = new ArrayList<Nag>();
+        for (Nag nag : reminders) {
+            if (excess > 0 && !nag.isCancelled()) {
+                excess--;
+                pending.remove(nag.getKey());
+                markShown(nag, now);
+            } else {
+                kept.add(nag);
+            }
+        }
+        // only cancelled reminders are left if they still don't fit
+        final List<Nag> taken = excess > 0
+                ? new ArrayList<Nag>(kept.subList(excess, kept.size()))
+                : kept;
+        for (Nag nag : taken) {
+            pending.remove(nag.getKey());
+            markShown(nag, now);
+        }
+        return taken;
+    }
+
+    /**
+     * Records the time the notification was shown.
+     * @param nag the notification. Assumed not <code>null</code>.
+     * @param now the current time in milliseconds.
+     */
+    private void markShown(final Nag nag, final long now) {
+        lastShown.put(nag.getKey(), Long.valueOf(now));
+    }
+
+    /**
+     * Discards the times of the notifications shown before the specified
+     * time, so the history does not grow.
+     * @param time the time in milliseconds.
+     */
+    private void forgetShownBefore(final long time) {
+        final Iterator<Long> it = lastShown.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().longValue() <= time) {
+                it.remove();
+            }
+        }
+    }
+}
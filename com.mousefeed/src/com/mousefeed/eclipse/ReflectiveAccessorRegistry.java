@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Resolves and caches the private fields and methods MouseFeed reads from
+ * the Eclipse classes.
+ * Each member is looked up and made accessible once per concrete class.
+ * The class hierarchy is searched, so a member moved to a superclass between
+ * Eclipse versions is still found.
+ * A member, which can't be found or accessed, is reported to the plugin log
+ * once, after that the access methods just return <code>null</code>.
+ * Singleton.
+ *
+ * @author Sigasi
+ */
+public final class ReflectiveAccessorRegistry {
+    /**
+     * The singleton instance.
+     */
+    private static final ReflectiveAccessorRegistry INSTANCE =
+            new ReflectiveAccessorRegistry();
+
+    /**
+     * Cached in place of a member, which does not exist.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    /**
+     * Resolved fields. Keys - concrete classes, values - fields or
+     * {@link #NOT_FOUND} by the field name.
+     */
+    private final Map<Class<?>, Map<String, Object>> fields =
+            new ConcurrentHashMap<Class<?>, Map<String, Object>>();
+
+    /**
+     * Resolved methods. Keys - concrete classes, values - methods or
+     * {@link #NOT_FOUND} by the method name.
+     */
+    private final Map<Class<?>, Map<String, Object>> methods =
+            new ConcurrentHashMap<Class<?>, Map<String, Object>>();
+
+    /**
+     * Descriptions of the failures already reported.
+     */
+    private final Set<String> reportedFailures =
+            Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Creates new registry.
+     * Because this class is a singleton, the constructor normally should not be
+     * used. It is exposed for testing purposes only.
+     */
+    ReflectiveAccessorRegistry() {
+    }
+
+    /**
+     * The singleton instance.
+     * @return the singleton instance. Never <code>null</code>.
+     */
+    public static ReflectiveAccessorRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads a field value.
+     * @param target the object to read the field of. Not <code>null</code>.
+     * @param fieldNames the field name, optionally followed by the names
+     * the field has in other Eclipse versions. The first existing field is
+     * read. Not empty.
+     * @return the field value. <code>null</code> if the field can't be
+     * found or read.
+     */
+    public Object readField(final Object target, final String... fieldNames) {
+        notNull(target);
+        final Field field = getField(target.getClass(), fieldNames);
+        if (field == null) {
+            return null;
+        }
+        try {
+            return field.get(target);
+        } catch (final IllegalAccessException e) {
+            reportFailure(target.getClass(), fieldNames, e);
+            return null;
+        }
+    }
+
+    /**
+     * Calls a method without parameters.
+     * @param target the object to call the method on. Not <code>null</code>.
+     * @param methodName the method name. Not <code>null</code>.
+     * @return the method result. <code>null</code> if the method can't be
+     * found or called.
+     */
+    public Object invoke(final Object target, final String methodName) {
+        notNull(target);
+        final Method method = getMethod(target.getClass(), methodName);
+        if (method == null) {
+            return null;
+        }
+        try {
+            return method.invoke(target);
+        } catch (final IllegalAccessException e) {
+            reportFailure(target.getClass(), new String[] {methodName}, e);
+            return null;
+        } catch (final InvocationTargetException e) {
+            reportFailure(target.getClass(), new String[] {methodName}, e);
+            return null;
+        }
+    }
+
+    /**
+     * Finds a field declared by the class or its superclasses.
+     * @param type the class to search the field in. Not <code>null</code>.
+     * @param fieldNames the field name and its alternative names.
+     * Not empty.
+     * @return the accessible field. <code>null</code> if the field can't be
+     * found.
+     */
+    public Field getField(final Class<?> type, final String... fieldNames) {
+        notNull(type);
+        isTrue(fieldNames.length > 0);
+        for (String name : fieldNames) {
+            final Object field = resolve(fields, type, name, true);
+            if (field != NOT_FOUND) {
+                return (Field) field;
+            }
+        }
+        reportFailure(type, fieldNames, null);
+        return null;
+    }
+
+    /**
+     * Finds a method without parameters declared by the class or its
+     * superclasses.
+     * @param type the class to search the method in. Not <code>null</code>.
+     * @param methodName the method name. Not <code>null</code>.
+     * @return the accessible method. <code>null</code> if the method can't be
+     * found.
+     */
+    public Method getMethod(final Class<?> type, final String methodName) {
+        notNull(type);
+        notNull(methodName);
+        final Object method = resolve(methods, type, methodName, false);
+        if (method == NOT_FOUND) {
+            reportFailure(type, new String[] {methodName}, null);
+            return null;
+        }
+        return (Method) method;
+    }
+
+    /**
+     * Gets the member from the cache, resolves it on a cache miss.
+     * @param cache the cache to use. Assumed not <code>null</code>.
+     * @param type the concrete class. Assumed not <code>null</code>.
+     * @param name the member name. Assumed not <code>null</code>.
+     * @param field <code>true</code> to search for a field,
+     * <code>false</code> to search for a method.
+     * @return the member or {@link #NOT_FOUND}. Never <code>null</code>.
+     */
+    private Object resolve(final Map<Class<?>, Map<String, Object>> cache,
+            final Class<?> type, final String name, final boolean field) {
+        Map<String, Object> members = cache.get(type);
+        if (members == null) {
+            members = new ConcurrentHashMap<String, Object>();
+            cache.put(type, members);
+        }
+        Object member = members.get(name);
+        if (member == null) {
+            member = field ? findField(type, name) : findMethod(type, name);
+            members.put(name, member);
+        }
+        return member;
+    }
+
+    /**
+     * Searches the class hierarchy for the field.
+     * @return the accessible field or {@link #NOT_FOUND}.
+     */
+    private Object findField(final Class<?> type, final String name) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                return makeAccessible(c.getDeclaredField(name));
+            } catch (final NoSuchFieldException e) {
+                // search the superclass
+            } catch (final SecurityException e) {
+                reportFailure(type, new String[] {name}, e);
+                return NOT_FOUND;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Searches the class hierarchy for the method without parameters.
+     * @return the accessible method or {@link #NOT_FOUND}.
+     */
+    private Object findMethod(final Class<?> type, final String name) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                return makeAccessible(c.getDeclaredMethod(name));
+            } catch (final NoSuchMethodException e) {
+                // search the superclass
+            } catch (final SecurityException e) {
+                reportFailure(type, new String[] {name}, e);
+                return NOT_FOUND;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Makes the member accessible.
+     * @param member the member. Assumed not <code>null</code>.
+     * @return the member.
+     */
+    private AccessibleObject makeAccessible(final AccessibleObject member) {
+        member.setAccessible(true);
+        return member;
+    }
+
+    /**
+     * Logs the failure to access a member, if it was not reported yet.
+     * @param type the class the member was searched in.
+     * @param names the member names.
+     * @param cause the failure cause. Can be <code>null</code>.
+     */
+    private void reportFailure(final Class<?> type, final String[] names,
+            final Throwable cause) {
+        final String failure = type.getName() + "#" + Arrays.asList(names);
+        if (!reportedFailures.add(failure)) {
+            return;
+        }
+        final Activator activator = Activator.getDefault();
+        if (activator != null) {
+            activator.getLog().log(new Status(IStatus.WARNING,
+                    Activator.PLUGIN_ID,
+                    "Can't access " + failure + ", MouseFeed can't detect "
+                    + "some of the actions in this Eclipse version", cause));
+        }
+    }
+}
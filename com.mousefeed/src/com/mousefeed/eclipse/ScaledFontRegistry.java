@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Shares the scaled fonts of a display.
+ * The fonts are keyed by the base font data and the scale, so all the
+ * controls asking for the same scaled font get the same font handle.
+ * A font is disposed when it is released as many times as it was acquired,
+ * or when the display is disposed.
+ * Must be called from the display thread.
+ *
+ * @author Sigasi
+ */
+final class ScaledFontRegistry {
+    /**
+     * The scale, which does not change the font size, in percent.
+     */
+    private static final int SCALE_BASE = 100;
+
+    /**
+     * The key of the display data storing the registry.
+     */
+    private static final String KEY = ScaledFontRegistry.class.getName();
+
+    /**
+     * A shared font with the number of its users.
+     */
+    private static class Entry {
+        /**
+         * The registry key of the font.
+         */
+        private final List<Object> key;
+
+        /**
+         * The font.
+         */
+        private final Font font;
+
+        /**
+         * How many times the font was acquired, but not released yet.
+         */
+        private int refCount;
+
+        /**
+         * Creates new entry.
+         * @param key the registry key. Assumed not <code>null</code>.
+         * @param font the font. Assumed not <code>null</code>.
+         */
+        Entry(final List<Object> key, final Font font) {
+            this.key = key;
+            this.font = font;
+        }
+    }
+
+    /**
+     * The display to create the fonts on.
+     */
+    private final Display display;
+
+    /**
+     * The shared fonts by the base font data and scale.
+     */
+    private final Map<List<Object>, Entry> entries =
+            new HashMap<List<Object>, Entry>();
+
+    /**
+     * The shared fonts by the font handle.
+     */
+    private final Map<Font, Entry> entriesByFont =
+            new IdentityHashMap<Font, Entry>();
+
+    /**
+     * Creates new registry. Use {@link #getInstance(Display)}.
+     * @param display the display to create the fonts on.
+     * Assumed not <code>null</code>.
+     */
+    private ScaledFontRegistry(final Display display) {
+        this.display = display;
+    }
+
+    /**
+     * The registry of the display. Creates it when called the first time for
+     * the display.
+     * @param display the display. Not <code>null</code>, not disposed.
+     * @return the registry. Never <code>null</code>.
+     */
+    public static ScaledFontRegistry getInstance(final Display display) {
+        notNull(display);
+        final Object data = display.getData(KEY);
+        if (data instanceof ScaledFontRegistry) {
+            return (ScaledFontRegistry) data;
+        }
+        final ScaledFontRegistry registry = new ScaledFontRegistry(display);
+        display.setData(KEY, registry);
+        display.disposeExec(new Runnable() {
+            public void run() {
+                registry.disposeAll();
+            }
+        });
+        return registry;
+    }
+
+    /**
+     * Provides the font with the height scaled relative to the base font.
+     * Each call must be paired with {@link #release(Font)}.
+     * @param base the base font data. Not <code>null</code>.
+     * @param scale the font size relative to the base font, in percent.
+     * Positive.
+     * @return the scaled font. Never <code>null</code>.
+     * Must not be disposed by the caller.
+     */
+    public Font acquire(final FontData[] base, final int scale) {
+        notNull(base);
+        isTrue(scale > 0);
+        final List<Object> key = new ArrayList<Object>(base.length + 1);
+        key.addAll(Arrays.asList(base));
+        key.add(Integer.valueOf(scale));
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key, new Font(display, scale(base, scale)));
+            entries.put(key, entry);
+            entriesByFont.put(entry.font, entry);
+        }
+        entry.refCount++;
+        return entry.font;
+    }
+
+    /**
+     * Releases the font acquired with {@link #acquire(FontData[], int)}.
+     * Disposes the font when nobody uses it.
+     * @param font the font. Not <code>null</code>.
+     */
+    public void release(final Font font) {
+        notNull(font);
+        final Entry entry = entriesByFont.get(font);
+        if (entry == null) {
+            // already disposed with the display
+            return;
+        }
+        entry.refCount--;
+        if (entry.refCount <= 0) {
+            entries.remove(entry.key);
+            entriesByFont.remove(font);
+            font.dispose();
+        }
+    }
+
+    /**
+     * The number of the fonts currently shared.
+     * @return the number of the fonts.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Creates the scaled font data.
+     * @param base the base font data. Assumed not <code>null</code>.
+     * @param scale the scale, in percent.
+     * @return the scaled copies of the base font data. Never <code>null</code>.
+     */
+    private static FontData[] scale(final FontData[] base, final int scale) {
+        final FontData[] scaled = new FontData[base.length];
+        for (int i = 0; i < base.length; i++) {
+            // copies the platform-specific attributes, e.g. the locale
+            scaled[i] = new FontData(base[i].toString());
+            scaled[i].setHeight(
+                    Math.max(1, base[i].getHeight() * scale / SCALE_BASE));
+        }
+        return scaled;
+    }
+
+    /**
+     * Disposes all the fonts.
+     */
+    private void disposeAll() {
+        for (Font font : entriesByFont.keySet()) {
+            font.dispose();
+        }
+        entries.clear();
+        entriesByFont.clear();
+    }
+}
@@ -18,10 +18,12 @@
  */
 package com.mousefeed.eclipse;
 
-import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IStartup;
+import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.commands.ICommandService;
+import org.eclipse.ui.keys.IBindingService;
 
 /**
  * Hooks up the plugin listeners.
@@ -41,8 +43,16 @@ public class Startup implements IStartup {
     public void earlyStartup() {
         getDisplay().asyncExec(new Runnable() {
             public void run() {
-                getDisplay().addFilter(
-                      SWT.Selection, new GlobalSelectionListener());
+                new ActionSelectionFilter(getDisplay(),
+                        new GlobalSelectionListener()).install();
+                final IWorkbench workbench = PlatformUI.getWorkbench();
+                final ICommandService commandService = (ICommandService)
+                        workbench.getService(ICommandService.class);
+                commandService.addExecutionListener(
+                        new KeyboardInvocationListener(commandService,
+                                (IBindingService) workbench
+                                        .getService(IBindingService.class),
+                                Activator.getDefault().getCollector()));
             }
         });
     }
@@ -21,7 +21,6 @@ package com.mousefeed.eclipse;
 import static org.apache.commons.lang.Validate.isTrue;
 import static org.apache.commons.lang.Validate.notNull;
 
-import java.lang.reflect.Field;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -56,6 +55,18 @@ public class TextActionHandlerActionLocator {
         HANDLER_ACTIONS = Collections.unmodifiableMap(map);
     }
 
+    /**
+     * Name of the field referring the enclosing instance from the nested
+     * action classes.
+     */
+    private static final String OUTER_INSTANCE_FIELD = "this$0";
+
+    /**
+     * Reads the handler fields.
+     */
+    private final ReflectiveAccessorRegistry accessors =
+            ReflectiveAccessorRegistry.getInstance();
+
     /**
      * Default constructor does nothing.
      */
@@ -80,35 +91,20 @@ public class TextActionHandlerActionLocator {
      * @param action the action to search. Not <code>null</code>.
      * @param searchTarget where to search. Not <code>null</code>.
      * @return the action definition id for the global action for the same
-     * command as <code>action</code>, if it 
+     * command as <code>action</code>, if it is found, <code>null</code>
+     * otherwise.
      */
     public String findActionDefinitionId(final IAction action, final IAction searchTarget) {
-        try {
-            return doFindActionDefinitionId(action, searchTarget);
-        } catch (final SecurityException e) {
-            throw new AssertionError(e);
-        } catch (final NoSuchFieldException e) {
-            throw new AssertionError(e);
-        } catch (final IllegalAccessException e) {
-            throw new AssertionError(e);
-        }
-    }
-
-    /**
-     * Contains all the logic of
-     * {@link #findActionDefinitionId(IAction, IAction)}, leaving to it only
-     * exception handling.
-     */
-    private String doFindActionDefinitionId(final IAction action,
-            final IAction searchTarget)
-            throws NoSuchFieldException, IllegalAccessException {
         notNull(action);
         notNull(searchTarget);
 
         final Object handler = getTextActionHandler(searchTarget);
+        if (handler == null) {
+            return null;
+        }
         for (final String fieldName : HANDLER_ACTIONS.keySet()) {
             final IAction handlerAction =
-                    getActionFromField(handler, fieldName);
+                    (IAction) accessors.readField(handler, fieldName);
             if (handlerAction == null) {
                 continue;
             }
@@ -120,34 +116,17 @@ public class TextActionHandlerActionLocator {
         return null;
     }
 
-    /**
-     * Retrieves an action from the provided action field.
-     */
-    private IAction getActionFromField(final Object o, final String fieldName)
-            throws NoSuchFieldException, IllegalAccessException {
-        final Field actionField =
-                o.getClass().getDeclaredField(fieldName);
-        actionField.setAccessible(true);
-        return (IAction) actionField.get(o);
-    }
-
     /**
      * Retrieves <code>org.eclipse.ui.actions.TextActionHandler</code> from the
      * nested class action.
      * @param action the action to retrieve handler from. Not <code>null</code>.
-     * @return the handler. Never <code>null</code>.
+     * @return the handler. <code>null</code> if it can't be retrieved.
      */
-    private Object getTextActionHandler(final IAction action)
-            throws NoSuchFieldException, IllegalAccessException {
+    private Object getTextActionHandler(final IAction action) {
         notNull(action);
-        final Field handlerField =
-                action.getClass().getDeclaredField("this$0");
-        notNull(handlerField);
-        handlerField.setAccessible(true);
-
-        final Object handler = handlerField.get(action);
-        notNull(handler);
-        isTrue(handler.getClass().getName().equals(HANDLER_CLASS_NAME));
+        final Object handler = accessors.readField(action, OUTER_INSTANCE_FIELD);
+        isTrue(handler == null
+                || handler.getClass().getName().equals(HANDLER_CLASS_NAME));
         return handler;
     }
 }
@@ -22,9 +22,14 @@ import static com.mousefeed.eclipse.Layout.STACKED_V_OFFSET;
 import static com.mousefeed.eclipse.Layout.WHOLE_SIZE;
 import static com.mousefeed.eclipse.Layout.WINDOW_MARGIN;
 import static com.mousefeed.eclipse.Layout.placeUnder;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.ACTION_USAGE_HALF_LIFE_DEFAULT;
 import static com.mousefeed.eclipse.preferences.PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_ENABLED_DEFAULT;
 import static com.mousefeed.eclipse.preferences.PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD_DEFAULT;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_DEFAULT;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX;
 import static com.mousefeed.eclipse.preferences.PreferenceConstants.INVOCATION_CONTROL_ENABLED_DEFAULT;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.NAG_MAX_STACKED_DEFAULT;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.NAG_REPEAT_DELAY_DEFAULT;
 import static org.apache.commons.lang.Validate.notNull;
 
 import com.mousefeed.client.Messages;
@@ -68,6 +73,21 @@ public class ActionInvocationPreferencePage extends PreferencePage
     private static final Messages MESSAGES =
             new Messages(ActionInvocationPreferencePage.class);
 
+    /**
+     * The maximal value of {@link #actionUsageHalfLife}, in days.
+     */
+    private static final int ACTION_USAGE_HALF_LIFE_MAX = 365;
+
+    /**
+     * The maximal value of {@link #nagRepeatDelay}, in seconds.
+     */
+    private static final int NAG_REPEAT_DELAY_MAX = 60;
+
+    /**
+     * The maximal value of {@link #nagMaxStacked}.
+     */
+    private static final int NAG_MAX_STACKED_MAX = 10;
+
     /**
      * Provides access to the plugin preferences.
      */
@@ -97,6 +117,31 @@ public class ActionInvocationPreferencePage extends PreferencePage
      */
     private Spinner configureKeyboardShortcutThreshold;
 
+    /**
+     * Setting the number of days the action invocations are counted in
+     * for {@link #configureKeyboardShortcutThreshold}.
+     * 0 counts all the invocations, halved as set by
+     * {@link #actionUsageHalfLife}.
+     */
+    private Spinner configureKeyboardShortcutWindow;
+
+    /**
+     * Setting the number of days, after which the counts of all the action
+     * invocations are halved. 0 keeps the counts. Applies only when
+     * {@link #configureKeyboardShortcutWindow} is 0.
+     */
+    private Spinner actionUsageHalfLife;
+
+    /**
+     * Setting for how long the same reminder is not shown again.
+     */
+    private Spinner nagRepeatDelay;
+
+    /**
+     * Setting how many reminders one pop-up shows at most.
+     */
+    private Spinner nagMaxStacked;
+
     /**
      * Setting what to do when user invokes an action using wrong invocation
      * mode.
@@ -146,6 +191,23 @@ public class ActionInvocationPreferencePage extends PreferencePage
                 createConfigureKeyboardShortcutThreshold(composite, c);
         c = configureKeyboardShortcutThreshold;
 
+        configureKeyboardShortcutWindow = createSpinner(composite, c,
+                "field.configureKeyboardShortcutWindow",
+                0, CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX);
+        c = configureKeyboardShortcutWindow;
+
+        actionUsageHalfLife = createSpinner(composite, c,
+                "field.actionUsageHalfLife", 0, ACTION_USAGE_HALF_LIFE_MAX);
+        c = actionUsageHalfLife;
+
+        nagRepeatDelay = createSpinner(composite, c, "field.nagRepeatDelay",
+                0, NAG_REPEAT_DELAY_MAX);
+        c = nagRepeatDelay;
+
+        nagMaxStacked = createSpinner(composite, c, "field.nagMaxStacked",
+                1, NAG_MAX_STACKED_MAX);
+        c = nagMaxStacked;
+
         c = onWrongInvocationModeUI.createLabel(composite, c,
                 MESSAGES.get("field.defaultOnWrongInvocationMode.label"));
         onWrongInvocationModeCombo =
@@ -159,6 +221,12 @@ public class ActionInvocationPreferencePage extends PreferencePage
                 preferences.isConfigureKeyboardShortcutEnabled());
         updateConfigureKeyboardShortcutThreshold(
                 preferences.getConfigureKeyboardShortcutThreshold());
+        configureKeyboardShortcutWindow.setSelection(
+                preferences.getConfigureKeyboardShortcutWindow());
+        actionUsageHalfLife.setSelection(
+                preferences.getActionUsageHalfLife());
+        nagRepeatDelay.setSelection(preferences.getNagRepeatDelay());
+        nagMaxStacked.setSelection(preferences.getNagMaxStacked());
         
         actionModeControl = createActionModeControl(composite);
         c = actionModeControl;
@@ -181,6 +249,11 @@ public class ActionInvocationPreferencePage extends PreferencePage
                 CONFIGURE_KEYBOARD_SHORTCUT_ENABLED_DEFAULT);
         updateConfigureKeyboardShortcutThreshold(
                 CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD_DEFAULT);
+        configureKeyboardShortcutWindow.setSelection(
+                CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_DEFAULT);
+        actionUsageHalfLife.setSelection(ACTION_USAGE_HALF_LIFE_DEFAULT);
+        nagRepeatDelay.setSelection(NAG_REPEAT_DELAY_DEFAULT);
+        nagMaxStacked.setSelection(NAG_MAX_STACKED_DEFAULT);
         actionModeControl.clearActionSettings();
     }
 
@@ -191,6 +264,12 @@ public class ActionInvocationPreferencePage extends PreferencePage
         preferences.storeInvocationControlEnabled(isInvocationControlEnabled());
         preferences.storeConfigureKeyboardShortcutEnabled(isConfigureKeyboardShortcutEnabled());
         preferences.storeConfigureKeyboardShortcutThreshold(getConfigureKeyboardShortcutThreshold());
+        preferences.storeConfigureKeyboardShortcutWindow(
+                configureKeyboardShortcutWindow.getSelection());
+        preferences.storeActionUsageHalfLife(
+                actionUsageHalfLife.getSelection());
+        preferences.storeNagRepeatDelay(nagRepeatDelay.getSelection());
+        preferences.storeNagMaxStacked(nagMaxStacked.getSelection());
         preferences.setActionsOnWrongInvocationMode(
                 actionModeControl.getActionModes());
         return super.performOk();
@@ -268,6 +347,9 @@ public class ActionInvocationPreferencePage extends PreferencePage
     private void onConfigureKeyboardShortcutCheckboxSelected() {
         final Control c = configureKeyboardShortcutThreshold;
         c.setEnabled(isInvocationControlEnabled());
+        configureKeyboardShortcutWindow.setEnabled(
+                isInvocationControlEnabled());
+        actionUsageHalfLife.setEnabled(isInvocationControlEnabled());
     }
 
     /**
@@ -290,6 +372,31 @@ public class ActionInvocationPreferencePage extends PreferencePage
         return spinner;
     }
 
+    /**
+     * Creates a labeled spinner.
+     * @param container the parent control. Assumed not <code>null</code>.
+     * @param above the control above this one.
+     * @param field the prefix of the label and tooltip message keys.
+     * Assumed not <code>null</code>.
+     * @param min the minimal value.
+     * @param max the maximal value.
+     * @return the spinner. Never <code>null</code>.
+     */
+    private Spinner createSpinner(final Composite container,
+            final Control above, final String field,
+            final int min, final int max) {
+        final Label label = new Label(container, SWT.NONE);
+        label.setText(MESSAGES.get(field + ".label"));
+        placeUnder(label, above, STACKED_V_OFFSET);
+        
+        final Spinner spinner = new Spinner(container, SWT.NONE);
+        spinner.setMinimum(min);
+        spinner.setMaximum(max);
+        spinner.setToolTipText(MESSAGES.get(field + ".tooltip"));
+        placeUnder(spinner, label, STACKED_V_OFFSET);
+        return spinner;
+    }
+
     /**
      * Creates the action-specific invocation settings UI control. 
      * @param composite the container. Assumed not <code>null</code>.
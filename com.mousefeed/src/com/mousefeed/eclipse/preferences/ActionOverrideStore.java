@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import java.util.Collection;
+
+/**
+ * Persists the action-specific on wrong invocation mode settings for
+ * {@link PreferenceAccessor}.
+ * The changes may be written in background, {@link #flush()} makes sure
+ * they are written.
+ *
+ * @author Sigasi
+ */
+public interface ActionOverrideStore {
+    /**
+     * Reads all the stored settings.
+     * @return the settings. Never <code>null</code>.
+     * All objects in the collection have unique ids.
+     */
+    Collection<ActionOnWrongInvocationMode> load();
+
+    /**
+     * Stores the setting, replacing the setting with the same id.
+     * @param mode the setting. Not <code>null</code>.
+     * Changes to the object after the call don't affect the stored data.
+     */
+    void put(ActionOnWrongInvocationMode mode);
+
+    /**
+     * Removes the setting for the action.
+     * @param actionId the action id. Not <code>null</code>.
+     */
+    void remove(String actionId);
+
+    /**
+     * Replaces all the stored settings.
+     * @param modes the new settings. Not <code>null</code>.
+     * Changes to the data after the call don't affect the stored data.
+     */
+    void replaceAll(Collection<ActionOnWrongInvocationMode> modes);
+
+    /**
+     * Writes the changes, which are not written yet.
+     * Blocks until the changes are written.
+     */
+    void flush();
+}
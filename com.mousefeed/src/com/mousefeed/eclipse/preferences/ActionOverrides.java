@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only snapshot of the action-specific on wrong invocation mode
+ * settings.
+ * The settings are never changed in place. Each change produces a new
+ * snapshot with a greater version, so a snapshot can be read from any thread
+ * without locking.
+ *
+ * @author Sigasi
+ * @see PreferenceAccessor#getActionOverrides()
+ */
+public final class ActionOverrides {
+    /**
+     * The snapshot without any settings.
+     */
+    static final ActionOverrides EMPTY = new ActionOverrides(0,
+            new HashMap<String, ActionOnWrongInvocationMode>());
+
+    /**
+     * The snapshot version.
+     */
+    private final long version;
+
+    /**
+     * The settings by action id. Read-only.
+     */
+    private final Map<String, ActionOnWrongInvocationMode> modes;
+
+    /**
+     * Creates new snapshot.
+     * @param version the snapshot version.
+     * @param modes the settings by action id. Assumed not <code>null</code>.
+     * The snapshot takes ownership of the map, so it must not be changed
+     * after the call.
+     */
+    private ActionOverrides(final long version,
+            final Map<String, ActionOnWrongInvocationMode> modes) {
+        this.version = version;
+        this.modes = Collections.unmodifiableMap(modes);
+    }
+
+    /**
+     * The snapshot version. Each change of the settings increases the
+     * version.
+     * @return the version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The setting for the specified action.
+     * @param actionId the action id. Not <code>null</code>.
+     * @return the setting. <code>null</code> if there is no action-specific
+     * setting.
+     */
+    public ActionOnWrongInvocationMode get(final String actionId) {
+        return modes.get(actionId);
+    }
+
+    /**
+     * All the settings.
+     * @return the settings. Read-only. Never <code>null</code>.
+     * All objects in the collection have unique ids.
+     */
+    public Collection<ActionOnWrongInvocationMode> getAll() {
+        return modes.values();
+    }
+
+    /**
+     * Creates the next snapshot with the setting added or replaced.
+     * @param mode the setting. Assumed not <code>null</code>.
+     * @return the new snapshot. Never <code>null</code>.
+     */
+    ActionOverrides with(final ActionOnWrongInvocationMode mode) {
+        final Map<String, ActionOnWrongInvocationMode> newModes =
+                new HashMap<String, ActionOnWrongInvocationMode>(modes);
+        newModes.put(mode.getId(), mode);
+        return new ActionOverrides(version + 1, newModes);
+    }
+
+    /**
+     * Creates the next snapshot without the setting.
+     * @param actionId the action id. Assumed not <code>null</code>.
+     * @return the new snapshot. Never <code>null</code>.
+     */
+    ActionOverrides without(final String actionId) {
+        final Map<String, ActionOnWrongInvocationMode> newModes =
+                new HashMap<String, ActionOnWrongInvocationMode>(modes);
+        newModes.remove(actionId);
+        return new ActionOverrides(version + 1, newModes);
+    }
+
+    /**
+     * Creates the next snapshot with all the settings replaced.
+     * @param newModes the new settings. Assumed not <code>null</code>.
+     * @return the new snapshot. Never <code>null</code>.
+     */
+    ActionOverrides replacedBy(
+            final Collection<ActionOnWrongInvocationMode> newModes) {
+        final Map<String, ActionOnWrongInvocationMode> m =
+                new HashMap<String, ActionOnWrongInvocationMode>();
+        for (ActionOnWrongInvocationMode mode : newModes) {
+            m.put(mode.getId(), mode);
+        }
+        return new ActionOverrides(version + 1, m);
+    }
+}
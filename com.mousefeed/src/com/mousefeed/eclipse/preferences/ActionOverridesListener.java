@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+/**
+ * Is notified about changes of the action-specific on wrong invocation mode
+ * settings.
+ *
+ * @author Sigasi
+ * @see PreferenceAccessor#addActionOverridesListener(ActionOverridesListener)
+ */
+public interface ActionOverridesListener {
+    /**
+     * Is called after the settings are loaded or changed.
+     * Is called in the thread, which changed the settings, in the order of
+     * the snapshot versions. Must not change the settings.
+     * @param overrides the new settings. Not <code>null</code>.
+     */
+    void actionOverridesChanged(ActionOverrides overrides);
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.eclipse.Activator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Replaces a file content atomically.
+ * The content is written to a temporary file in the same directory,
+ * which then replaces the target file, so a crash during the write never
+ * leaves a truncated file.
+ *
+ * @author Sigasi
+ */
+public final class AtomicFileWriter {
+    /**
+     * Generates binary file content.
+     */
+    public interface Content {
+        /**
+         * Writes the content.
+         * @param out the stream to write the content to.
+         * Not <code>null</code>. The buffers wrapped around the stream must
+         * be flushed before returning.
+         * @throws IOException on a write failure.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Generates text file content.
+     */
+    interface TextContent {
+        /**
+         * Writes the content.
+         * @param writer the writer to write the content to.
+         * Not <code>null</code>.
+         * @throws IOException on a write failure.
+         */
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    /**
+     * Suffix of the temporary file.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Writes the content to a temporary file and replaces the target file
+     * with it.
+     * @param file the file to write. Not <code>null</code>.
+     * @param content the content. Not <code>null</code>.
+     * @throws IOException on a write failure.
+     */
+    public static void writeAtomically(final File file, final Content content)
+            throws IOException {
+        notNull(file);
+        notNull(content);
+        final File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        final FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            content.writeTo(out);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            // some platforms do not replace an existing file on rename
+            if (!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Can't replace " + file
+                        + " with " + tempFile);
+            }
+        }
+    }
+
+    /**
+     * Writes the text content to a temporary file and replaces the target
+     * file with it.
+     * @param file the file to write. Assumed not <code>null</code>.
+     * @param encoding the file encoding. Assumed not <code>null</code>.
+     * @param content the content. Assumed not <code>null</code>.
+     * @throws IOException on a write failure.
+     */
+    static void writeAtomically(final File file, final String encoding,
+            final TextContent content) throws IOException {
+        writeAtomically(file, new Content() {
+            public void writeTo(final OutputStream out) throws IOException {
+                final Writer writer = new OutputStreamWriter(out, encoding);
+                content.writeTo(writer);
+                writer.flush();
+            }
+        });
+    }
+
+    /**
+     * Reports a file failure to the plugin log.
+     * @param message the message. Assumed not <code>null</code>.
+     * @param e the failure. Assumed not <code>null</code>.
+     */
+    static void log(final String message, final IOException e) {
+        final Activator activator = Activator.getDefault();
+        if (activator == null) {
+            throw new RuntimeException(message, e);
+        }
+        activator.getLog().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+                message, e));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_ACTION_USAGE_HALF_LIFE;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_ENABLED;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_DEFAULT_ON_WRONG_INVOCATION_MODE;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_INVOCATION_CONTROL_ENABLED;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_NAG_MAX_STACKED;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_NAG_REPEAT_DELAY;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_POPUP_FONT_SCALE;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+/**
+ * The global preferences used to decide on the feedback for an action
+ * invocation.
+ * Read-only snapshot of the preference store values, so the feedback
+ * decision does not look up or parse the stored values.
+ *
+ * @author Sigasi
+ * @see PreferenceAccessor#getFeedbackSettings()
+ */
+public final class FeedbackSettings {
+    /**
+     * @see #isInvocationControlEnabled()
+     */
+    private final boolean invocationControlEnabled;
+
+    /**
+     * @see #isConfigureKeyboardShortcutEnabled()
+     */
+    private final boolean configureKeyboardShortcutEnabled;
+
+    /**
+     * @see #getConfigureKeyboardShortcutThreshold()
+     */
+    private final int configureKeyboardShortcutThreshold;
+
+    /**
+     * @see #getConfigureKeyboardShortcutWindow()
+     */
+    private final int configureKeyboardShortcutWindow;
+
+    /**
+     * @see #getActionUsageHalfLife()
+     */
+    private final int actionUsageHalfLife;
+
+    /**
+     * @see #getOnWrongInvocationMode()
+     */
+    private final OnWrongInvocationMode onWrongInvocationMode;
+
+    /**
+     * @see #getNagRepeatDelay()
+     */
+    private final int nagRepeatDelay;
+
+    /**
+     * @see #getNagMaxStacked()
+     */
+    private final int nagMaxStacked;
+
+    /**
+     * @see #getPopupFontScale()
+     */
+    private final int popupFontScale;
+
+    /**
+     * Reads the settings from the preference store.
+     * @param store the store to read the settings from.
+     * Assumed not <code>null</code>.
+     */
+    FeedbackSettings(final IPreferenceStore store) {
+        invocationControlEnabled =
+                store.getBoolean(P_INVOCATION_CONTROL_ENABLED);
+        configureKeyboardShortcutEnabled =
+                store.getBoolean(P_CONFIGURE_KEYBOARD_SHORTCUT_ENABLED);
+        configureKeyboardShortcutThreshold =
+                store.getInt(P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD);
+        configureKeyboardShortcutWindow = Math.min(
+                CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX, Math.max(0,
+                        store.getInt(P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW)));
+        actionUsageHalfLife = Math.max(0,
+                store.getInt(P_ACTION_USAGE_HALF_LIFE));
+        final String stored =
+                store.getString(P_DEFAULT_ON_WRONG_INVOCATION_MODE);
+        onWrongInvocationMode = stored == null
+                ? OnWrongInvocationMode.DEFAULT
+                : OnWrongInvocationMode.valueOf(stored);
+        nagRepeatDelay = Math.max(0, store.getInt(P_NAG_REPEAT_DELAY));
+        nagMaxStacked = Math.max(1, store.getInt(P_NAG_MAX_STACKED));
+        popupFontScale = store.getInt(P_POPUP_FONT_SCALE);
+    }
+
+    /**
+     * Checks whether the preference is one of the settings.
+     * @param property the preference name. Can be <code>null</code>.
+     * @return <code>true</code> if a change of the preference should
+     * refresh the settings.
+     */
+    static boolean isSetting(final String property) {
+        return P_INVOCATION_CONTROL_ENABLED.equals(property)
+                || P_CONFIGURE_KEYBOARD_SHORTCUT_ENABLED.equals(property)
+                || P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD.equals(property)
+                || P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW.equals(property)
+                || P_ACTION_USAGE_HALF_LIFE.equals(property)
+                || P_DEFAULT_ON_WRONG_INVOCATION_MODE.equals(property)
+                || P_NAG_REPEAT_DELAY.equals(property)
+                || P_NAG_MAX_STACKED.equals(property)
+                || P_POPUP_FONT_SCALE.equals(property);
+    }
+
+    /**
+     * @return whether invocation control is enabled.
+     * @see PreferenceAccessor#isInvocationControlEnabled()
+     */
+    public boolean isInvocationControlEnabled() {
+        return invocationControlEnabled;
+    }
+
+    /**
+     * @return whether keyboard shortcut configuration is enabled.
+     * @see PreferenceAccessor#isConfigureKeyboardShortcutEnabled()
+     */
+    public boolean isConfigureKeyboardShortcutEnabled() {
+        return configureKeyboardShortcutEnabled;
+    }
+
+    /**
+     * @return the action invocation counter threshold.
+     * @see PreferenceAccessor#getConfigureKeyboardShortcutThreshold()
+     */
+    public int getConfigureKeyboardShortcutThreshold() {
+        return configureKeyboardShortcutThreshold;
+    }
+
+    /**
+     * @return the number of days the action invocations are counted in
+     * for the threshold. 0 if all the invocations are counted.
+     * @see PreferenceAccessor#getConfigureKeyboardShortcutWindow()
+     */
+    public int getConfigureKeyboardShortcutWindow() {
+        return configureKeyboardShortcutWindow;
+    }
+
+    /**
+     * @return the number of days, after which an action invocation count
+     * is halved. 0 if the counts don't decay.
+     * @see PreferenceAccessor#getActionUsageHalfLife()
+     */
+    public int getActionUsageHalfLife() {
+        return actionUsageHalfLife;
+    }
+
+    /**
+     * @return the global invocation mode. Never <code>null</code>.
+     * @see PreferenceAccessor#getOnWrongInvocationMode()
+     */
+    public OnWrongInvocationMode getOnWrongInvocationMode() {
+        return onWrongInvocationMode;
+    }
+
+    /**
+     * @return for how long the same reminder is not shown again, in seconds.
+     * Not negative.
+     * @see PreferenceAccessor#getNagRepeatDelay()
+     */
+    public int getNagRepeatDelay() {
+        return nagRepeatDelay;
+    }
+
+    /**
+     * @return how many reminders one pop-up shows at most. Positive.
+     * @see PreferenceAccessor#getNagMaxStacked()
+     */
+    public int getNagMaxStacked() {
+        return nagMaxStacked;
+    }
+
+    /**
+     * @return the pop-up font scale in percent.
+     * @see PreferenceAccessor#getPopupFontScale()
+     */
+    public int getPopupFontScale() {
+        return popupFontScale;
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.time.DateUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Stores the action-specific settings in an append-only log file.
+ * <p>
+ * Each change appends a single record to the file, so the cost of a change
+ * does not depend on the number of stored settings. The records are
+ * appended in background. When the log grows much bigger than the number of
+ * the live settings, it is compacted by rewriting it with one record per
+ * setting.
+ * </p>
+ * <p>
+ * One line of the file is one record. A record is a type character
+ * followed by tab-separated fields: <code>+ id label mode</code> stores a
+ * setting, <code>- id</code> removes it. Tabs, line breaks and backslashes in
+ * the fields are escaped with a backslash. A malformed line, e.g. a line
+ * truncated by a crash, is skipped. If the file does not end with a line
+ * break, one is written before appending new records.
+ * </p>
+ * If the log file does not exist yet, the settings are migrated from
+ * another store on {@link #load()}.
+ *
+ * @author Sigasi
+ */
+public class LogActionOverrideStore implements ActionOverrideStore {
+    /**
+     * How long to wait for more changes before writing them, in
+     * milliseconds.
+     */
+    private static final long COALESCE_DELAY = 500;
+
+    /**
+     * How long to wait before retrying a failed write, in milliseconds.
+     */
+    private static final long RETRY_DELAY = DateUtils.MILLIS_PER_MINUTE;
+
+    /**
+     * The log file encoding.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * The type of the record storing a setting.
+     */
+    private static final char PUT = '+';
+
+    /**
+     * The type of the record removing a setting.
+     */
+    private static final char REMOVE = '-';
+
+    /**
+     * The record fields separator.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * The escape character.
+     */
+    private static final char ESCAPE = '\\';
+
+    /**
+     * The log is compacted when it has more records than this factor
+     * multiplied by the number of the live settings.
+     */
+    private static final int COMPACTION_FACTOR = 2;
+
+    /**
+     * The log is never compacted when it has less records than this.
+     */
+    private static final int MIN_COMPACTION_RECORDS = 64;
+
+    /**
+     * The log file.
+     */
+    private final File file;
+
+    /**
+     * The store to migrate the settings from. <code>null</code> if there is
+     * nothing to migrate.
+     */
+    private final ActionOverrideStore migrationSource;
+
+    /**
+     * The live settings records by action id. Guarded by this.
+     */
+    private final Map<String, String> records =
+            new LinkedHashMap<String, String>();
+
+    /**
+     * The records, which are not appended to the log yet. Guarded by this.
+     */
+    private final List<String> pendingRecords = new ArrayList<String>();
+
+    /**
+     * The number of records in the log, including the pending ones.
+     * Guarded by this.
+     */
+    private int recordCount;
+
+    /**
+     * Whether the log must be rewritten instead of appending the pending
+     * records. Guarded by this.
+     */
+    private boolean rewritePending;
+
+    /**
+     * Whether the log could not be read completely, so it must not be
+     * compacted from the incomplete {@link #records}. Guarded by this.
+     */
+    private boolean readIncomplete;
+
+    /**
+     * Serializes the log writes done by the job and by {@link #flush()}.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Writes the pending records.
+     */
+    private final Job job;
+
+    /**
+     * Creates new store.
+     * @param file the log file. Not <code>null</code>.
+     * @param migrationSource the store to load the settings from if the log
+     * file does not exist yet. Can be <code>null</code>.
+     */
+    public LogActionOverrideStore(final File file,
+            final ActionOverrideStore migrationSource) {
+        notNull(file);
+        this.file = file;
+        this.migrationSource = migrationSource;
+        job = new Job("Saving MouseFeed action settings") {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                writePending();
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+    }
+
+    /** {@inheritDoc} */
+    public Collection<ActionOnWrongInvocationMode> load() {
+        final Collection<ActionOnWrongInvocationMode> modes;
+        if (file.exists()) {
+            modes = readLog();
+        } else if (migrationSource != null) {
+            modes = migrationSource.load();
+            replaceAll(modes);
+        } else {
+            modes = new ArrayList<ActionOnWrongInvocationMode>();
+        }
+        return modes;
+    }
+
+    /** {@inheritDoc} */
+    public void put(final ActionOnWrongInvocationMode mode) {
+        notNull(mode);
+        final String record = encode(mode);
+        synchronized (this) {
+            records.put(mode.getId(), record);
+            append(record);
+        }
+        job.schedule(COALESCE_DELAY);
+    }
+
+    /** {@inheritDoc} */
+    public void remove(final String actionId) {
+        notNull(actionId);
+        synchronized (this) {
+            if (records.remove(actionId) == null) {
+                return;
+            }
+            append(REMOVE + escape(actionId));
+        }
+        job.schedule(COALESCE_DELAY);
+    }
+
+    /** {@inheritDoc} */
+    public void replaceAll(final Collection<ActionOnWrongInvocationMode> modes) {
+        notNull(modes);
+        final Map<String, String> newRecords =
+                new LinkedHashMap<String, String>();
+        for (ActionOnWrongInvocationMode mode : modes) {
+            newRecords.put(mode.getId(), encode(mode));
+        }
+        synchronized (this) {
+            records.clear();
+            records.putAll(newRecords);
+            pendingRecords.clear();
+            readIncomplete = false;
+            rewritePending = true;
+        }
+        job.schedule(COALESCE_DELAY);
+    }
+
+    /** {@inheritDoc} */
+    public void flush() {
+        job.cancel();
+        writePending();
+    }
+
+    /**
+     * Adds the record to the pending records. Must be called with the
+     * lock of this.
+     * @param record the record. Assumed not <code>null</code>.
+     */
+    private void append(final String record) {
+        pendingRecords.add(record);
+        recordCount++;
+        if (!readIncomplete && recordCount > MIN_COMPACTION_RECORDS
+                && recordCount > COMPACTION_FACTOR * records.size()) {
+            rewritePending = true;
+        }
+    }
+
+    /**
+     * Writes the pending records. Rewrites the log if it was requested.
+     * If the write fails, the records stay pending and the write is retried
+     * later.
+     */
+    private void writePending() {
+        synchronized (writeLock) {
+            final List<String> toWrite;
+            final boolean rewrite;
+            synchronized (this) {
+                rewrite = rewritePending;
+                if (rewrite) {
+                    toWrite = new ArrayList<String>(records.values());
+                    recordCount = toWrite.size();
+                } else {
+                    toWrite = new ArrayList<String>(pendingRecords);
+                }
+                pendingRecords.clear();
+                rewritePending = false;
+            }
+            if (toWrite.isEmpty() && !rewrite) {
+                return;
+            }
+            try {
+                if (rewrite) {
+                    AtomicFileWriter.writeAtomically(file, ENCODING,
+                            new AtomicFileWriter.TextContent() {
+                                public void writeTo(final Writer writer)
+                                        throws IOException {
+                                    writeRecords(writer, toWrite);
+                                }
+                            });
+                } else {
+                    appendRecords(toWrite);
+                }
+            } catch (final IOException e) {
+                restorePending(rewrite, toWrite);
+                job.schedule(RETRY_DELAY);
+                AtomicFileWriter.log("Failed to write " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the records of a failed write to the pending ones.
+     * @param rewrite whether the failed write was a log rewrite.
+     * @param toWrite the records, which failed to be written.
+     * Assumed not <code>null</code>.
+     */
+    private synchronized void restorePending(final boolean rewrite,
+            final List<String> toWrite) {
+        if (rewrite) {
+            // the rewrite is done from the current records
+            rewritePending = true;
+        } else {
+            pendingRecords.addAll(0, toWrite);
+        }
+    }
+
+    /**
+     * Appends the records to the log file.
+     * @param toWrite the records to append. Assumed not <code>null</code>.
+     * @throws IOException on a write failure.
+     */
+    private void appendRecords(final List<String> toWrite) throws IOException {
+        final boolean terminated = endsWithLineBreak();
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            final Writer writer = new OutputStreamWriter(out, ENCODING);
+            if (!terminated) {
+                // the last record was truncated, e.g. by a crash
+                writer.write('\n');
+            }
+            writeRecords(writer, toWrite);
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Checks whether the log file is empty or ends with a line break.
+     * @return <code>false</code> if the last line of the file is not
+     * terminated.
+     * @throws IOException on a read failure.
+     */
+    private boolean endsWithLineBreak() throws IOException {
+        final long length = file.length();
+        if (length == 0) {
+            return true;
+        }
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            in.seek(length - 1);
+            return in.read() == '\n';
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the records one per line.
+     */
+    private static void writeRecords(final Writer writer,
+            final List<String> toWrite) throws IOException {
+        for (String record : toWrite) {
+            writer.write(record);
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Reads the settings from the log file.
+     * On a read failure logs the error and returns the settings read before
+     * the failure.
+     * @return the live settings. Never <code>null</code>.
+     */
+    private Collection<ActionOnWrongInvocationMode> readLog() {
+        final Map<String, ActionOnWrongInvocationMode> modes =
+                new LinkedHashMap<String, ActionOnWrongInvocationMode>();
+        int count = 0;
+        boolean complete = false;
+        try {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), ENCODING));
+            try {
+                String line = reader.readLine();
+                while (line != null) {
+                    count++;
+                    applyRecord(line, modes);
+                    line = reader.readLine();
+                }
+                complete = true;
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException e) {
+            AtomicFileWriter.log("Failed to read " + file, e);
+        }
+        synchronized (this) {
+            records.clear();
+            pendingRecords.clear();
+            for (ActionOnWrongInvocationMode mode : modes.values()) {
+                records.put(mode.getId(), encode(mode));
+            }
+            recordCount = count;
+            readIncomplete = !complete;
+        }
+        return new ArrayList<ActionOnWrongInvocationMode>(modes.values());
+    }
+
+    /**
+     * Applies the log record to the settings.
+     * @param line the record. Assumed not <code>null</code>.
+     * @param modes the settings by action id. Assumed not <code>null</code>.
+     */
+    private static void applyRecord(final String line,
+            final Map<String, ActionOnWrongInvocationMode> modes) {
+        if (line.length() == 0) {
+            return;
+        }
+        final List<String> fields = unescape(line.substring(1));
+        final char type = line.charAt(0);
+        if (type == REMOVE && fields.size() == 1) {
+            modes.remove(fields.get(0));
+        } else if (type == PUT && fields.size() == 3) {
+            final OnWrongInvocationMode onWrongInvocationMode =
+                    toOnWrongInvocationMode(fields.get(2));
+            if (onWrongInvocationMode == null || isBlank(fields.get(0))
+                    || isBlank(fields.get(1))) {
+                return;
+            }
+            final ActionOnWrongInvocationMode mode =
+                    new ActionOnWrongInvocationMode();
+            mode.setId(fields.get(0));
+            mode.setLabel(fields.get(1));
+            mode.setOnWrongInvocationMode(onWrongInvocationMode);
+            modes.put(mode.getId(), mode);
+        } else {
+            // malformed record, skip
+        }
+    }
+
+    /**
+     * Converts the stored value to the enumeration value.
+     * @return the mode. <code>null</code> if the value is not recognized.
+     */
+    private static OnWrongInvocationMode toOnWrongInvocationMode(
+            final String name) {
+        for (OnWrongInvocationMode mode : OnWrongInvocationMode.values()) {
+            if (mode.name().equals(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generates the record storing the setting.
+     * @param mode the setting. Assumed not <code>null</code>.
+     * @return the record. Never <code>null</code>.
+     */
+    static String encode(final ActionOnWrongInvocationMode mode) {
+        return PUT + escape(mode.getId()) + SEPARATOR
+                + escape(mode.getLabel()) + SEPARATOR
+                + mode.getOnWrongInvocationMode().name();
+    }
+
+    /**
+     * Escapes the record field.
+     * @param s the field value. Assumed not <code>null</code>.
+     * @return the escaped value. Never <code>null</code>.
+     */
+    static String escape(final String s) {
+        final StringBuilder b = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == SEPARATOR) {
+                b.append(ESCAPE).append('t');
+            } else if (c == '\n') {
+                b.append(ESCAPE).append('n');
+            } else if (c == '\r') {
+                b.append(ESCAPE).append('r');
+            } else if (c == ESCAPE) {
+                b.append(ESCAPE).append(ESCAPE);
+            } else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * Splits the record fields and unescapes them.
+     * @param s the escaped fields. Assumed not <code>null</code>.
+     * @return the field values. Never <code>null</code>.
+     */
+    static List<String> unescape(final String s) {
+        final List<String> fields = new ArrayList<String>();
+        final StringBuilder b = new StringBuilder(s.length());
+        boolean escaped = false;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (escaped) {
+                escaped = false;
+                if (c == 't') {
+                    b.append(SEPARATOR);
+                } else if (c == 'n') {
+                    b.append('\n');
+                } else if (c == 'r') {
+                    b.append('\r');
+                } else {
+                    b.append(c);
+                }
+            } else if (c == ESCAPE) {
+                escaped = true;
+            } else if (c == SEPARATOR) {
+                fields.add(b.toString());
+                b.setLength(0);
+            } else {
+                b.append(c);
+            }
+        }
+        fields.add(b.toString());
+        return fields;
+    }
+}
@@ -18,28 +18,31 @@
  */
 package com.mousefeed.eclipse.preferences;
 
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_ACTION_USAGE_HALF_LIFE;
 import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_DEFAULT_ON_WRONG_INVOCATION_MODE;
 import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_INVOCATION_CONTROL_ENABLED;
 import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_ENABLED;
 import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_NAG_MAX_STACKED;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_NAG_REPEAT_DELAY;
+import static com.mousefeed.eclipse.preferences.PreferenceConstants.P_POPUP_FONT_SCALE;
 import static org.apache.commons.lang.Validate.notNull;
 
 import com.mousefeed.client.OnWrongInvocationMode;
 import com.mousefeed.eclipse.Activator;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.preference.IPreferenceStore;
-import org.eclipse.ui.IMemento;
-import org.eclipse.ui.WorkbenchException;
-import org.eclipse.ui.XMLMemento;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 
 /**
  * Provides access to the plugin preferences.
@@ -49,68 +52,139 @@ import org.eclipse.ui.XMLMemento;
  * @author Robert Wloch
  */
 public class PreferenceAccessor {
+    /**
+     * A change of {@link PreferenceAccessor#actionOverrides}.
+     */
+    private interface ActionOverridesChange {
+        /**
+         * Applies the change.
+         * @param overrides the current snapshot. Not <code>null</code>.
+         * @return the changed snapshot. Not <code>null</code>.
+         */
+        ActionOverrides applyTo(ActionOverrides overrides);
+
+        /**
+         * Persists the change.
+         * @param store the store to save the change to. Not <code>null</code>.
+         * @param overrides the changed snapshot. Not <code>null</code>.
+         */
+        void save(ActionOverrideStore store, ActionOverrides overrides);
+    }
+
     /**
      * Name of the file to store action-specific behavior when the actions
      * are invoked wrong way.
      */
     static final String ACTIONS_WRONG_INVOCATION_MODE_FILE =
             "actionsWrongInvocationMode.xml";
+
+    /**
+     * Name of the append-only log file, which replaced
+     * {@link #ACTIONS_WRONG_INVOCATION_MODE_FILE}.
+     */
+    static final String ACTION_OVERRIDES_FILE =
+            "actionsWrongInvocationMode.log";
     
     /**
-     * The singleton instance.
+     * The singleton instance. <code>null</code> until first requested.
      */
-    private static final PreferenceAccessor INSTANCE = new PreferenceAccessor();
+    private static PreferenceAccessor instance;
     
     /**
-     * The root document for the action-specific wrong invocation mode
-     * preferences.
+     * Actions on wrong invocation mode settings.
+     * Read-only snapshot, which is replaced on each change, so the lookups
+     * don't lock.
+     * <code>null</code> until the settings are loaded.
      */
-    private static final String TAG_ACTIONS_WRONG_INVOCATION_MODE =
-            "actionsWrongInvocationMode";
+    private volatile ActionOverrides actionOverrides;
 
     /**
-     * The action tag name.
+     * Guards changing of {@link #actionOverrides}.
+     * The changes are serialized, so they are persisted in the same order as
+     * the snapshots are published. Is not held while the settings are read
+     * from the disk or the listeners are notified.
      */
-    private static final String TAG_ACTION = "action";
+    private final Object actionOverridesLock = new Object();
 
     /**
-     * The action id tag name.
+     * Makes sure the action-specific settings are loaded only once.
      */
-    private static final String TAG_ACTION_ID = "id";
-    
+    private final Object loadLock = new Object();
+
     /**
-     * The action label tag name.
+     * The changes made before {@link #actionOverrides} was loaded.
+     * They are applied when the settings are loaded.
+     * Guarded by {@link #actionOverridesLock}.
      */
-    private static final String TAG_ACTION_LABEL = "label";
-    
+    private final List<ActionOverridesChange> pendingChanges =
+            new ArrayList<ActionOverridesChange>();
+
+    /**
+     * Whether the action-specific settings failed to load. Then the changes
+     * are kept only in memory, so the stored settings are not overwritten.
+     * Guarded by {@link #actionOverridesLock}.
+     */
+    private boolean readOnly;
+
     /**
-     * The on wrong invocation mode handling approach.
+     * Is notified about {@link #actionOverrides} changes.
      */
-    private static final String TAG_ON_WRONG_INVOCATION_MODE =
-            "onWrongInvocationMode";
+    private final List<ActionOverridesListener> actionOverridesListeners =
+            new CopyOnWriteArrayList<ActionOverridesListener>();
 
     /**
-     * Actions on wrong invocation mode settings. Keys - action ids, values -
-     * the settings.   
+     * Persists {@link #actionOverrides}.
      */
-    private final Map<String, ActionOnWrongInvocationMode> actionsOnWrongMode =
-            new HashMap<String, ActionOnWrongInvocationMode>();
+    private final ActionOverrideStore overrideStore;
+
+    /**
+     * The cached global preferences. <code>null</code> until first accessed.
+     */
+    private volatile FeedbackSettings feedbackSettings;
+
+    /**
+     * Refreshes {@link #feedbackSettings} when the preferences change.
+     */
+    private final IPropertyChangeListener feedbackSettingsUpdater =
+            new IPropertyChangeListener() {
+                public void propertyChange(final PropertyChangeEvent event) {
+                    if (FeedbackSettings.isSetting(event.getProperty())) {
+                        feedbackSettings =
+                                new FeedbackSettings(getPreferenceStore());
+                    }
+                }
+            };
     
     /**
      * Creates new preference accessor.
      * Because this class is a singleton, the constructor normally should not be
      * used. It is exposed for testing purposes only.
+     * The action-specific settings are loaded in background.
      */
     PreferenceAccessor() {
-        loadActionsOnWrongInvocationMode();
+        overrideStore = createActionOverrideStore();
+        scheduleLoadingActionsOnWrongInvocationMode();
     }
     
     /**
      * The singleton instance.
      * @return the singleton instance. Never <code>null</code>.
      */
-    public static PreferenceAccessor getInstance() {
-        return INSTANCE;
+    public static synchronized PreferenceAccessor getInstance() {
+        if (instance == null) {
+            instance = new PreferenceAccessor();
+        }
+        return instance;
+    }
+
+    /**
+     * The singleton instance, if it was already created.
+     * Unlike {@link #getInstance()} does not start loading the settings.
+     * @return the singleton instance. <code>null</code> if it was not
+     * requested yet.
+     */
+    public static synchronized PreferenceAccessor getExistingInstance() {
+        return instance;
     }
     
     /**
@@ -120,8 +194,32 @@ public class PreferenceAccessor {
      * @return current preference value whether invocation control is enabled.
      */
     public boolean isInvocationControlEnabled() {
-        return getPreferenceStore().getBoolean(
-                P_INVOCATION_CONTROL_ENABLED);
+        return getFeedbackSettings().isInvocationControlEnabled();
+    }
+
+    /**
+     * The global preferences, which decide on the feedback for an action
+     * invocation. The values are cached and refreshed when the preferences
+     * change.
+     * @return the current preferences. Never <code>null</code>.
+     */
+    public FeedbackSettings getFeedbackSettings() {
+        final FeedbackSettings settings = feedbackSettings;
+        return settings == null ? initFeedbackSettings() : settings;
+    }
+
+    /**
+     * Reads {@link #feedbackSettings} and starts listening to the preference
+     * changes, if this was not done yet.
+     * @return the current preferences. Never <code>null</code>.
+     */
+    private synchronized FeedbackSettings initFeedbackSettings() {
+        if (feedbackSettings == null) {
+            final IPreferenceStore store = getPreferenceStore();
+            store.addPropertyChangeListener(feedbackSettingsUpdater);
+            feedbackSettings = new FeedbackSettings(store);
+        }
+        return feedbackSettings;
     }
 
     /**
@@ -143,8 +241,7 @@ public class PreferenceAccessor {
      * is enabled.
      */
     public boolean isConfigureKeyboardShortcutEnabled() {
-        return getPreferenceStore().getBoolean(
-                P_CONFIGURE_KEYBOARD_SHORTCUT_ENABLED);
+        return getFeedbackSettings().isConfigureKeyboardShortcutEnabled();
     }
 
     /**
@@ -165,8 +262,7 @@ public class PreferenceAccessor {
      * @see PreferenceConstants#P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD
      */
     public int getConfigureKeyboardShortcutThreshold() {
-        return getPreferenceStore().getInt(
-                P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD);
+        return getFeedbackSettings().getConfigureKeyboardShortcutThreshold();
     }
 
     /**
@@ -179,6 +275,101 @@ public class PreferenceAccessor {
         getPreferenceStore().setValue(
                 P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD, configureKeyboardShortcutThreshold);
     }
+
+    /**
+     * The number of the last days, within which the action invocations are
+     * compared with {@link #getConfigureKeyboardShortcutThreshold()}.
+     * @return the number of days. 0 if all the invocations are counted.
+     * @see PreferenceConstants#P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW
+     */
+    public int getConfigureKeyboardShortcutWindow() {
+        return getFeedbackSettings().getConfigureKeyboardShortcutWindow();
+    }
+
+    /**
+     * @param configureKeyboardShortcutWindow the new value for the setting returned by
+     * {@link #getConfigureKeyboardShortcutWindow()}.
+     * @see #getConfigureKeyboardShortcutWindow()
+     */
+    public void storeConfigureKeyboardShortcutWindow(
+            final int configureKeyboardShortcutWindow) {
+        getPreferenceStore().setValue(
+                P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW, configureKeyboardShortcutWindow);
+    }
+
+    /**
+     * The number of days, after which the count of the action invocations
+     * is halved.
+     * @return the number of days. 0 if the counts don't decay.
+     * @see PreferenceConstants#P_ACTION_USAGE_HALF_LIFE
+     */
+    public int getActionUsageHalfLife() {
+        return getFeedbackSettings().getActionUsageHalfLife();
+    }
+
+    /**
+     * @param actionUsageHalfLife the new value for the setting returned by
+     * {@link #getActionUsageHalfLife()}.
+     * @see #getActionUsageHalfLife()
+     */
+    public void storeActionUsageHalfLife(final int actionUsageHalfLife) {
+        getPreferenceStore().setValue(
+                P_ACTION_USAGE_HALF_LIFE, actionUsageHalfLife);
+    }
+    
+    /**
+     * For how long the same action reminder is not shown again.
+     * @return the delay in seconds.
+     * @see PreferenceConstants#P_NAG_REPEAT_DELAY
+     */
+    public int getNagRepeatDelay() {
+        return getFeedbackSettings().getNagRepeatDelay();
+    }
+
+    /**
+     * @param nagRepeatDelay the new value for the setting returned by
+     * {@link #getNagRepeatDelay()}.
+     * @see #getNagRepeatDelay()
+     */
+    public void storeNagRepeatDelay(final int nagRepeatDelay) {
+        getPreferenceStore().setValue(P_NAG_REPEAT_DELAY, nagRepeatDelay);
+    }
+
+    /**
+     * How many reminders one pop-up shows at most.
+     * @return the maximal number of reminders.
+     * @see PreferenceConstants#P_NAG_MAX_STACKED
+     */
+    public int getNagMaxStacked() {
+        return getFeedbackSettings().getNagMaxStacked();
+    }
+
+    /**
+     * @param nagMaxStacked the new value for the setting returned by
+     * {@link #getNagMaxStacked()}.
+     * @see #getNagMaxStacked()
+     */
+    public void storeNagMaxStacked(final int nagMaxStacked) {
+        getPreferenceStore().setValue(P_NAG_MAX_STACKED, nagMaxStacked);
+    }
+
+    /**
+     * How much bigger than the regular font is the pop-up notification font.
+     * @return the font scale in percent.
+     * @see PreferenceConstants#P_POPUP_FONT_SCALE
+     */
+    public int getPopupFontScale() {
+        return getFeedbackSettings().getPopupFontScale();
+    }
+
+    /**
+     * @param popupFontScale the new value for the setting returned by
+     * {@link #getPopupFontScale()}.
+     * @see #getPopupFontScale()
+     */
+    public void storePopupFontScale(final int popupFontScale) {
+        getPreferenceStore().setValue(P_POPUP_FONT_SCALE, popupFontScale);
+    }
     
     /**
      * The default preference what to do by default on wrong invocation mode.
@@ -186,11 +377,7 @@ public class PreferenceAccessor {
      * @see PreferenceConstants#P_DEFAULT_ON_WRONG_INVOCATION_MODE
      */
     public OnWrongInvocationMode getOnWrongInvocationMode() {
-        final String stored = getPreferenceStore().getString(
-                P_DEFAULT_ON_WRONG_INVOCATION_MODE);
-        return stored == null
-                ? OnWrongInvocationMode.DEFAULT
-                : OnWrongInvocationMode.valueOf(stored);
+        return getFeedbackSettings().getOnWrongInvocationMode();
     }
     
     /**
@@ -199,25 +386,54 @@ public class PreferenceAccessor {
      * @param actionId the id of the action get preferences for.
      * Not <code>null</code>.
      * @return the invocation mode preference.
-     * <code>null</code> if there is no action-specific setting.
+     * <code>null</code> if there is no action-specific setting or the
+     * action-specific settings are not loaded yet.
      * In this case use the default preference value.
      */
     public OnWrongInvocationMode getOnWrongInvocationMode(final String actionId) {
+        return getOnWrongInvocationMode(actionOverrides, actionId);
+    }
+
+    /**
+     * The preference what to do on wrong invocation mode for the specified
+     * action in the settings snapshot.
+     * @param overrides the action-specific settings. <code>null</code> if
+     * they are not loaded yet.
+     * @param actionId the id of the action get preferences for.
+     * Not <code>null</code>.
+     * @return the invocation mode preference.
+     * <code>null</code> if there is no action-specific setting.
+     * @see #getOnWrongInvocationMode(String)
+     */
+    static OnWrongInvocationMode getOnWrongInvocationMode(
+            final ActionOverrides overrides, final String actionId) {
         notNull(actionId);
-        final ActionOnWrongInvocationMode mode =
-                actionsOnWrongMode.get(actionId);
+        if (overrides == null) {
+            return null;
+        }
+        final ActionOnWrongInvocationMode mode = overrides.get(actionId);
         return mode == null ? null : mode.getOnWrongInvocationMode();
     }
     
     /**
      * Saves action-specific on wrong invocation mode settings.
+     * If the action-specific settings are not loaded yet, the change is
+     * applied when they are loaded.
      * @param settings the new value. Not <code>null</code>.
      */
     public void setOnWrongInvocationMode(
             final ActionOnWrongInvocationMode settings) {
         notNull(settings);
-        actionsOnWrongMode.put(settings.getId(), settings);
-        saveActionsOnWrongInvocationMode();
+        change(new ActionOverridesChange() {
+            public ActionOverrides applyTo(final ActionOverrides overrides) {
+                return overrides.with(settings);
+            }
+
+            public void save(final ActionOverrideStore store,
+                    final ActionOverrides overrides) {
+                store.put(settings);
+            }
+        });
     }
     
     /**
@@ -229,14 +445,52 @@ public class PreferenceAccessor {
      * Never <code>null</code>, can be empty if no action-specific settings were
      * defined.
      * All objects in the collection have unique ids.
+     * Waits until the action-specific settings are loaded.
      */
     public Collection<ActionOnWrongInvocationMode>
             getActionsOnWrongInvocationMode() {
-        return actionsOnWrongMode.values();
+        return getActionOverrides().getAll();
+    }
+
+    /**
+     * The current snapshot of the action-specific settings.
+     * Waits until the action-specific settings are loaded.
+     * @return the settings. Never <code>null</code>.
+     * @see #addActionOverridesListener(ActionOverridesListener)
+     */
+    public ActionOverrides getActionOverrides() {
+        waitUntilLoaded();
+        return actionOverrides;
+    }
+
+    /**
+     * Adds the listener to be notified about changes of the action-specific
+     * settings. Does nothing if the listener is already added.
+     * @param listener the listener. Not <code>null</code>.
+     */
+    public void addActionOverridesListener(
+            final ActionOverridesListener listener) {
+        notNull(listener);
+        if (!actionOverridesListeners.contains(listener)) {
+            actionOverridesListeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes the listener added by
+     * {@link #addActionOverridesListener(ActionOverridesListener)}.
+     * @param listener the listener. Not <code>null</code>.
+     */
+    public void removeActionOverridesListener(
+            final ActionOverridesListener listener) {
+        notNull(listener);
+        actionOverridesListeners.remove(listener);
     }
 
     /**
      * Replaces the action-specific settings.
+     * If the action-specific settings are not loaded yet, the change is
+     * applied when they are loaded.
      * @param settings the new settings. Not <code>null</code>.
      * Changes to the data passed to this method won't affect the values stored
      * in this class.
@@ -244,29 +498,47 @@ public class PreferenceAccessor {
      */
     public void setActionsOnWrongInvocationMode(
             final Collection<ActionOnWrongInvocationMode> settings) {
-        this.actionsOnWrongMode.clear();
+        final List<ActionOnWrongInvocationMode> clones =
+                new ArrayList<ActionOnWrongInvocationMode>();
         for (ActionOnWrongInvocationMode mode : settings) {
-            final ActionOnWrongInvocationMode clone;
             try {
-                clone = (ActionOnWrongInvocationMode) mode.clone();
+                clones.add((ActionOnWrongInvocationMode) mode.clone());
             } catch (final CloneNotSupportedException e) {
                 throw new RuntimeException();
             }
-            this.actionsOnWrongMode.put(clone.getId(), clone);
         }
-        saveActionsOnWrongInvocationMode();
+        change(new ActionOverridesChange() {
+            public ActionOverrides applyTo(final ActionOverrides overrides) {
+                return overrides.replacedBy(clones);
+            }
+
+            public void save(final ActionOverrideStore store,
+                    final ActionOverrides overrides) {
+                store.replaceAll(overrides.getAll());
+            }
+        });
     }
 
     /**
      * Removes action-specific on wrong invocation mode setting.
      * After calling this method when the action with the specified id is
      * handled using the default settings. 
+     * If the action-specific settings are not loaded yet, the change is
+     * applied when they are loaded.
      * @param actionId the action id. not <code>null</code>.
      */
     public void removeOnWrongInvocaitonMode(final String actionId) {
         notNull(actionId);
-        actionsOnWrongMode.remove(actionId);
-        saveActionsOnWrongInvocationMode();
+        change(new ActionOverridesChange() {
+            public ActionOverrides applyTo(final ActionOverrides overrides) {
+                return overrides.without(actionId);
+            }
+
+            public void save(final ActionOverrideStore store,
+                    final ActionOverrides overrides) {
+                store.remove(actionId);
+            }
+        });
     }
 
     /**
@@ -280,92 +552,142 @@ public class PreferenceAccessor {
     }
     
     /**
-     * Loads preferences for the {@link #getOnWrongInvocationMode(String)}.
+     * Loads preferences for the {@link #getOnWrongInvocationMode(String)}
+     * in background, so the settings are not parsed on the workbench startup
+     * path.
      */
-    private void loadActionsOnWrongInvocationMode() {
-        final File file = getActionsWrongInvocationModeFile();
-        if (!file.exists() || file.length() == 0) {
-            // the file not initialized yet
-            return;
+    private void scheduleLoadingActionsOnWrongInvocationMode() {
+        final Job job = new Job("Loading MouseFeed action settings") {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                waitUntilLoaded();
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
+    }
+
+    /**
+     * Loads preferences for the {@link #getOnWrongInvocationMode(String)},
+     * if they are not loaded yet.
+     * When this method returns, the settings are loaded. If loading fails,
+     * the failure is logged, the settings are empty and the changes are not
+     * saved, so the stored settings are preserved.
+     */
+    void waitUntilLoaded() {
+        final boolean loading;
+        synchronized (loadLock) {
+            loading = actionOverrides == null;
+            if (loading) {
+                load();
+            }
+        }
+        if (loading) {
+            notifyListeners();
         }
-        Reader reader = null;
+    }
+
+    /**
+     * Reads the action-specific settings and applies the changes made while
+     * they were loading. Must be called with {@link #loadLock}.
+     */
+    private void load() {
+        Collection<ActionOnWrongInvocationMode> modes = null;
         try {
-            reader = new FileReader(file);
-            final XMLMemento memento = XMLMemento.createReadRoot(reader);
-            loadActionsOnWrongInvocationMode(memento);
-        } catch (final FileNotFoundException ignore) {
-            // the file does not exist yet 
-        } catch (final WorkbenchException e) {
-            throw new RuntimeException(e);
-        } finally {
-            try {
-                if (reader != null) {
-                    reader.close();
-                }
-            } catch (final IOException e) {
-                throw new RuntimeException(e);
+            modes = overrideStore.load();
+        } catch (final RuntimeException e) {
+            logError("Failed to load MouseFeed action settings", e);
+        }
+        synchronized (actionOverridesLock) {
+            readOnly = modes == null;
+            actionOverrides = readOnly ? ActionOverrides.EMPTY
+                    : ActionOverrides.EMPTY.replacedBy(modes);
+            for (ActionOverridesChange change : pendingChanges) {
+                apply(change);
             }
+            pendingChanges.clear();
         }
     }
 
     /**
-     * Loads action-specific invocation handling.
-     * @param memento the memento to load the data from.
-     * Assumed not <code>null</code>.
-     * @see #loadActionsOnWrongInvocationMode()
-     */
-    private void loadActionsOnWrongInvocationMode(final XMLMemento memento) {
-        actionsOnWrongMode.clear();
-        final IMemento[] children = memento.getChildren(TAG_ACTION);
-        for (IMemento child : children) {
-            final ActionOnWrongInvocationMode mode =
-                    new ActionOnWrongInvocationMode();
-            mode.setLabel(child.getString(TAG_ACTION_LABEL));
-            mode.setId(child.getString(TAG_ACTION_ID));
-            mode.setOnWrongInvocationMode(
-                    OnWrongInvocationMode.valueOf(child.getString(
-                            TAG_ON_WRONG_INVOCATION_MODE)));
-            actionsOnWrongMode.put(mode.getId(), mode); 
+     * Applies the change and notifies the listeners. If the settings are not
+     * loaded yet, the change is postponed.
+     * @param change the change. Assumed not <code>null</code>.
+     */
+    private void change(final ActionOverridesChange change) {
+        final boolean applied;
+        synchronized (actionOverridesLock) {
+            applied = actionOverrides != null;
+            if (applied) {
+                apply(change);
+            } else {
+                pendingChanges.add(change);
+            }
+        }
+        if (applied) {
+            notifyListeners();
         }
     }
 
     /**
-     * Saves settings loaded by {@link #loadActionsOnWrongInvocationMode()}.
+     * Makes the changed snapshot current and saves the change.
+     * Must be called with {@link #actionOverridesLock}.
+     * @param change the change. Assumed not <code>null</code>.
      */
-    private void saveActionsOnWrongInvocationMode() {
-        final XMLMemento memento = createActionsOnWrongInvocationModeMemento();
-        Writer writer = null;
-        try {
-            writer = new FileWriter(getActionsWrongInvocationModeFile());
-            memento.save(writer);
-        } catch (final IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            try {
-                if (writer != null) {
-                    writer.close();
-                }
-            } catch (final IOException e) {
-                throw new RuntimeException(e);
-            }
+    private void apply(final ActionOverridesChange change) {
+        actionOverrides = change.applyTo(actionOverrides);
+        if (!readOnly) {
+            change.save(overrideStore, actionOverrides);
+        }
+    }
+
+    /**
+     * Notifies the listeners about the current snapshot.
+     * Must not be called with {@link #actionOverridesLock}, so the listeners
+     * can't block the changes. Concurrent changes may notify about the same
+     * latest snapshot more than once.
+     */
+    private void notifyListeners() {
+        final ActionOverrides overrides = actionOverrides;
+        for (ActionOverridesListener listener : actionOverridesListeners) {
+            listener.actionOverridesChanged(overrides);
         }
     }
 
     /**
-     * Generates XML memento with the actions wrong invocation mode data. 
-     * @return the memento. Never <code>null</code>.
+     * Reports the failure to the plugin log.
+     * @param message the message. Assumed not <code>null</code>.
+     * @param e the failure. Assumed not <code>null</code>.
      */
-    private XMLMemento createActionsOnWrongInvocationModeMemento() {
-        final XMLMemento memento = XMLMemento.createWriteRoot(
-                TAG_ACTIONS_WRONG_INVOCATION_MODE);
-        for (ActionOnWrongInvocationMode val : actionsOnWrongMode.values()) {
-            final IMemento actionMemento = memento.createChild(TAG_ACTION);
-            actionMemento.putString(TAG_ACTION_ID, val.getId());
-            actionMemento.putString(TAG_ACTION_LABEL, val.getLabel());
-            actionMemento.putString(TAG_ON_WRONG_INVOCATION_MODE,
-                    val.getOnWrongInvocationMode().name());
+    private static void logError(final String message,
+            final RuntimeException e) {
+        final Activator activator = Activator.getDefault();
+        if (activator != null) {
+            activator.getLog().log(new Status(IStatus.ERROR,
+                    Activator.PLUGIN_ID, message, e));
         }
-        return memento;
+    }
+
+    /**
+     * Writes the action-specific settings changes, which were not saved yet.
+     * Blocks until the settings are loaded and the changes are written.
+     */
+    public void flush() {
+        waitUntilLoaded();
+        overrideStore.flush();
+    }
+
+    /**
+     * Creates the storage of the action-specific settings.
+     * The settings are kept in an append-only log. The settings stored by
+     * the earlier versions in the XML file are migrated to the log.
+     * @return the store. Never <code>null</code>.
+     */
+    ActionOverrideStore createActionOverrideStore() {
+        return new LogActionOverrideStore(getActionOverridesFile(),
+                new XmlActionOverrideStore(
+                        getActionsWrongInvocationModeFile()));
     }
 
     /**
@@ -382,12 +704,33 @@ public class PreferenceAccessor {
      * invoked with a wrong invocation mode.
      */
     File getActionsWrongInvocationModeFile() {
+        return getStateFile(ACTIONS_WRONG_INVOCATION_MODE_FILE);
+    }
+
+    /**
+     * File storing the log of the action-specific preferences for action
+     * invocation mode.
+     * @return the log file. Never <code>null</code>.
+     */
+    File getActionOverridesFile() {
+        return getStateFile(ACTION_OVERRIDES_FILE);
+    }
+
+    /**
+     * File in the plugin state location.
+     * @param name the file name. Assumed not <code>null</code>.
+     * @return the file. If the plugin is not running, a file in the current
+     * directory, which name is different for each of the provided names, so
+     * the log and the XML stores never read each other's file.
+     * Never <code>null</code>.
+     */
+    private File getStateFile(final String name) {
         if (Activator.getDefault() == null) {
-            return new File("nonexisting");
+            return new File("nonexisting." + name);
         }
         return Activator.getDefault()
                 .getStateLocation()
-                .append(ACTIONS_WRONG_INVOCATION_MODE_FILE)
+                .append(name)
                 .toFile();
     }
 }
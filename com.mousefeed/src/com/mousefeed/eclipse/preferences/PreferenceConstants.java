@@ -18,6 +18,8 @@
  */
 package com.mousefeed.eclipse.preferences;
 
+import com.mousefeed.client.collector.ActionStatisticsStore;
+
 /**
  * Constant definitions for plug-in preferences.
  *
@@ -68,7 +70,71 @@ public final class PreferenceConstants {
      * setting.
      */
     public static final int CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD_DEFAULT = 2;
+
+    /**
+     * The number of the last days, within which the action invocations are
+     * compared with {@link #P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD}.
+     * 0 means all the invocations are counted, as the earlier versions did.
+     * Only these counts decay, and only if {@link #P_ACTION_USAGE_HALF_LIFE}
+     * is set.
+     */
+    public static final String P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW =
+            "ConfigureKeyboardShortcutWindow";
+
+    /**
+     * The default value for the setting {@link #P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW}
+     * setting. Counts all the invocations, as the earlier versions did.
+     */
+    public static final int CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_DEFAULT = 0;
+
+    /**
+     * The maximal value of the setting
+     * {@link #P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW}, in days.
+     * The statistics store does not keep the daily counts for longer.
+     */
+    public static final int CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_MAX =
+            ActionStatisticsStore.KEPT_DAYS;
+
+    /**
+     * The number of days, after which the count of all the action
+     * invocations is halved, so the actions, which are not used any more,
+     * are eventually forgotten. 0 means the counts don't decay.
+     * Applies only when {@link #P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW} is 0,
+     * the invocations within a window don't decay.
+     */
+    public static final String P_ACTION_USAGE_HALF_LIFE =
+            "ActionUsageHalfLife";
+
+    /**
+     * The default value for the setting {@link #P_ACTION_USAGE_HALF_LIFE}
+     * setting. The counts don't decay, as in the earlier versions.
+     */
+    public static final int ACTION_USAGE_HALF_LIFE_DEFAULT = 0;
     
+    /**
+     * For how long the same action reminder is not shown again, in seconds.
+     * Stops the click storms from showing the same reminder over and over.
+     */
+    public static final String P_NAG_REPEAT_DELAY = "NagRepeatDelay";
+
+    /**
+     * The default value for the setting {@link #P_NAG_REPEAT_DELAY}
+     * setting.
+     */
+    public static final int NAG_REPEAT_DELAY_DEFAULT = 3;
+
+    /**
+     * How many reminders for different actions one pop-up shows at most.
+     * The reminders coming together are merged into a single pop-up.
+     */
+    public static final String P_NAG_MAX_STACKED = "NagMaxStacked";
+
+    /**
+     * The default value for the setting {@link #P_NAG_MAX_STACKED}
+     * setting.
+     */
+    public static final int NAG_MAX_STACKED_DEFAULT = 3;
+
     /**
      * Indicates how to deal with actions called with wrong action invocation
      * mode if there is no specific handling defined.
@@ -76,6 +142,30 @@ public final class PreferenceConstants {
     public static final String P_DEFAULT_ON_WRONG_INVOCATION_MODE =
             "DefaultOnWrongInvocationMode";
     
+    /**
+     * How much bigger than the regular font is the font of the pop-up
+     * notifications, in percent.
+     */
+    public static final String P_POPUP_FONT_SCALE = "PopupFontScale";
+
+    /**
+     * The default value for the setting {@link #P_POPUP_FONT_SCALE}
+     * setting.
+     */
+    public static final int POPUP_FONT_SCALE_DEFAULT = 200;
+
+    /**
+     * The minimal value for the setting {@link #P_POPUP_FONT_SCALE}
+     * setting.
+     */
+    public static final int POPUP_FONT_SCALE_MIN = 100;
+
+    /**
+     * The maximal value for the setting {@link #P_POPUP_FONT_SCALE}
+     * setting.
+     */
+    public static final int POPUP_FONT_SCALE_MAX = 500;
+    
     private PreferenceConstants() {
     }
 }
@@ -55,5 +55,20 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
         store.setDefault(
                 PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD,
                 PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_THRESHOLD_DEFAULT);
+        store.setDefault(
+                PreferenceConstants.P_CONFIGURE_KEYBOARD_SHORTCUT_WINDOW,
+                PreferenceConstants.CONFIGURE_KEYBOARD_SHORTCUT_WINDOW_DEFAULT);
+        store.setDefault(
+                PreferenceConstants.P_ACTION_USAGE_HALF_LIFE,
+                PreferenceConstants.ACTION_USAGE_HALF_LIFE_DEFAULT);
+        store.setDefault(
+                PreferenceConstants.P_NAG_REPEAT_DELAY,
+                PreferenceConstants.NAG_REPEAT_DELAY_DEFAULT);
+        store.setDefault(
+                PreferenceConstants.P_NAG_MAX_STACKED,
+                PreferenceConstants.NAG_MAX_STACKED_DEFAULT);
+        store.setDefault(
+                PreferenceConstants.P_POPUP_FONT_SCALE,
+                PreferenceConstants.POPUP_FONT_SCALE_DEFAULT);
     }
 }
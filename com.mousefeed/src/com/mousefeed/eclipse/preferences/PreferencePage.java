@@ -21,6 +21,7 @@ package com.mousefeed.eclipse.preferences;
 import com.mousefeed.client.Messages;
 import com.mousefeed.eclipse.Activator;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
@@ -55,6 +56,13 @@ public class PreferencePage
      */
     @Override
     public void createFieldEditors() {
+        final IntegerFieldEditor popupFontScale = new IntegerFieldEditor(
+                PreferenceConstants.P_POPUP_FONT_SCALE,
+                MESSAGES.get("field.popupFontScale.label"),
+                getFieldEditorParent());
+        popupFontScale.setValidRange(PreferenceConstants.POPUP_FONT_SCALE_MIN,
+                PreferenceConstants.POPUP_FONT_SCALE_MAX);
+        addField(popupFontScale);
     }
 
     /**
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) Heavy Lifting Software, Sigasi & Robert Wloch 2012.
+ *
+ * This file is part of MouseFeed.
+ *
+ * MouseFeed is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MouseFeed is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MouseFeed.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mousefeed.eclipse.preferences;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+import com.mousefeed.client.OnWrongInvocationMode;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.eclipse.ui.IMemento;
+import org.eclipse.ui.WorkbenchException;
+import org.eclipse.ui.XMLMemento;
+
+/**
+ * Stores the action-specific settings in an XML file.
+ * This is the format used by the earlier MouseFeed versions, now it is
+ * only read to migrate the settings to {@link LogActionOverrideStore}.
+ * The whole file is rewritten on each change.
+ *
+ * @author Andriy Palamarchuk
+ * @author Sigasi
+ */
+public class XmlActionOverrideStore implements ActionOverrideStore {
+    /**
+     * The root document for the action-specific wrong invocation mode
+     * preferences.
+     */
+    private static final String TAG_ACTIONS_WRONG_INVOCATION_MODE =
+            "actionsWrongInvocationMode";
+
+    /**
+     * The action tag name.
+     */
+    private static final String TAG_ACTION = "action";
+
+    /**
+     * The action id tag name.
+     */
+    private static final String TAG_ACTION_ID = "id";
+
+    /**
+     * The action label tag name.
+     */
+    private static final String TAG_ACTION_LABEL = "label";
+
+    /**
+     * The on wrong invocation mode handling approach.
+     */
+    private static final String TAG_ON_WRONG_INVOCATION_MODE =
+            "onWrongInvocationMode";
+
+    /**
+     * The file to store the settings in.
+     */
+    private final File file;
+
+    /**
+     * The stored settings by action id.
+     */
+    private final Map<String, ActionOnWrongInvocationMode> modes =
+            new LinkedHashMap<String, ActionOnWrongInvocationMode>();
+
+    /**
+     * Creates new store.
+     * @param file the file to store the settings in. Not <code>null</code>.
+     */
+    public XmlActionOverrideStore(final File file) {
+        notNull(file);
+        this.file = file;
+    }
+
+    /** {@inheritDoc} */
+    public Collection<ActionOnWrongInvocationMode> load() {
+        modes.clear();
+        if (!file.exists() || file.length() == 0) {
+            // the file not initialized yet
+            return new ArrayList<ActionOnWrongInvocationMode>();
+        }
+        Reader reader = null;
+        try {
+            reader = new FileReader(file);
+            final XMLMemento memento = XMLMemento.createReadRoot(reader);
+            load(memento);
+        } catch (final FileNotFoundException ignore) {
+            // the file does not exist yet
+        } catch (final WorkbenchException e) {
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return new ArrayList<ActionOnWrongInvocationMode>(modes.values());
+    }
+
+    /**
+     * Loads action-specific invocation handling.
+     * @param memento the memento to load the data from.
+     * Assumed not <code>null</code>.
+     */
+    private void load(final XMLMemento memento) {
+        final IMemento[] children = memento.getChildren(TAG_ACTION);
+        for (IMemento child : children) {
+            final ActionOnWrongInvocationMode mode =
+                    new ActionOnWrongInvocationMode();
+            mode.setLabel(child.getString(TAG_ACTION_LABEL));
+            mode.setId(child.getString(TAG_ACTION_ID));
+            mode.setOnWrongInvocationMode(
+                    OnWrongInvocationMode.valueOf(child.getString(
+                            TAG_ON_WRONG_INVOCATION_MODE)));
+            modes.put(mode.getId(), mode);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void put(final ActionOnWrongInvocationMode mode) {
+        notNull(mode);
+        modes.put(mode.getId(), mode);
+        save();
+    }
+
+    /** {@inheritDoc} */
+    public void remove(final String actionId) {
+        notNull(actionId);
+        modes.remove(actionId);
+        save();
+    }
+
+    /** {@inheritDoc} */
+    public void replaceAll(
+            final Collection<ActionOnWrongInvocationMode> newModes) {
+        notNull(newModes);
+        modes.clear();
+        for (ActionOnWrongInvocationMode mode : newModes) {
+            modes.put(mode.getId(), mode);
+        }
+        save();
+    }
+
+    /**
+     * Does nothing, the changes are written immediately.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Saves the settings.
+     */
+    private void save() {
+        final XMLMemento memento = createMemento();
+        try {
+            AtomicFileWriter.writeAtomically(file,
+                    Charset.defaultCharset().name(),
+                    new AtomicFileWriter.TextContent() {
+                        public void writeTo(final Writer w)
+                                throws IOException {
+                            memento.save(w);
+                        }
+                    });
+        } catch (final IOException e) {
+            AtomicFileWriter.log("Failed to write " + file, e);
+        }
+    }
+
+    /**
+     * Generates XML memento with the actions wrong invocation mode data.
+     * @return the memento. Never <code>null</code>.
+     */
+    private XMLMemento createMemento() {
+        final XMLMemento memento = XMLMemento.createWriteRoot(
+                TAG_ACTIONS_WRONG_INVOCATION_MODE);
+        for (ActionOnWrongInvocationMode val : modes.values()) {
+            final IMemento actionMemento = memento.createChild(TAG_ACTION);
+            actionMemento.putString(TAG_ACTION_ID, val.getId());
+            actionMemento.putString(TAG_ACTION_LABEL, val.getLabel());
+            actionMemento.putString(TAG_ON_WRONG_INVOCATION_MODE,
+                    val.getOnWrongInvocationMode().name());
+        }
+        return memento;
+    }
+}